@@ -0,0 +1,118 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file replaces each pixel with the average of the square of pixels
+ * reaching k pixels around it (the K-value filter). Rather than adding up
+ * the whole square for every pixel, running sums are kept: the sum across
+ * each row is found from the running total along the row, and the sum of
+ * those down each column is updated by adding the row entering the square
+ * and subtracting the row leaving it. The cost per pixel is the same
+ * whatever the value of k. Near the edges the square is cut off by the edge
+ * and only the pixels within the image are averaged.
+ *
+ * References:
+ *
+ * Amarasinghe, U. (n.d). Basic Effects. [PowerPoint slides]. Colombo: Asia
+ * Pacific Institute of Information Technology. Available at: Learning
+ * Management System APIIT City Campus. Imaging and Special Effects.
+ * <http://lms.apiit.lk/course/view.php?id=1815> (accessed 6th January 2014)
+ *
+ * Durovic I. (n.d). Digital image processing. [PowerPoint slides].
+ * <www.etf.ucg.ac.me/Digital%20image%20processing.pdf?> (accessed 6th January
+ * 2014)
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+public class BoxFilter {
+
+    private final int k;
+
+    public BoxFilter(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("K cannot be negative");
+        }
+        this.k = k;
+    }
+
+    // Writes the average around each pixel of source into target, which
+    // must be the same size as source.
+    public void average(final PixelStore source, final PixelStore target) {
+        final int l = source.getPlanes();
+        final int h = source.getHeight();
+        final int w = source.getWidth();
+
+        // Number of columns of the square within the image, for each column.
+        final int[] widths = new int[w];
+        for (int col = 0; col < w; col++) {
+            widths[col] = Math.min(w - 1, col + k) - Math.max(0, col - k) + 1;
+        }
+
+        // Each band fills its column sums with the rows above it first, so
+        // bands are kept at least as tall as the square.
+        ParallelEngine.forEachRow(h, 2 * k + 1,
+                new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                // Sum of the part of the square in each column.
+                final long[][] columnSums = new long[l][w];
+                final int[] line = new int[w + 1];
+                final int[] averages = new int[w];
+
+                for (int row = Math.max(0, firstRow - k); row < Math.min(h,
+                        firstRow + k); row++) {
+                    addRow(source, row, 1, columnSums, line);
+                }
+
+                for (int row = firstRow; row < endRow; row++) {
+                    if (row + k < h) {
+                        // Entering the square.
+                        addRow(source, row + k, 1, columnSums, line);
+                    }
+                    if (row - k - 1 >= 0 && row > firstRow) {
+                        // Leaving the square.
+                        addRow(source, row - k - 1, -1, columnSums, line);
+                    }
+
+                    final int height = Math.min(h - 1, row + k)
+                            - Math.max(0, row - k) + 1;
+                    for (int layer = 0; layer < l; layer++) {
+                        final long[] sums = columnSums[layer];
+                        for (int col = 0; col < w; col++) {
+                            averages[col] = (int) (sums[col] / (height
+                                    * widths[col]));
+                        }
+                        target.setRow(layer, row, averages);
+                    }
+                }
+            }
+        });
+    }
+
+    // Adds (or with a sign of -1 subtracts) the sums across a row to the
+    // column sums. Line is used to hold the running total along the row.
+    private void addRow(PixelStore source, int row, int sign,
+            long[][] columnSums, int[] line) {
+        final int w = source.getWidth();
+        for (int layer = 0; layer < columnSums.length; layer++) {
+            // Samples go in from the second place, then are turned into
+            // totals of the samples before each place.
+            source.getRow(layer, row, 0, w, line, 1);
+            line[0] = 0;
+            for (int col = 1; col <= w; col++) {
+                line[col] += line[col - 1];
+            }
+
+            final long[] sums = columnSums[layer];
+            for (int col = 0; col < w; col++) {
+                sums[col] += sign
+                        * (line[Math.min(w, col + k + 1)] - line[Math.max(0,
+                                col - k)]);
+            }
+        }
+    }
+}
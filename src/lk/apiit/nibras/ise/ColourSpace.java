@@ -0,0 +1,459 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file converts colours between RGB and gray, HSV, YCbCr and CIE Lab,
+ * all of them held in three 8 bit layers as PixelStore packs them. Nothing
+ * is worked out in floating point per pixel. The weights of each layer are
+ * fixed point whole numbers, 16 bits of which are fraction, and each layer
+ * is multiplied through a table of its 256 values, so a conversion is a few
+ * look ups, additions and shifts a pixel. The steps of Lab that are not
+ * linear, the gamma of sRGB and the cube root, are tables too. Images are
+ * converted in parallel bands of rows.
+ *
+ * Hue, saturation and value take 0 - 255, hue going once round the colour
+ * circle. Cb, Cr, a and b are offset by 128, and L is scaled from 0 - 100
+ * to 0 - 255. YCbCr is that of JPEG, in full range.
+ *
+ * References:
+ *
+ * Cook, J. 2009. Three algorithms for converting color to grayscale.
+ * [online] Available at:
+ * http://www.johndcook.com/blog/2009/08/24/algorithms-convert-color-grayscale/
+ * [Accessed: 7 Jan 2014].
+ *
+ * Hamilton, E. 1992. JPEG File Interchange Format. Version 1.02. Milpitas:
+ * C-Cube Microsystems.
+ *
+ * International Telecommunication Union. 2011. Recommendation ITU-R BT.601-7.
+ * Studio encoding parameters of digital television for standard 4:3 and
+ * wide-screen 16:9 aspect ratios. Geneva: ITU.
+ *
+ * International Telecommunication Union. 2002. Recommendation ITU-R BT.709-5.
+ * Parameter values for the HDTV standards for production and international
+ * programme exchange. Geneva: ITU.
+ *
+ * Smith, A. R. 1978. Color gamut transform pairs. In: SIGGRAPH '78
+ * Proceedings of the 5th annual conference on Computer graphics and
+ * interactive techniques. pp. 12--19.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+public final class ColourSpace {
+
+    // Ways of weighing the red, green and blue of a pixel into gray.
+    public static enum Luma {
+
+        // (r + g + b) / 3
+        AVERAGE,
+        // 0.21 r + 0.71 g + 0.07 b, truncated. (Cook 2009)
+        LUMINESCENCE,
+        REC_601, REC_709
+    }
+
+    public static enum Space {
+
+        HSV, YCBCR, LAB
+    }
+
+    private static final int LEVELS = LookupTable.LEVELS;
+    private static final int FRACTION_BITS = 16;
+    private static final int HALF = 1 << FRACTION_BITS - 1;
+
+    // Gray weights of red, green and blue for each Luma, with the shift
+    // that leaves the gray. Averaging and luminescence are exact: 21846 /
+    // 2^16 divides sums up to 765 by 3 exactly, and 5243 / 2^19 divides
+    // sums up to 25500 by 100.
+    private static final int[][][] LUMA_TABLES =
+            new int[Luma.values().length][][];
+    private static final int[] LUMA_SHIFTS = new int[Luma.values().length];
+
+    // YCbCr tables. The rounding half and the offset of 128 are added into
+    // the red tables.
+    private static final int[] Y_R = new int[LEVELS], Y_G = new int[LEVELS],
+            Y_B = new int[LEVELS];
+    private static final int[] CB_R = new int[LEVELS],
+            CB_G = new int[LEVELS], CB_B = new int[LEVELS];
+    private static final int[] CR_R = new int[LEVELS],
+            CR_G = new int[LEVELS], CR_B = new int[LEVELS];
+    private static final int[] R_CR = new int[LEVELS], G_CB = new int[LEVELS],
+            G_CR = new int[LEVELS], B_CB = new int[LEVELS];
+
+    // 2^16 / d and 255 x 2^16 / d, for the divisions of HSV.
+    private static final int[] RECIPROCALS = new int[LEVELS];
+    private static final int[] SATURATIONS = new int[LEVELS];
+
+    // Lab works on linear light of 16 bits, and on tables of 12 bits of it.
+    private static final int LINEAR_BITS = 16, TABLE_BITS = 12;
+    private static final int MATRIX_BITS = 14;
+    private static final int TABLE_SIZE = 1 << TABLE_BITS;
+    // Linear light of each sRGB value, and the sRGB value of each step of
+    // linear light.
+    private static final int[] TO_LINEAR = new int[LEVELS];
+    private static final int[] TO_SRGB = new int[TABLE_SIZE];
+    // RGB to XYZ divided by the white point, and back, D65 white.
+    private static final int[][] TO_XYZ = matrix(new double[][] {
+        { 0.4124 / 0.95047, 0.3576 / 0.95047, 0.1805 / 0.95047 },
+        { 0.2126, 0.7152, 0.0722 },
+        { 0.0193 / 1.08883, 0.1192 / 1.08883, 0.9505 / 1.08883 } });
+    private static final int[][] FROM_XYZ = matrix(new double[][] {
+        { 3.2406 * 0.95047, -1.5372, -0.4986 * 1.08883 },
+        { -0.9689 * 0.95047, 1.8758, 0.0415 * 1.08883 },
+        { 0.0557 * 0.95047, -0.2040, 1.0570 * 1.08883 } });
+    // L, 500 f(t) and 200 f(t) of each step of X, Y or Z, the last two
+    // with 8 bits of fraction.
+    private static final int[] L_OF_Y = new int[TABLE_SIZE];
+    private static final int[] F_500 = new int[TABLE_SIZE];
+    private static final int[] F_200 = new int[TABLE_SIZE];
+    // f(t) of Y for each L, and t for each step of f(t) from F_MIN to
+    // F_MAX, as linear light.
+    private static final double F_MIN = -0.25, F_MAX = 1.5;
+    private static final int[] F_OF_L = new int[LEVELS];
+    private static final int[] F_INVERSE = new int[TABLE_SIZE];
+    private static final int F_BITS = 16;
+
+    static {
+        for (int v = 0; v < LEVELS; v++) {
+            Y_R[v] = fixed(0.299 * v) + HALF;
+            Y_G[v] = fixed(0.587 * v);
+            Y_B[v] = fixed(0.114 * v);
+            CB_R[v] = fixed(-0.168736 * v + 128) + HALF;
+            CB_G[v] = fixed(-0.331264 * v);
+            CB_B[v] = fixed(0.5 * v);
+            CR_R[v] = fixed(0.5 * v + 128) + HALF;
+            CR_G[v] = fixed(-0.418688 * v);
+            CR_B[v] = fixed(-0.081312 * v);
+            R_CR[v] = fixed(1.402 * (v - 128)) + HALF;
+            G_CB[v] = fixed(-0.344136 * (v - 128)) + HALF;
+            G_CR[v] = fixed(-0.714136 * (v - 128));
+            B_CB[v] = fixed(1.772 * (v - 128)) + HALF;
+            if (v > 0) {
+                RECIPROCALS[v] = fixed(1.0 / v);
+                SATURATIONS[v] = fixed(255.0 / v);
+            }
+        }
+
+        final int[][] average = new int[3][LEVELS];
+        final int[][] luminescence = new int[3][LEVELS];
+        final int[][] rec601 = new int[3][LEVELS];
+        final int[][] rec709 = new int[3][LEVELS];
+        for (int v = 0; v < LEVELS; v++) {
+            average[0][v] = average[1][v] = average[2][v] = v * 21846;
+            luminescence[0][v] = 21 * v * 5243;
+            luminescence[1][v] = 71 * v * 5243;
+            luminescence[2][v] = 7 * v * 5243;
+            rec601[0][v] = Y_R[v];
+            rec601[1][v] = Y_G[v];
+            rec601[2][v] = Y_B[v];
+            rec709[0][v] = fixed(0.2126 * v) + HALF;
+            rec709[1][v] = fixed(0.7152 * v);
+            rec709[2][v] = fixed(0.0722 * v);
+        }
+        lumaTables(Luma.AVERAGE, average, 16);
+        lumaTables(Luma.LUMINESCENCE, luminescence, 19);
+        lumaTables(Luma.REC_601, rec601, FRACTION_BITS);
+        lumaTables(Luma.REC_709, rec709, FRACTION_BITS);
+
+        // (International Telecommunication Union, 2002)
+        for (int v = 0; v < LEVELS; v++) {
+            final double c = v / 255.0;
+            TO_LINEAR[v] = (int) Math.round(((1 << LINEAR_BITS) - 1)
+                    * (c <= 0.04045 ? c / 12.92
+                    : Math.pow((c + 0.055) / 1.055, 2.4)));
+        }
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            final double t = (i + 0.5) / TABLE_SIZE;
+            TO_SRGB[i] = (int) Math.round(255 * (t <= 0.0031308 ? 12.92 * t
+                    : 1.055 * Math.pow(t, 1 / 2.4) - 0.055));
+            final double f = lab(t);
+            L_OF_Y[i] = PixelStore.clamp((int) Math.round((116 * f - 16)
+                    * 255 / 100));
+            F_500[i] = (int) Math.round(500 * 256 * f);
+            F_200[i] = (int) Math.round(200 * 256 * f);
+            final double g = F_MIN + (F_MAX - F_MIN) * i / (TABLE_SIZE - 1);
+            F_INVERSE[i] = (int) Math.round(((1 << LINEAR_BITS) - 1)
+                    * labInverse(g));
+        }
+        for (int v = 0; v < LEVELS; v++) {
+            F_OF_L[v] = (int) Math.round((1 << F_BITS)
+                    * (v * 100 / 255.0 + 16) / 116);
+        }
+    }
+
+    private ColourSpace() {
+    }
+
+    private static int fixed(double value) {
+        return (int) Math.round(value * (1 << FRACTION_BITS));
+    }
+
+    private static void lumaTables(Luma luma, int[][] tables, int shift) {
+        LUMA_TABLES[luma.ordinal()] = tables;
+        LUMA_SHIFTS[luma.ordinal()] = shift;
+    }
+
+    private static int[][] matrix(double[][] values) {
+        final int[][] matrix = new int[3][3];
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                matrix[row][col] = (int) Math.round(values[row][col]
+                        * (1 << MATRIX_BITS));
+            }
+        }
+        return matrix;
+    }
+
+    private static double lab(double t) {
+        return t > 216 / 24389.0 ? Math.cbrt(t) : (24389 / 27.0 * t + 16)
+                / 116;
+    }
+
+    private static double labInverse(double f) {
+        return Math.max(0, f > 6 / 29.0 ? f * f * f : (116 * f - 16) * 27
+                / 24389);
+    }
+
+    // Writes the gray of each pixel of a colour source into the one layer
+    // of gray, in parallel bands.
+    // (Cook 2009)
+    // (International Telecommunication Union, 2011)
+    public static void toGray(final PixelStore source, final PixelStore gray,
+            final Luma luma) {
+        if (source.getPlanes() != 3 || gray.getPlanes() != 1) {
+            throw new IllegalArgumentException("Colour to gray only");
+        }
+        final int w = source.getWidth();
+        ParallelEngine.forEachRow(source.getHeight(),
+                new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                final int[] pixels = new int[w];
+                final int[] result = new int[w];
+                for (int row = firstRow; row < endRow; row++) {
+                    source.getPixels(row, 0, 0, 1, w, pixels, 0);
+                    toGray(luma, pixels, result, w);
+                    gray.setRow(0, row, result);
+                }
+            }
+        });
+    }
+
+    // Gray of count packed pixels.
+    public static void toGray(Luma luma, int[] pixels, int[] gray,
+            int count) {
+        final int[][] tables = LUMA_TABLES[luma.ordinal()];
+        final int[] red = tables[0], green = tables[1], blue = tables[2];
+        final int shift = LUMA_SHIFTS[luma.ordinal()];
+        for (int i = 0; i < count; i++) {
+            final int pixel = pixels[i];
+            gray[i] = red[pixel & 0xff] + green[pixel >> 8 & 0xff]
+                    + blue[pixel >> 16 & 0xff] >> shift;
+        }
+    }
+
+    // Converts a colour image from RGB into the space, or with back set,
+    // from the space into RGB, in place and in parallel bands.
+    public static void convert(final PixelStore image, final Space space,
+            final boolean back) {
+        if (image.getPlanes() != 3) {
+            throw new IllegalArgumentException("Colour images only");
+        }
+        final int w = image.getWidth();
+        ParallelEngine.forEachRow(image.getHeight(),
+                new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                final int[] pixels = new int[w];
+                for (int row = firstRow; row < endRow; row++) {
+                    image.getPixels(row, 0, 0, 1, w, pixels, 0);
+                    if (back) {
+                        fromSpace(space, pixels, w);
+                    } else {
+                        toSpace(space, pixels, w);
+                    }
+                    image.setPixels(row, 0, w, pixels, 0);
+                }
+            }
+        });
+    }
+
+    // Converts count packed RGB pixels into the space, in place.
+    public static void toSpace(Space space, int[] pixels, int count) {
+        switch (space) {
+            case HSV:
+                toHsv(pixels, count);
+                break;
+            case YCBCR:
+                toYCbCr(pixels, count);
+                break;
+            default:
+                toLab(pixels, count);
+        }
+    }
+
+    // Converts count packed pixels of the space into RGB, in place.
+    public static void fromSpace(Space space, int[] pixels, int count) {
+        switch (space) {
+            case HSV:
+                fromHsv(pixels, count);
+                break;
+            case YCBCR:
+                fromYCbCr(pixels, count);
+                break;
+            default:
+                fromLab(pixels, count);
+        }
+    }
+
+    // (Hamilton 1992)
+    private static void toYCbCr(int[] pixels, int count) {
+        for (int i = 0; i < count; i++) {
+            final int r = pixels[i] & 0xff, g = pixels[i] >> 8 & 0xff;
+            final int b = pixels[i] >> 16 & 0xff;
+            final int y = Y_R[r] + Y_G[g] + Y_B[b] >> FRACTION_BITS;
+            final int cb = CB_R[r] + CB_G[g] + CB_B[b] >> FRACTION_BITS;
+            final int cr = CR_R[r] + CR_G[g] + CR_B[b] >> FRACTION_BITS;
+            pixels[i] = clamp(y) | clamp(cb) << 8 | clamp(cr) << 16;
+        }
+    }
+
+    // (Hamilton 1992)
+    private static void fromYCbCr(int[] pixels, int count) {
+        for (int i = 0; i < count; i++) {
+            final int y = (pixels[i] & 0xff) << FRACTION_BITS;
+            final int cb = pixels[i] >> 8 & 0xff, cr = pixels[i] >> 16 & 0xff;
+            final int r = y + R_CR[cr] >> FRACTION_BITS;
+            final int g = y + G_CB[cb] + G_CR[cr] >> FRACTION_BITS;
+            final int b = y + B_CB[cb] >> FRACTION_BITS;
+            pixels[i] = clamp(r) | clamp(g) << 8 | clamp(b) << 16;
+        }
+    }
+
+    // Hue is worked out in 1536 steps, 256 to each sixth of the circle.
+    // (Smith, 1978, pp. 12--19)
+    private static void toHsv(int[] pixels, int count) {
+        for (int i = 0; i < count; i++) {
+            final int r = pixels[i] & 0xff, g = pixels[i] >> 8 & 0xff;
+            final int b = pixels[i] >> 16 & 0xff;
+            final int max = Math.max(r, Math.max(g, b));
+            final int delta = max - Math.min(r, Math.min(g, b));
+            int hue = 0;
+            if (delta != 0) {
+                final int step = RECIPROCALS[delta];
+                if (max == r) {
+                    hue = (g - b) * step >> 8;
+                } else if (max == g) {
+                    hue = 512 + ((b - r) * step >> 8);
+                } else {
+                    hue = 1024 + ((r - g) * step >> 8);
+                }
+                if (hue < 0) {
+                    hue += 1536;
+                }
+            }
+            final int h = (hue * 10923 + HALF >> FRACTION_BITS) & 0xff;
+            final int s = delta * SATURATIONS[max] + HALF >> FRACTION_BITS;
+            pixels[i] = h | clamp(s) << 8 | max << 16;
+        }
+    }
+
+    // (Smith, 1978, pp. 12--19)
+    private static void fromHsv(int[] pixels, int count) {
+        for (int i = 0; i < count; i++) {
+            final int hue = (pixels[i] & 0xff) * 6;
+            final int s = pixels[i] >> 8 & 0xff, v = pixels[i] >> 16 & 0xff;
+            final int sector = hue >> 8, f = hue & 0xff;
+            final int p = divide255(v * (255 - s));
+            final int q = divide255(v * (255 - (s * f >> 8)));
+            final int t = divide255(v * (255 - (s * (256 - f) >> 8)));
+            final int r, g, b;
+            switch (sector) {
+                case 0:
+                    r = v; g = t; b = p;
+                    break;
+                case 1:
+                    r = q; g = v; b = p;
+                    break;
+                case 2:
+                    r = p; g = v; b = t;
+                    break;
+                case 3:
+                    r = p; g = q; b = v;
+                    break;
+                case 4:
+                    r = t; g = p; b = v;
+                    break;
+                default:
+                    r = v; g = p; b = q;
+            }
+            pixels[i] = r | g << 8 | b << 16;
+        }
+    }
+
+    // x / 255, rounded, for x up to 65535.
+    private static int divide255(int x) {
+        return (x + 128) * 257 >> 16;
+    }
+
+    private static void toLab(int[] pixels, int count) {
+        final int[] x = TO_XYZ[0], y = TO_XYZ[1], z = TO_XYZ[2];
+        final int shift = LINEAR_BITS + MATRIX_BITS - TABLE_BITS;
+        for (int i = 0; i < count; i++) {
+            final int r = TO_LINEAR[pixels[i] & 0xff];
+            final int g = TO_LINEAR[pixels[i] >> 8 & 0xff];
+            final int b = TO_LINEAR[pixels[i] >> 16 & 0xff];
+            final int xi = step(x[0] * r + x[1] * g + x[2] * b >> shift);
+            final int yi = step(y[0] * r + y[1] * g + y[2] * b >> shift);
+            final int zi = step(z[0] * r + z[1] * g + z[2] * b >> shift);
+            final int l = L_OF_Y[yi];
+            final int a = (F_500[xi] - F_500[yi] + 128 >> 8) + 128;
+            final int bb = (F_200[yi] - F_200[zi] + 128 >> 8) + 128;
+            pixels[i] = l | clamp(a) << 8 | clamp(bb) << 16;
+        }
+    }
+
+    private static void fromLab(int[] pixels, int count) {
+        final int[] r = FROM_XYZ[0], g = FROM_XYZ[1], b = FROM_XYZ[2];
+        // f(t) to a step of F_INVERSE, in F_BITS fixed point.
+        final double scale = (TABLE_SIZE - 1) / (F_MAX - F_MIN);
+        final int origin = (int) Math.round(-F_MIN * (1 << F_BITS));
+        final int stepScale = (int) Math.round(scale * (1 << 8));
+        final int shift = LINEAR_BITS + MATRIX_BITS - TABLE_BITS;
+        for (int i = 0; i < count; i++) {
+            final int fy = F_OF_L[pixels[i] & 0xff];
+            final int a = (pixels[i] >> 8 & 0xff) - 128;
+            final int bb = (pixels[i] >> 16 & 0xff) - 128;
+            // a / 500 and b / 200 in F_BITS fixed point.
+            final int fx = fy + a * ((1 << F_BITS) / 500);
+            final int fz = fy - bb * ((1 << F_BITS) / 200);
+            // Light beyond the white point times the matrix may not fit an
+            // int.
+            final long x = F_INVERSE[inverseStep(fx + origin, stepScale)];
+            final long y = F_INVERSE[inverseStep(fy + origin, stepScale)];
+            final long z = F_INVERSE[inverseStep(fz + origin, stepScale)];
+            final int red = TO_SRGB[step(r[0] * x + r[1] * y + r[2] * z
+                    >> shift)];
+            final int green = TO_SRGB[step(g[0] * x + g[1] * y + g[2] * z
+                    >> shift)];
+            final int blue = TO_SRGB[step(b[0] * x + b[1] * y + b[2] * z
+                    >> shift)];
+            pixels[i] = red | green << 8 | blue << 16;
+        }
+    }
+
+    private static int step(long value) {
+        return (int) Math.max(0, Math.min(TABLE_SIZE - 1, value));
+    }
+
+    private static int inverseStep(int f, int stepScale) {
+        return step((long) f * stepScale + (1 << F_BITS + 7) >> F_BITS + 8);
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
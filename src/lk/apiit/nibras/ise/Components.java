@@ -0,0 +1,251 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file finds the connected parts, or blobs, of an image: the groups of
+ * pixels of a given value that touch each other along a side or at a corner.
+ * Each pixel of a blob is given the number of its blob, and the area, bounds
+ * and centre of each blob are worked out.
+ *
+ * The image is read a band of rows at a time in parallel. Each pixel of a
+ * band is joined to those of its neighbours before it that belong to the
+ * band, the pixels joined so far being kept as trees, one per blob, in a
+ * single array of the index of each pixel's parent. A pixel's parent always
+ * comes before it, so a band only ever changes its own part of the array.
+ * Once all bands are done, the first row of each band is joined to the last
+ * row of the band above it. Finally the pixels are numbered in order, each
+ * taking the number of its parent, which comes before it and so has been
+ * numbered already. Nothing is recursive, so blobs of any size are fine.
+ *
+ * References:
+ *
+ * Amarasinghe, U. (n.d). Basic Effects. [PowerPoint slides]. Colombo: Asia
+ * Pacific Institute of Information Technology. Available at: Learning
+ * Management System APIIT City Campus. Imaging and Special Effects.
+ * <http://lms.apiit.lk/course/view.php?id=1815> (accessed 6th January 2014)
+ *
+ * Wu, K., Otoo, E. and Suzuki, K. 2009. Optimizing two-pass
+ * connected-component labeling algorithms. Pattern Analysis and
+ * Applications, 12 (2), pp. 117--135.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class Components {
+
+    // A blob, with its size and where it is.
+    public static final class Component {
+
+        private int area;
+        private int top, left, bottom, right;
+        private long rowSum, colSum;
+
+        private Component(int row, int col) {
+            top = bottom = row;
+            left = right = col;
+        }
+
+        private void add(int row, int col) {
+            area++;
+            top = Math.min(top, row);
+            bottom = Math.max(bottom, row);
+            left = Math.min(left, col);
+            right = Math.max(right, col);
+            rowSum += row;
+            colSum += col;
+        }
+
+        // Number of pixels of the blob.
+        public int getArea() {
+            return area;
+        }
+
+        // Smallest rectangle holding the blob, x being the column and y the
+        // row.
+        public Rectangle getBounds() {
+            return new Rectangle(left, top, right - left + 1,
+                    bottom - top + 1);
+        }
+
+        public double getCentreRow() {
+            return (double) rowSum / area;
+        }
+
+        public double getCentreColumn() {
+            return (double) colSum / area;
+        }
+    }
+
+    private final int height, width;
+    // Number of the blob of each pixel, row after row, from 1. Pixels not
+    // in a blob are 0.
+    private final int[] labels;
+    private final List<Component> components = new ArrayList<Component>();
+
+    // Reads a row of the image into line.
+    private interface Rows {
+
+        void getRow(int row, int[] line);
+    }
+
+    // Finds the blobs of pixels whose sample of the given layer is value.
+    public Components(final PixelStore image, final int plane, int value) {
+        this(image.getHeight(), image.getWidth(), new Rows() {
+            @Override
+            public void getRow(int row, int[] line) {
+                image.getRow(plane, row, line);
+            }
+        }, value);
+    }
+
+    // Finds the white blobs of a black and white image, or with white not
+    // set, the black blobs.
+    public Components(final BinaryImage image, boolean white) {
+        this(image.getHeight(), image.getWidth(), new Rows() {
+            @Override
+            public void getRow(int row, int[] line) {
+                image.getRow(row, line);
+            }
+        }, white ? 1 : 0);
+    }
+
+    // (Amarasinghe n.d.)
+    // (Wu and Otoo et al., 2009, pp. 117--135)
+    private Components(int height, final int width, final Rows rows,
+            final int value) {
+        this.height = height;
+        this.width = width;
+        labels = new int[height * width];
+
+        // While joining, each entry holds the index, plus one, of the
+        // pixel's parent; a pixel that is its own parent is the root of
+        // its tree.
+        final List<Integer> seams = Collections.synchronizedList(
+                new ArrayList<Integer>());
+        ParallelEngine.forEachRow(height, new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                if (firstRow > 0) {
+                    seams.add(firstRow);
+                }
+                final int[] line = new int[width];
+                for (int row = firstRow; row < endRow; row++) {
+                    rows.getRow(row, line);
+                    final int start = row * width;
+                    for (int col = 0; col < width; col++) {
+                        if (line[col] != value) {
+                            continue;
+                        }
+                        final int node = start + col + 1;
+                        labels[node - 1] = node;
+                        if (col > 0 && labels[node - 2] != 0) {
+                            join(node, node - 1);
+                        }
+                        if (row > firstRow) {
+                            joinAbove(node, row, col);
+                        }
+                    }
+                }
+            }
+        });
+        for (int row : seams) {
+            for (int col = 0; col < width; col++) {
+                final int node = row * width + col + 1;
+                if (labels[node - 1] != 0) {
+                    joinAbove(node, row, col);
+                }
+            }
+        }
+
+        // Number the blobs in the order of their first pixel.
+        for (int index = 0; index < labels.length; index++) {
+            final int parent = labels[index];
+            if (parent == 0) {
+                continue;
+            }
+            final int row = index / width, col = index % width;
+            final Component component;
+            if (parent == index + 1) {
+                component = new Component(row, col);
+                components.add(component);
+                labels[index] = components.size();
+            } else {
+                labels[index] = labels[parent - 1];
+                component = components.get(labels[index] - 1);
+            }
+            component.add(row, col);
+        }
+    }
+
+    // Joins a pixel to those of its three neighbours in the row above that
+    // are in a blob.
+    private void joinAbove(int node, int row, int col) {
+        final int above = node - width;
+        if (col > 0 && labels[above - 2] != 0) {
+            join(node, above - 1);
+        }
+        if (labels[above - 1] != 0) {
+            join(node, above);
+        }
+        if (col < width - 1 && labels[above] != 0) {
+            join(node, above + 1);
+        }
+    }
+
+    // Puts two pixels in the same tree, the later root becoming a child of
+    // the earlier.
+    private void join(int a, int b) {
+        a = root(a);
+        b = root(b);
+        if (a < b) {
+            labels[b - 1] = a;
+        } else if (b < a) {
+            labels[a - 1] = b;
+        }
+    }
+
+    // Finds the root of a pixel, pointing each pixel passed on the way to
+    // its grandparent so the next search is shorter.
+    private int root(int node) {
+        while (labels[node - 1] != node) {
+            labels[node - 1] = labels[labels[node - 1] - 1];
+            node = labels[node - 1];
+        }
+        return node;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    // Number of blobs.
+    public int getCount() {
+        return components.size();
+    }
+
+    // Number of the blob of a pixel, from 1, or 0 if it is in none.
+    public int getLabel(int row, int col) {
+        return labels[row * width + col];
+    }
+
+    // Blob number label.
+    public Component getComponent(int label) {
+        return components.get(label - 1);
+    }
+
+    public List<Component> getComponents() {
+        return Collections.unmodifiableList(components);
+    }
+}
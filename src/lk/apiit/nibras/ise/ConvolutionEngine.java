@@ -0,0 +1,365 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file convolves images with masks of any size. The image is processed
+ * in tiles a few hundred columns wide, in bands of rows that are spread over
+ * all processors by the ParallelEngine. For each tile only the rows covered
+ * by the mask are kept, for all layers at once, so the samples being worked
+ * on stay in the processor cache. Pixels beyond the edge of the image take
+ * the value of the nearest edge pixel, so every pixel is filtered.
+ *
+ * Masks that are the product of a column and a row of weights (separable
+ * masks, such as the box and the first Gaussian mask) are applied as a pass
+ * along each row followed by a pass down each column. This costs the width
+ * plus the height of the mask per pixel instead of their product, and gives
+ * exactly the same result, which is what makes large blurs affordable.
+ *
+ * References:
+ *
+ * Amarasinghe, U. (n.d). Basic Effects. [PowerPoint slides]. Colombo: Asia
+ * Pacific Institute of Information Technology. Available at: Learning
+ * Management System APIIT City Campus. Imaging and Special Effects.
+ * <http://lms.apiit.lk/course/view.php?id=1815> (accessed 6th January 2014)
+ *
+ * Durovic I. (n.d). Digital image processing. [PowerPoint slides].
+ * <www.etf.ucg.ac.me/Digital%20image%20processing.pdf?> (accessed 6th January
+ * 2014)
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+public class ConvolutionEngine {
+
+    // Columns processed at a time.
+    private static final int TILE_WIDTH = 256;
+
+    // Weights are scaled so that each pass of a Gaussian adds up to about
+    // this. Both passes together stay well within an int.
+    private static final int GAUSSIAN_SCALE = 2048;
+
+    private final int kernelHeight, kernelWidth;
+    // Position, within the mask, of the pixel being computed.
+    private final int anchorRow, anchorCol;
+    // Weights of the mask that are not zero, along with their position.
+    private final int[] tapRows, tapCols, tapWeights;
+    // Weights of the two passes of a separable mask. Null otherwise.
+    private final int[] columnWeights, rowWeights;
+    private final int weightSum;
+
+    // Applies the mask given by the product of a column and a row of
+    // weights, without forming the mask.
+    public ConvolutionEngine(int[] columnWeights, int[] rowWeights) {
+        if (columnWeights.length == 0 || rowWeights.length == 0) {
+            throw new IllegalArgumentException("Mask is empty");
+        }
+        kernelHeight = columnWeights.length;
+        kernelWidth = rowWeights.length;
+        anchorRow = kernelHeight / 2;
+        anchorCol = kernelWidth / 2;
+        this.columnWeights = columnWeights.clone();
+        this.rowWeights = rowWeights.clone();
+        tapRows = tapCols = tapWeights = null;
+        weightSum = sum(columnWeights) * sum(rowWeights);
+    }
+
+    public ConvolutionEngine(short[][] mask) {
+        if (mask.length == 0 || mask[0].length == 0) {
+            throw new IllegalArgumentException("Mask is empty");
+        }
+        kernelHeight = mask.length;
+        kernelWidth = mask[0].length;
+        anchorRow = kernelHeight / 2;
+        anchorCol = kernelWidth / 2;
+
+        int taps = 0, sum = 0;
+        for (short[] maskRow : mask) {
+            if (maskRow.length != kernelWidth) {
+                throw new IllegalArgumentException("Mask is not rectangular");
+            }
+            for (short weight : maskRow) {
+                sum += weight;
+                if (weight != 0) {
+                    taps++;
+                }
+            }
+        }
+        weightSum = sum;
+
+        final int[][] factors = factorise(mask);
+        if (factors != null) {
+            columnWeights = factors[0];
+            rowWeights = factors[1];
+            tapRows = tapCols = tapWeights = null;
+            return;
+        }
+        columnWeights = rowWeights = null;
+
+        tapRows = new int[taps];
+        tapCols = new int[taps];
+        tapWeights = new int[taps];
+        taps = 0;
+        for (int i = 0; i < kernelHeight; i++) {
+            for (int j = 0; j < kernelWidth; j++) {
+                if (mask[i][j] != 0) {
+                    tapRows[taps] = i;
+                    tapCols[taps] = j;
+                    tapWeights[taps++] = mask[i][j];
+                }
+            }
+        }
+    }
+
+    // A Gaussian blur reaching radius pixels from each pixel. The standard
+    // deviation is a third of the radius, so the weights cut off are small.
+    public static ConvolutionEngine gaussian(int radius) {
+        if (radius < 1) {
+            throw new IllegalArgumentException("Radius must be at least 1");
+        }
+        final double sigma = radius / 3.0;
+        final double[] curve = new double[2 * radius + 1];
+        double total = 0;
+        for (int i = -radius; i <= radius; i++) {
+            curve[i + radius] = Math.exp(-i * i / (2 * sigma * sigma));
+            total += curve[i + radius];
+        }
+
+        final int[] weights = new int[curve.length];
+        for (int i = 0; i < curve.length; i++) {
+            weights[i] = (int) Math.round(curve[i] * GAUSSIAN_SCALE / total);
+        }
+
+        return new ConvolutionEngine(weights, weights);
+    }
+
+    // Finds a column and a row of weights whose product is the mask. Returns
+    // null if there are none, that is if the mask is not separable.
+    private static int[][] factorise(short[][] mask) {
+        int pivot = 0;
+        while (pivot < mask.length && isZero(mask[pivot])) {
+            pivot++;
+        }
+        if (pivot == mask.length) {
+            return null; // All zero. Nothing to gain.
+        }
+
+        // Every row of a separable mask is a multiple of any other row that
+        // isn't zero. Dividing a row by the greatest common divisor of its
+        // weights gives a row of which every other row is a whole multiple.
+        int divisor = 0;
+        for (short weight : mask[pivot]) {
+            divisor = gcd(divisor, Math.abs(weight));
+        }
+        final int[] row = new int[mask[pivot].length];
+        int first = -1;
+        for (int j = 0; j < row.length; j++) {
+            row[j] = mask[pivot][j] / divisor;
+            if (first < 0 && row[j] != 0) {
+                first = j;
+            }
+        }
+
+        final int[] column = new int[mask.length];
+        for (int i = 0; i < mask.length; i++) {
+            column[i] = mask[i][first] / row[first];
+            for (int j = 0; j < row.length; j++) {
+                if (mask[i][j] != column[i] * row[j]) {
+                    return null;
+                }
+            }
+        }
+
+        return new int[][]{column, row};
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private static int sum(int[] weights) {
+        int sum = 0;
+        for (int weight : weights) {
+            sum += weight;
+        }
+        return sum;
+    }
+
+    private static boolean isZero(short[] weights) {
+        for (short weight : weights) {
+            if (weight != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isSeparable() {
+        return columnWeights != null;
+    }
+
+    public int getWeightSum() {
+        return weightSum;
+    }
+
+    // Returns the weighted sum of the neighbourhood of each pixel, as one
+    // array of height * width values per layer.
+    public int[][] convolve(PixelStore source) {
+        final int w = source.getWidth();
+        final int[][] result = new int[source.getPlanes()][source.getHeight()
+                * w];
+
+        run(source, new Output() {
+            @Override
+            public void write(int layer, int row, int col, int[] sums,
+                    int count) {
+                System.arraycopy(sums, 0, result[layer], row * w + col, count);
+            }
+        });
+
+        return result;
+    }
+
+    // Writes the weighted average of the neighbourhood of each pixel into
+    // target, which must be the same size as source. Masks whose weights
+    // add up to zero are not averaged.
+    public void average(PixelStore source, final PixelStore target) {
+        final int divisor = weightSum == 0 ? 1 : weightSum;
+
+        run(source, new Output() {
+            @Override
+            public void write(int layer, int row, int col, int[] sums,
+                    int count) {
+                for (int i = 0; i < count; i++) {
+                    sums[i] = PixelStore.clamp(sums[i] / divisor);
+                }
+                target.setRow(layer, row, col, count, sums, 0);
+            }
+        });
+    }
+
+    // Receives the sums of count pixels of a row, starting at col.
+    private interface Output {
+
+        void write(int layer, int row, int col, int[] sums, int count);
+    }
+
+    private void run(final PixelStore source, final Output output) {
+        final int l = source.getPlanes();
+        final int h = source.getHeight();
+        final int w = source.getWidth();
+
+        final ParallelEngine.RowKernel kernel = new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                final int tileWidth = Math.min(TILE_WIDTH, w);
+                // Source rows covered by the mask, padded by the mask on
+                // either side. Used as a ring, indexed by source row. For
+                // separable masks the rows are kept after the pass along
+                // them, so they are no longer padded.
+                final int[][][] window = new int[l][kernelHeight][isSeparable()
+                        ? tileWidth : tileWidth + kernelWidth - 1];
+                final int[] line = new int[tileWidth + kernelWidth - 1];
+                final int[] sums = new int[TILE_WIDTH];
+
+                for (int tileCol = 0; tileCol < w; tileCol += TILE_WIDTH) {
+                    final int count = Math.min(TILE_WIDTH, w - tileCol);
+
+                    for (int row = firstRow; row < endRow; row++) {
+                        // Only the bottom row of the mask is new, except
+                        // for the first row of the band.
+                        final int lastSrcRow = row - anchorRow
+                                + kernelHeight - 1;
+                        for (int srcRow = row == firstRow ? row - anchorRow
+                                : lastSrcRow; srcRow <= lastSrcRow; srcRow++) {
+                            for (int layer = 0; layer < l; layer++) {
+                                if (isSeparable()) {
+                                    loadRow(source, layer, srcRow, tileCol,
+                                            count, line);
+                                    filterRow(line, count,
+                                            window[layer][slot(srcRow)]);
+                                } else {
+                                    loadRow(source, layer, srcRow, tileCol,
+                                            count, window[layer][slot(srcRow)]);
+                                }
+                            }
+                        }
+
+                        for (int layer = 0; layer < l; layer++) {
+                            for (int i = 0; i < count; i++) {
+                                sums[i] = 0;
+                            }
+                            if (isSeparable()) {
+                                filterColumns(window[layer], row, count, sums);
+                            } else {
+                                filter(window[layer], row, count, sums);
+                            }
+                            output.write(layer, row, tileCol, sums, count);
+                        }
+                    }
+                }
+            }
+        };
+
+        // Each band loads the rows above it covered by the mask again, so
+        // bands are kept at least as tall as the mask.
+        ParallelEngine.forEachRow(h, kernelHeight, kernel);
+    }
+
+    // Adds the full mask around each pixel of a row to sums.
+    private void filter(int[][] window, int row, int count, int[] sums) {
+        for (int tap = 0; tap < tapWeights.length; tap++) {
+            final int[] line = window[slot(row - anchorRow + tapRows[tap])];
+            final int weight = tapWeights[tap];
+            final int offset = tapCols[tap];
+            for (int i = 0; i < count; i++) {
+                sums[i] += weight * line[i + offset];
+            }
+        }
+    }
+
+    // First pass of a separable mask, along a padded row.
+    private void filterRow(int[] line, int count, int[] filtered) {
+        for (int i = 0; i < count; i++) {
+            filtered[i] = 0;
+        }
+        for (int j = 0; j < kernelWidth; j++) {
+            final int weight = rowWeights[j];
+            if (weight == 0) {
+                continue;
+            }
+            for (int i = 0; i < count; i++) {
+                filtered[i] += weight * line[i + j];
+            }
+        }
+    }
+
+    // Second pass of a separable mask, down the rows already filtered.
+    private void filterColumns(int[][] window, int row, int count, int[] sums) {
+        for (int k = 0; k < kernelHeight; k++) {
+            final int weight = columnWeights[k];
+            if (weight == 0) {
+                continue;
+            }
+            final int[] filtered = window[slot(row - anchorRow + k)];
+            for (int i = 0; i < count; i++) {
+                sums[i] += weight * filtered[i];
+            }
+        }
+    }
+
+    private int slot(int srcRow) {
+        final int slot = srcRow % kernelHeight;
+        return slot < 0 ? slot + kernelHeight : slot;
+    }
+
+    // Loads the part of a source row under the mask while it moves across a
+    // tile. Rows and columns beyond the edges repeat the edge pixels.
+    private void loadRow(PixelStore source, int layer, int srcRow,
+            int tileCol, int count, int[] line) {
+        source.getRowClamped(layer, srcRow, tileCol - anchorCol, count
+                + kernelWidth - 1, line, 0);
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file finds the strength of the edge at each pixel with the Sobel
+ * operator. The horizontal and vertical gradients are found together from
+ * the three rows around each row and turned into a strength straight away,
+ * so neither is ever stored for the whole image. The strength is the length
+ * of the gradient, taken from a table of square roots, or the sum of the
+ * sizes of the two gradients, which is cheaper and close enough for many
+ * uses. Strengths are cut off at 255, so only the square roots of numbers
+ * below 256 x 256 are needed. The direction of each gradient may be given
+ * too, rounded to one of four directions, for edge steps that follow.
+ *
+ * Pixels beyond the edge of the image take the value of the nearest edge
+ * pixel.
+ *
+ * References:
+ *
+ * Amarasinghe, U. (n.d). Basic Effects. [PowerPoint slides]. Colombo: Asia
+ * Pacific Institute of Information Technology. Available at: Learning
+ * Management System APIIT City Campus. Imaging and Special Effects.
+ * <http://lms.apiit.lk/course/view.php?id=1815> (accessed 6th January 2014)
+ *
+ * Durovic I. (n.d). Digital image processing. [PowerPoint slides].
+ * <www.etf.ucg.ac.me/Digital%20image%20processing.pdf?> (accessed 6th January
+ * 2014)
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+public class GradientEngine {
+
+    public static enum Magnitude {
+
+        // Square root of the sum of the squares of the gradients.
+        EXACT,
+        // Sum of the sizes of the gradients.
+        ABSOLUTE_SUM
+    }
+
+    // Directions of a gradient, rounded to the nearest 45 degrees. The
+    // gradient points along the row, down and to the right (or up and to
+    // the left), down the column, or down and to the left.
+    public static final byte HORIZONTAL = 0, DIAGONAL = 1, VERTICAL = 2,
+            ANTI_DIAGONAL = 3;
+
+    // tan(22.5) and tan(67.5) in 1/256ths, for rounding directions.
+    private static final int TAN_22_5 = 106, TAN_67_5 = 618;
+
+    // Whole square root of every number below 256 x 256.
+    private static final byte[] ROOTS = new byte[256 * 256];
+
+    static {
+        for (int root = 0; root < 256; root++) {
+            for (int n = root * root; n < (root + 1) * (root + 1); n++) {
+                ROOTS[n] = (byte) root;
+            }
+        }
+    }
+
+    private final Magnitude magnitude;
+
+    public GradientEngine(Magnitude magnitude) {
+        this.magnitude = magnitude;
+    }
+
+    // Writes the strength of the edge at each pixel of source into target,
+    // which must be the same size as source. If directions is not null, the
+    // direction of each gradient is written into it too, one array per
+    // layer laid out row after row.
+    public void magnitude(PixelStore source, PixelStore target,
+            byte[][] directions) {
+        run(source, target, false, directions);
+    }
+
+    // Writes each pixel of source plus the strength of its edge into
+    // target, which must be the same size as source.
+    public void sharpen(PixelStore source, PixelStore target) {
+        run(source, target, true, null);
+    }
+
+    private void run(final PixelStore source, final PixelStore target,
+            final boolean sharpen, final byte[][] directions) {
+        final int w = source.getWidth();
+        ParallelEngine.forEachRow(source.getHeight(),
+                new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                final int[] above = new int[w + 2], middle = new int[w + 2],
+                        below = new int[w + 2];
+                final int[] result = new int[w];
+
+                for (int row = firstRow; row < endRow; row++) {
+                    for (int layer = 0; layer < source.getPlanes(); layer++) {
+                        source.getRowClamped(layer, row - 1, -1, w + 2, above,
+                                0);
+                        source.getRowClamped(layer, row, -1, w + 2, middle, 0);
+                        source.getRowClamped(layer, row + 1, -1, w + 2, below,
+                                0);
+
+                        filterRow(above, middle, below, w, result,
+                                directions == null ? null : directions[layer],
+                                row * w);
+                        if (sharpen) {
+                            for (int col = 0; col < w; col++) {
+                                result[col] = PixelStore.clamp(result[col]
+                                        + middle[col + 1]);
+                            }
+                        }
+                        target.setRow(layer, row, result);
+                    }
+                }
+            }
+        });
+    }
+
+    // Strength of the edge at each pixel of the middle row. The rows are
+    // padded by a pixel either side. Directions, if not null, are written
+    // from offset.
+    void filterRow(int[] above, int[] middle, int[] below, int w,
+            int[] strengths, byte[] directions, int offset) {
+        for (int col = 0; col < w; col++) {
+            // (Amarasinghe n.d.; Durovic n.d.)
+            final int x = above[col] + 2 * middle[col] + below[col]
+                    - above[col + 2] - 2 * middle[col + 2] - below[col + 2];
+            final int y = above[col] + 2 * above[col + 1] + above[col + 2]
+                    - below[col] - 2 * below[col + 1] - below[col + 2];
+
+            if (magnitude == Magnitude.EXACT) {
+                final int squares = x * x + y * y;
+                strengths[col] = squares < ROOTS.length ? ROOTS[squares] & 0xff
+                        : 255;
+            } else {
+                strengths[col] = Math.min(255, Math.abs(x) + Math.abs(y));
+            }
+
+            if (directions != null) {
+                directions[offset + col] = direction(x, y);
+            }
+        }
+    }
+
+    private static byte direction(int x, int y) {
+        final int ax = Math.abs(x), ay = Math.abs(y) * 256;
+        if (ay <= ax * TAN_22_5) {
+            return HORIZONTAL;
+        }
+        if (ay >= ax * TAN_67_5) {
+            return VERTICAL;
+        }
+        return (x > 0) == (y > 0) ? DIAGONAL : ANTI_DIAGONAL;
+    }
+}
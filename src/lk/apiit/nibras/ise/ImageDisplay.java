@@ -24,6 +24,7 @@
 package lk.apiit.nibras.ise;
 
 import java.awt.Graphics;
+import java.awt.Insets;
 import java.awt.Rectangle;
 
 import javax.swing.Icon;
@@ -81,6 +82,31 @@ public class ImageDisplay extends JLabel
 		repaint();
 	}
 	
+	// Repaints only the given region of the image being displayed instead of
+	// the entire label. The icon is centred within the label, so the region
+	// is moved to where the icon is drawn.
+	public void repaintImage(Rectangle region)
+	{
+		final Icon icon = getIcon();
+		if (icon == null)
+		{
+			repaint();
+			return;
+		}
+		
+		final Insets insets = getInsets();
+		final int x = insets.left
+				+ (getWidth() - insets.left - insets.right - icon.getIconWidth())
+				/ 2;
+		final int y = insets.top
+				+ (getHeight() - insets.top - insets.bottom - icon
+						.getIconHeight()) / 2;
+		
+		// A pixel of slack on each side covers rounding of the centring.
+		repaint(x + region.x - 1, y + region.y - 1, region.width + 2,
+				region.height + 2);
+	}
+	
 	public void paintComponent(Graphics g)
 	{
 		// (Anonymous, n.d.) and (Amarasinghe, n.d.)
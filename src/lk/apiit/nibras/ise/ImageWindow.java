@@ -131,13 +131,15 @@ public class ImageWindow extends JInternalFrame
 		// Resize the window to allow viewing entire image if possible.
 		this.setSize(image.getWidth(), image.getHeight());
 		
-		// Load the image to display.
-		imageIcon.setImage(image);
+		// Load the image to display. PixelImage may have converted the image
+		// into a layout it can work on directly, so display its copy.
+		imageIcon.setImage(pixelImage.getImage());
 		
 		// (Burke, 2011)
 		// (Campbell, 2007)
-		setFrameIcon(new ImageIcon(image.getScaledInstance(20, 20,
-				Image.SCALE_FAST)));
+		// Shrunk by averaging from the pyramid of the image, rather than
+		// sampling 20 x 20 of its pixels.
+		setFrameIcon(new ImageIcon(pixelImage.getThumbnail(20, 20)));
 		
 		NIMP.getInstance().getStatusBar().setProgress(100);
 		beginOperation("");
@@ -186,10 +188,20 @@ public class ImageWindow extends JInternalFrame
 	}
 	
 	// Helper to clear the status bar and display image once
-	// a task is complete.
+	// a task is complete. Only the part of the image changed by the task is
+	// repainted, unless PixelImage had to replace the image altogether.
 	private void updateOperationComplete()
 	{
-		repaint();
+		final Rectangle changed = pixelImage.takeDirtyRegion();
+		if (imageIcon.getImage() != pixelImage.getImage())
+		{
+			imageIcon.setImage(pixelImage.getImage());
+			repaint();
+		}
+		else if (changed != null)
+		{
+			imageDisplay.repaintImage(changed);
+		}
 		NIMP.getInstance().getStatusBar().setStatus("");
 		NIMP.getInstance().getStatusBar().setProgress(100);
 		setSaved(false);
@@ -256,10 +268,10 @@ public class ImageWindow extends JInternalFrame
 		
 		beginOperation("Negating Image...");
 		
-		pixelImage.negate();
-		imageIcon.setImage(pixelImage.getImage());
+		final int blobs = pixelImage.negate();
 		
 		updateOperationComplete();
+		NIMP.getInstance().getStatusBar().setStatus("Blobs: " + blobs);
 		
 	}
 	
@@ -269,7 +281,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Smoothing Image...");
 		
 		pixelImage.applyFilter(PixelImage.FILTERS.AVERAGE_BOX);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -281,7 +292,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Smoothing Image...");
 		
 		pixelImage.applyModeFilter();
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -293,7 +303,29 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Smoothing Image...");
 		
 		pixelImage.applyKValueFilter(k);
-		imageIcon.setImage(pixelImage.getImage());
+		
+		updateOperationComplete();
+		
+	}
+	
+	public void applyGaussianBlur(int radius)
+	{
+		
+		beginOperation("Smoothing Image...");
+		
+		pixelImage.applyGaussianBlur(radius);
+		
+		updateOperationComplete();
+		
+	}
+	
+	public void applyMorphology(MorphologyFilter.Operation operation,
+			int height, int width)
+	{
+		
+		beginOperation("Applying Morphology...");
+		
+		pixelImage.applyMorphology(operation, height, width);
 		
 		updateOperationComplete();
 		
@@ -305,7 +337,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Smoothing Image...");
 		
 		pixelImage.applyFilter(PixelImage.FILTERS.GAUSSIAN_BOX_1);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -317,7 +348,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Smoothing Image...");
 		
 		pixelImage.applyFilter(PixelImage.FILTERS.GAUSSIAN_BOX_2);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -329,7 +359,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Detecting Edges...");
 		
 		pixelImage.applyFilter(PixelImage.FILTERS.LAPLACEAN_LIGHT);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -341,7 +370,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Sharpening Edges...");
 		
 		pixelImage.applyFilter(PixelImage.FILTERS.LAPLACEAN_DARK);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -353,7 +381,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Smoothing Image...");
 		
 		pixelImage.applyFilter(PixelImage.FILTERS.MEDIAN);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -365,7 +392,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Smoothing Image...");
 		
 		pixelImage.applyFilter(PixelImage.FILTERS.MEDIAN_LOW);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -378,7 +404,6 @@ public class ImageWindow extends JInternalFrame
 		
 		pixelImage
 				.applyUnweightedMaskAndShowRaw(PixelImage.MASKS.LAPLACEAN_LIGHT);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -391,7 +416,6 @@ public class ImageWindow extends JInternalFrame
 		
 		pixelImage
 				.applyUnweightedMaskAndShowRaw(PixelImage.MASKS.LAPLACEAN_DARK);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -403,7 +427,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Smoothing Image...");
 		
 		pixelImage.applyFilter(PixelImage.FILTERS.MEDIAN_HIGH);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -415,7 +438,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Smoothing Image...");
 		
 		pixelImage.applyUnsharpMasking();
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 	}
@@ -426,7 +448,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Highlighting Edges...");
 		
 		pixelImage.applySobelOperator();
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -448,7 +469,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Adjust Brightness...");
 		
 		pixelImage.adjustBrightness(amount);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 	}
@@ -459,7 +479,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Quantizing...");
 		
 		pixelImage.quantization(stepSize);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 	}
@@ -471,7 +490,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Pixellating...");
 		
 		pixelImage.pixellate(tempPixellateRowSize, tempPixellateColSize);
-		imageIcon.setImage(pixelImage.getImage());
 		updateOperationComplete();
 	}
 	
@@ -481,7 +499,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Rotating...");
 		
 		pixelImage.rotate(angle);
-		imageIcon.setImage(pixelImage.getImage());
 		updateOperationComplete();
 	}
 	
@@ -491,7 +508,32 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Rotating...");
 		
 		pixelImage.rotateIngterpolate(angle);
-		imageIcon.setImage(pixelImage.getImage());
+		updateOperationComplete();
+	}
+	
+	public void turn(int quarterTurns)
+	{
+		
+		beginOperation("Rotating...");
+		
+		pixelImage.turn(quarterTurns);
+		
+		this.setSize(pixelImage.getImage().getWidth(), pixelImage.getImage()
+				.getHeight());
+		
+		updateOperationComplete();
+	}
+	
+	public void flip(boolean horizontally)
+	{
+		
+		beginOperation("Flipping...");
+		
+		if (horizontally)
+			pixelImage.flipHorizontally();
+		else
+			pixelImage.flipVertically();
+		
 		updateOperationComplete();
 	}
 	
@@ -502,7 +544,6 @@ public class ImageWindow extends JInternalFrame
 				.setStatus("Restoring last version...");
 		
 		pixelImage.undo();
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 	}
@@ -523,7 +564,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Highlight Edges...");
 		
 		pixelImage.applySobelOperatorOnly();
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -536,7 +576,6 @@ public class ImageWindow extends JInternalFrame
 				.setStatus("Creating Pencil Sketch...");
 		
 		pixelImage.convertToPencilSketchUsingSobel(lightestShade);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 	}
@@ -548,7 +587,6 @@ public class ImageWindow extends JInternalFrame
 				.setStatus("Creating Pencil Sketch...");
 		
 		pixelImage.convertToPencilSketchUsingJinZhou(lightestShade);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 	}
@@ -560,7 +598,6 @@ public class ImageWindow extends JInternalFrame
 				.setStatus("Creating Pencil Sketch...");
 		
 		pixelImage.convertToPencilSketchUsingLaplaceanLight(lightestShade);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 	}
@@ -572,7 +609,6 @@ public class ImageWindow extends JInternalFrame
 				.setStatus("Creating Pencil Sketch...");
 		
 		pixelImage.convertToPencilSketchUsingLaplaceanDark(lightestShade);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 	}
@@ -584,7 +620,6 @@ public class ImageWindow extends JInternalFrame
 				.setStatus("Converting to black and white...");
 		
 		pixelImage.convertToBWusing128();
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -597,7 +632,17 @@ public class ImageWindow extends JInternalFrame
 				.setStatus("Converting to black and white...");
 		
 		pixelImage.convertToBWusingOtsu();
-		imageIcon.setImage(pixelImage.getImage());
+		
+		updateOperationComplete();
+		
+	}
+	
+	public void applySegmentation(int classes)
+	{
+		
+		NIMP.getInstance().getStatusBar().setStatus("Segmenting...");
+		
+		pixelImage.segmentUsingOtsu(classes);
 		
 		updateOperationComplete();
 		
@@ -609,7 +654,6 @@ public class ImageWindow extends JInternalFrame
 		NIMP.getInstance().getStatusBar().setStatus("Threshold...");
 		
 		pixelImage.thresholdUsingOtsu();
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -621,7 +665,6 @@ public class ImageWindow extends JInternalFrame
 		NIMP.getInstance().getStatusBar().setStatus("Thresholding...");
 		
 		pixelImage.thresholdUsing128();
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -634,7 +677,6 @@ public class ImageWindow extends JInternalFrame
 				.setStatus("Converting to grayscale...");
 		
 		pixelImage.convertToGrayScaleUsingAveraging();
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -647,7 +689,18 @@ public class ImageWindow extends JInternalFrame
 				.setStatus("Converting to grayscale...");
 		
 		pixelImage.convertToGrayScaleUsingLuminescence();
-		imageIcon.setImage(pixelImage.getImage());
+		
+		updateOperationComplete();
+		
+	}
+	
+	public void applyConvertToGrayScale(ColourSpace.Luma luma)
+	{
+		
+		NIMP.getInstance().getStatusBar()
+				.setStatus("Converting to grayscale...");
+		
+		pixelImage.convertToGrayScale(luma);
 		
 		updateOperationComplete();
 		
@@ -667,7 +720,6 @@ public class ImageWindow extends JInternalFrame
 		}
 		
 		pixelImage.fade(balance, second.pixelImage);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -685,7 +737,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Translating image...");
 		
 		pixelImage.translate(vertical, horizontal);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -697,7 +748,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Enhancing contrast...");
 		
 		pixelImage.enhanceContrastNaively(scale);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -709,7 +759,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Enhancing contrast...");
 		
 		pixelImage.enhanceContrastByStretch();
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -721,7 +770,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Enhancing contrast...");
 		
 		pixelImage.enhanceContrastByStretch(min, max);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -734,7 +782,6 @@ public class ImageWindow extends JInternalFrame
 		
 		pixelImage.enhanceContrastUsingHistogramEqualization();
 		
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 		
@@ -826,13 +873,13 @@ public class ImageWindow extends JInternalFrame
 		
 	}
 	
-	public void biLinearEnlarge(int horizontalPercentage, int verticalPercentage)
+	// Scales the image by the given factors, below 1 to shrink it.
+	public void scale(double horizontal, double vertical, Resampler.Mode mode)
 	{
 		
-		beginOperation("Enlarging Image...");
+		beginOperation("Scaling Image...");
 		
-		pixelImage.enlargeByLinearInterpolate(horizontalPercentage,
-				verticalPercentage);
+		pixelImage.scale(horizontal, vertical, mode);
 		imageIcon.setImage(pixelImage.getImage());
 		
 		this.setSize(pixelImage.getImage().getWidth(), pixelImage.getImage()
@@ -847,7 +894,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Warping Image...");
 		
 		pixelImage.applyFishEyeWarp(factor);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 	}
@@ -857,7 +903,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Warping Image...");
 		
 		pixelImage.applyTwirlWarp(factor);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 	}
@@ -867,7 +912,6 @@ public class ImageWindow extends JInternalFrame
 		beginOperation("Warping Image...");
 		
 		pixelImage.applyBulgeWarp(factor);
-		imageIcon.setImage(pixelImage.getImage());
 		
 		updateOperationComplete();
 	}
@@ -0,0 +1,236 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file holds point operations, which change each value of a layer
+ * without looking at the values around it, as tables of the new value of
+ * each of the 256 values of each layer. Working out the table costs 256 steps
+ * a layer whatever the size of the image, after which applying it is a
+ * single look up per sample. A chain of point operations is turned into a
+ * single table by looking each entry of the first table up in the next, so
+ * the whole chain is applied in one parallel pass over the image.
+ *
+ * Operations that depend on the image, such as stretching and equalization,
+ * are worked out from its histogram. Within a chain, the histogram the image
+ * would have after the earlier operations is found by moving the counts of
+ * the original histogram through their table, so the image need not be
+ * changed in between.
+ *
+ * References:
+ *
+ * Amarasinghe, U. (n.d). Basic Effects. [PowerPoint slides]. Colombo: Asia
+ * Pacific Institute of Information Technology. Available at: Learning
+ * Management System APIIT City Campus. Imaging and Special Effects.
+ * <http://lms.apiit.lk/course/view.php?id=1815> (accessed 6th January 2014)
+ *
+ * Durovic I. (n.d). Digital image processing. [PowerPoint slides].
+ * <www.etf.ucg.ac.me/Digital%20image%20processing.pdf?> (accessed 6th January
+ * 2014)
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+public class LookupTable {
+
+    public static final int LEVELS = 256;
+
+    // New value of each value, for each layer.
+    private final int[][] tables;
+
+    // Creates a table that leaves every value as it is.
+    public LookupTable(int planes) {
+        tables = new int[planes][LEVELS];
+        for (int[] table : tables) {
+            for (int value = 0; value < LEVELS; value++) {
+                table[value] = value;
+            }
+        }
+    }
+
+    public int getPlanes() {
+        return tables.length;
+    }
+
+    public int lookup(int plane, int value) {
+        return tables[plane][value];
+    }
+
+    // (Amarasinghe n.d.; Durovic n.d.)
+    public static LookupTable brightness(int planes, int amount) {
+        final LookupTable lut = new LookupTable(planes);
+        for (int[] table : lut.tables) {
+            for (int value = 0; value < LEVELS; value++) {
+                table[value] = PixelStore.clamp(value + amount);
+            }
+        }
+        return lut;
+    }
+
+    // (Amarasinghe n.d.; Durovic n.d.)
+    public static LookupTable quantization(int planes, int stepSize) {
+        final LookupTable lut = new LookupTable(planes);
+        for (int[] table : lut.tables) {
+            for (int value = 0; value < LEVELS; value++) {
+                table[value] = value / stepSize * stepSize;
+            }
+        }
+        return lut;
+    }
+
+    // Multiplies each value by scale, saturating at 255.
+    // spie.org/samples/TT92.pdf
+    public static LookupTable contrast(int planes, int scale) {
+        final int limit = 255 / scale;
+        final LookupTable lut = new LookupTable(planes);
+        for (int[] table : lut.tables) {
+            for (int value = 0; value < LEVELS; value++) {
+                table[value] = value < limit ? value * scale : 255;
+            }
+        }
+        return lut;
+    }
+
+    // Stretches the values of each layer found in the histogram to cover
+    // newMin to newMax. The factor is a whole number, as it always was.
+    // (Amarasinghe n.d.; Durovic n.d.)
+    public static LookupTable stretch(int[][] histogram, int newMin,
+            int newMax) {
+        final LookupTable lut = new LookupTable(histogram.length);
+        for (int layer = 0; layer < histogram.length; layer++) {
+            int curMin = 0, curMax = LEVELS - 1;
+            while (curMin < LEVELS - 1 && histogram[layer][curMin] == 0) {
+                curMin++;
+            }
+            while (curMax > 0 && histogram[layer][curMax] == 0) {
+                curMax--;
+            }
+            if (curMax <= curMin) {
+                continue; // A single value; nothing to stretch.
+            }
+
+            final int factor = (newMax - newMin) / (curMax - curMin);
+            final int[] table = lut.tables[layer];
+            for (int value = 0; value < LEVELS; value++) {
+                table[value] = PixelStore.clamp(factor * (value - curMin)
+                        + newMin);
+            }
+        }
+        return lut;
+    }
+
+    // Spreads the values of each layer so that the histogram is about even.
+    // (Amarasinghe n.d.; Durovic n.d.)
+    public static LookupTable equalization(int[][] histogram) {
+        final LookupTable lut = new LookupTable(histogram.length);
+        for (int layer = 0; layer < histogram.length; layer++) {
+            long total = 0;
+            for (int count : histogram[layer]) {
+                total += count;
+            }
+            if (total == 0) {
+                continue;
+            }
+
+            // Gtg/N - 1, where Gtg is the cumulative histogram.
+            final int[] table = lut.tables[layer];
+            long cumulative = 0;
+            for (int value = 0; value < LEVELS; value++) {
+                cumulative += histogram[layer][value];
+                table[value] = Math.max(0, (int) (LEVELS * cumulative
+                        / total - 1));
+            }
+        }
+        return lut;
+    }
+
+    // Values above the threshold of their layer become 255, others 0.
+    // (Amarasinghe n.d.; Durovic n.d.)
+    public static LookupTable threshold(short[] thresholds) {
+        final LookupTable lut = new LookupTable(thresholds.length);
+        for (int layer = 0; layer < thresholds.length; layer++) {
+            final int[] table = lut.tables[layer];
+            for (int value = 0; value < LEVELS; value++) {
+                table[value] = value > thresholds[layer] ? 255 : 0;
+            }
+        }
+        return lut;
+    }
+
+    // Turns edge strengths into pencil shades: no edge is white, and the
+    // stronger the edge the darker the shade, starting from lightestShade.
+    // Strengths beyond 0 - 255 give the same shade as 0 or 255 as long as
+    // lightestShade is no more than 255.
+    public static LookupTable pencilShade(int planes, int lightestShade) {
+        final LookupTable lut = new LookupTable(planes);
+        for (int[] table : lut.tables) {
+            table[0] = 255;
+            for (int value = 1; value < LEVELS; value++) {
+                table[value] = PixelStore.clamp(lightestShade - value);
+            }
+        }
+        return lut;
+    }
+
+    // Returns the table that applies this table, then next.
+    public LookupTable then(LookupTable next) {
+        if (next.getPlanes() != getPlanes()) {
+            throw new IllegalArgumentException("Tables of different layers");
+        }
+        final LookupTable lut = new LookupTable(getPlanes());
+        for (int layer = 0; layer < tables.length; layer++) {
+            final int[] table = lut.tables[layer];
+            for (int value = 0; value < LEVELS; value++) {
+                table[value] = next.tables[layer][tables[layer][value]];
+            }
+        }
+        return lut;
+    }
+
+    // Values of each layer become the shade of their class, the classes
+    // being split by thresholds, in increasing order, as in threshold, and
+    // their shades spread evenly from 0 to 255.
+    // (Amarasinghe n.d.; Durovic n.d.)
+    public static LookupTable segmentation(int planes, int[] thresholds) {
+        final LookupTable lut = new LookupTable(planes);
+        final int classes = thresholds.length + 1;
+        for (int[] table : lut.tables) {
+            int c = 0;
+            for (int value = 0; value < LEVELS; value++) {
+                while (c < thresholds.length && value > thresholds[c]) {
+                    c++;
+                }
+                table[value] = c * 255 / (classes - 1);
+            }
+        }
+        return lut;
+    }
+
+    // Returns the histogram an image of the given histogram would have once
+    // this table is applied to it.
+    public int[][] map(int[][] histogram) {
+        final int[][] mapped = new int[tables.length][LEVELS];
+        for (int layer = 0; layer < tables.length; layer++) {
+            for (int value = 0; value < LEVELS; value++) {
+                mapped[layer][tables[layer][value]] += histogram[layer][value];
+            }
+        }
+        return mapped;
+    }
+
+    // Applies the table to every sample of the image, in parallel bands.
+    public void apply(final PixelStore image) {
+        if (image.getPlanes() != getPlanes()) {
+            throw new IllegalArgumentException("Table and image layers differ");
+        }
+        ParallelEngine.forEachRow(image.getHeight(),
+                new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                image.mapRows(tables, firstRow, endRow);
+            }
+        });
+    }
+}
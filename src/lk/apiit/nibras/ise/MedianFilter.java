@@ -0,0 +1,282 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file replaces each pixel with the value at a given position among the
+ * sorted values of the square of pixels around it: the middle for the median
+ * filter, the first and the last for the low and high median filters. The
+ * values are never sorted. A histogram of each column of the square is kept
+ * and moved down a row at a time by removing the pixel leaving it and adding
+ * the one entering it. The histogram of the square is moved across a row by
+ * adding the column entering it and removing the column leaving it (Huang et
+ * al., 1979; Perreault and Hebert, 2007). Histograms are kept at two levels,
+ * 16 coarse bins of 16 fine bins each. Only the coarse bins are moved for
+ * every pixel; the fine bins are only brought up to date for the coarse bin
+ * that holds the value looked for. The cost per pixel does not grow with the
+ * size of the square. For 3 x 3 squares the nine values are run through a
+ * sorting network instead (Devillard, 1998).
+ *
+ * Pixels beyond the edge of the image take the value of the nearest edge
+ * pixel, so every pixel is filtered.
+ *
+ * References:
+ *
+ * Devillard, N. 1998. Fast median search: an ANSI C implementation.
+ *
+ * Huang, T., Yang, G. and Tang, G. 1979. A fast two-dimensional median
+ * filtering algorithm. IEEE Transactions on Acoustics, Speech and Signal
+ * Processing, 27 (1), pp. 13--18.
+ *
+ * Perreault, S. and Hebert, P. 2007. Median Filtering in Constant Time. IEEE
+ * Transactions on Image Processing, 16 (9), pp. 2389--2394.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Arrays;
+
+public class MedianFilter {
+
+    private static final int BINS = 256, COARSE_BINS = 16, FINE_BINS = 16;
+    // Columns processed at a time, which keeps the column histograms small.
+    private static final int TILE_WIDTH = 256;
+
+    private final int radius, diameter;
+
+    public MedianFilter(int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Radius cannot be negative");
+        }
+        this.radius = radius;
+        this.diameter = 2 * radius + 1;
+    }
+
+    // Number of pixels in the square around each pixel.
+    public int getWindowSize() {
+        return diameter * diameter;
+    }
+
+    // Writes the value at the given position among the sorted values around
+    // each pixel of source into target, which must be the same size as
+    // source. Position 0 is the lowest value, getWindowSize() / 2 the median
+    // and getWindowSize() - 1 the highest.
+    public void apply(final PixelStore source, final PixelStore target,
+            final int position) {
+        if (position < 0 || position >= getWindowSize()) {
+            throw new IllegalArgumentException("Position outside the window");
+        }
+
+        if (radius == 1
+                && (position == 0 || position == 4 || position == 8)) {
+            ParallelEngine.forEachRow(source.getHeight(),
+                    new ParallelEngine.RowKernel() {
+                @Override
+                public void processRows(int firstRow, int endRow) {
+                    filterSmall(source, target, position, firstRow, endRow);
+                }
+            });
+            return;
+        }
+
+        // Each band fills its column histograms with the rows above it
+        // first, so bands are kept at least as tall as the square.
+        ParallelEngine.forEachRow(source.getHeight(), diameter,
+                new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                filter(source, target, position, firstRow, endRow);
+            }
+        });
+    }
+
+    // Sorting network for 3 x 3 squares. Only the lowest, the median and the
+    // highest of the nine values are found.
+    private void filterSmall(PixelStore source, PixelStore target,
+            int position, int firstRow, int endRow) {
+        final int w = source.getWidth();
+        final int[] above = new int[w + 2], middle = new int[w + 2],
+                below = new int[w + 2];
+        final int[] result = new int[w];
+
+        for (int row = firstRow; row < endRow; row++) {
+            for (int layer = 0; layer < source.getPlanes(); layer++) {
+                source.getRowClamped(layer, row - 1, -1, w + 2, above, 0);
+                source.getRowClamped(layer, row, -1, w + 2, middle, 0);
+                source.getRowClamped(layer, row + 1, -1, w + 2, below, 0);
+
+                for (int col = 0; col < w; col++) {
+                    int p0 = above[col], p1 = above[col + 1];
+                    int p2 = above[col + 2], p3 = middle[col];
+                    int p4 = middle[col + 1], p5 = middle[col + 2];
+                    int p6 = below[col], p7 = below[col + 1];
+                    int p8 = below[col + 2];
+
+                    if (position == 0) {
+                        result[col] = Math.min(Math.min(Math.min(p0, p1),
+                                Math.min(p2, p3)), Math.min(Math.min(p4, p5),
+                                Math.min(Math.min(p6, p7), p8)));
+                        continue;
+                    }
+                    if (position == 8) {
+                        result[col] = Math.max(Math.max(Math.max(p0, p1),
+                                Math.max(p2, p3)), Math.max(Math.max(p4, p5),
+                                Math.max(Math.max(p6, p7), p8)));
+                        continue;
+                    }
+
+                    result[col] = median(p0, p1, p2, p3, p4, p5, p6, p7, p8);
+                }
+
+                target.setRow(layer, row, result);
+            }
+        }
+    }
+
+    // Median of nine values. Each step puts the lower of a pair first
+    // (Devillard, 1998).
+    static int median(int p0, int p1, int p2, int p3, int p4, int p5, int p6,
+            int p7, int p8) {
+        int t;
+        t = Math.min(p1, p2); p2 = Math.max(p1, p2); p1 = t;
+        t = Math.min(p4, p5); p5 = Math.max(p4, p5); p4 = t;
+        t = Math.min(p7, p8); p8 = Math.max(p7, p8); p7 = t;
+        t = Math.min(p0, p1); p1 = Math.max(p0, p1); p0 = t;
+        t = Math.min(p3, p4); p4 = Math.max(p3, p4); p3 = t;
+        t = Math.min(p6, p7); p7 = Math.max(p6, p7); p6 = t;
+        t = Math.min(p1, p2); p2 = Math.max(p1, p2); p1 = t;
+        t = Math.min(p4, p5); p5 = Math.max(p4, p5); p4 = t;
+        t = Math.min(p7, p8); p8 = Math.max(p7, p8); p7 = t;
+        p3 = Math.max(p0, p3);
+        p5 = Math.min(p5, p8);
+        t = Math.min(p4, p7); p7 = Math.max(p4, p7); p4 = t;
+        p6 = Math.max(p3, p6);
+        p4 = Math.max(p1, p4);
+        p2 = Math.min(p2, p5);
+        p4 = Math.min(p4, p7);
+        t = Math.min(p4, p2); p2 = Math.max(p4, p2); p4 = t;
+        p4 = Math.max(p6, p4);
+        return Math.min(p4, p2);
+    }
+
+    private void filter(PixelStore source, PixelStore target, int position,
+            int firstRow, int endRow) {
+        final int w = source.getWidth();
+        final int columns = Math.min(TILE_WIDTH, w) + diameter - 1;
+        // Histograms of the columns of the square, for every column of a
+        // tile and the columns either side of it, one after another.
+        final int[] columnFine = new int[columns * BINS];
+        final int[] columnCoarse = new int[columns * COARSE_BINS];
+        // Histogram of the square.
+        final int[] fine = new int[BINS];
+        final int[] coarse = new int[COARSE_BINS];
+        // Column of the tile for which each coarse bin of fine was last
+        // brought up to date.
+        final int[] upToDate = new int[COARSE_BINS];
+        final int[] line = new int[columns];
+        final int[] result = new int[TILE_WIDTH];
+
+        for (int tileCol = 0; tileCol < w; tileCol += TILE_WIDTH) {
+            final int count = Math.min(TILE_WIDTH, w - tileCol);
+            final int padded = count + diameter - 1;
+
+            for (int layer = 0; layer < source.getPlanes(); layer++) {
+                Arrays.fill(columnFine, 0);
+                Arrays.fill(columnCoarse, 0);
+                for (int row = firstRow - radius; row < firstRow + radius;
+                        row++) {
+                    source.getRowClamped(layer, row, tileCol - radius, padded,
+                            line, 0);
+                    addToColumns(line, padded, 1, columnFine, columnCoarse);
+                }
+
+                for (int row = firstRow; row < endRow; row++) {
+                    source.getRowClamped(layer, row + radius, tileCol - radius,
+                            padded, line, 0);
+                    addToColumns(line, padded, 1, columnFine, columnCoarse);
+                    if (row > firstRow) {
+                        source.getRowClamped(layer, row - radius - 1, tileCol
+                                - radius, padded, line, 0);
+                        addToColumns(line, padded, -1, columnFine,
+                                columnCoarse);
+                    }
+
+                    Arrays.fill(coarse, 0);
+                    Arrays.fill(upToDate, -diameter);
+                    for (int col = 0; col < diameter - 1; col++) {
+                        add(columnCoarse, col, 1, coarse);
+                    }
+
+                    for (int col = 0; col < count; col++) {
+                        add(columnCoarse, col + diameter - 1, 1, coarse);
+                        if (col > 0) {
+                            add(columnCoarse, col - 1, -1, coarse);
+                        }
+
+                        // Coarse bin holding the value.
+                        int bin = 0, below = 0;
+                        while (below + coarse[bin] <= position) {
+                            below += coarse[bin++];
+                        }
+
+                        // Bring its fine bins up to date, column by column
+                        // if it was recently, from scratch otherwise.
+                        final int first = bin * FINE_BINS;
+                        if (col - upToDate[bin] >= diameter) {
+                            Arrays.fill(fine, first, first + FINE_BINS, 0);
+                            for (int c = col; c < col + diameter; c++) {
+                                addFine(columnFine, c, first, 1, fine);
+                            }
+                        } else {
+                            for (int c = upToDate[bin] + 1; c <= col; c++) {
+                                addFine(columnFine, c + diameter - 1, first, 1,
+                                        fine);
+                                addFine(columnFine, c - 1, first, -1, fine);
+                            }
+                        }
+                        upToDate[bin] = col;
+
+                        int value = first;
+                        while (below + fine[value] <= position) {
+                            below += fine[value++];
+                        }
+                        result[col] = value;
+                    }
+
+                    target.setRow(layer, row, tileCol, count, result, 0);
+                }
+            }
+        }
+    }
+
+    // Adds (or with a sign of -1 removes) a row of values to the histograms
+    // of the columns.
+    private static void addToColumns(int[] line, int padded, int sign,
+            int[] columnFine, int[] columnCoarse) {
+        for (int col = 0; col < padded; col++) {
+            columnFine[col * BINS + line[col]] += sign;
+            columnCoarse[col * COARSE_BINS + line[col] / FINE_BINS] += sign;
+        }
+    }
+
+    // Adds (or with a sign of -1 removes) the coarse histogram of a column
+    // to the coarse histogram of the square.
+    private static void add(int[] columnCoarse, int col, int sign,
+            int[] coarse) {
+        final int offset = col * COARSE_BINS;
+        for (int bin = 0; bin < COARSE_BINS; bin++) {
+            coarse[bin] += sign * columnCoarse[offset + bin];
+        }
+    }
+
+    // As above, for the fine bins of one coarse bin only.
+    private static void addFine(int[] columnFine, int col, int first,
+            int sign, int[] fine) {
+        final int offset = col * BINS;
+        for (int bin = first; bin < first + FINE_BINS; bin++) {
+            fine[bin] += sign * columnFine[offset + bin];
+        }
+    }
+}
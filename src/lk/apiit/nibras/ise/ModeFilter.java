@@ -0,0 +1,149 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file replaces each pixel with the most frequent value in the square
+ * of pixels around it. Where several values are equally frequent the pixel
+ * keeps its own value if it is one of them, otherwise the lowest of them is
+ * taken. A histogram of the square is slid along each row by adding the
+ * column entering the square and removing the column leaving it (Huang et
+ * al., 1979). The number of values having each count is kept as well, so
+ * the highest count is known without searching the histogram. Rows are
+ * processed in parallel bands.
+ *
+ * Pixels beyond the edge of the image take the value of the nearest edge
+ * pixel, so every pixel is filtered.
+ *
+ * References:
+ *
+ * Huang, T., Yang, G. and Tang, G. 1979. A fast two-dimensional median
+ * filtering algorithm. IEEE Transactions on Acoustics, Speech and Signal
+ * Processing, 27 (1), pp. 13--18.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Arrays;
+
+public class ModeFilter {
+
+    private static final int BINS = 256;
+
+    private final int radius, diameter;
+
+    public ModeFilter(int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Radius cannot be negative");
+        }
+        this.radius = radius;
+        this.diameter = 2 * radius + 1;
+    }
+
+    // Writes the mode around each pixel of source into target, which must
+    // be the same size as source.
+    public void apply(final PixelStore source, final PixelStore target) {
+        // Each band loads the rows above it first, so bands are kept at
+        // least as tall as the square.
+        ParallelEngine.forEachRow(source.getHeight(), diameter,
+                new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                filter(source, target, firstRow, endRow);
+            }
+        });
+    }
+
+    private void filter(PixelStore source, PixelStore target, int firstRow,
+            int endRow) {
+        final int w = source.getWidth();
+        final int padded = w + diameter - 1;
+        // Rows covered by the square, padded either side. Used as a ring,
+        // indexed by row.
+        final int[][] window = new int[diameter][padded];
+        // Number of pixels of the square having each value, and number of
+        // values having each count.
+        final int[] histogram = new int[BINS];
+        final int[] counts = new int[diameter * diameter + 1];
+        final int[] result = new int[w];
+
+        for (int layer = 0; layer < source.getPlanes(); layer++) {
+            for (int row = firstRow - radius; row < firstRow + radius; row++) {
+                source.getRowClamped(layer, row, -radius, padded,
+                        window[slot(row)], 0);
+            }
+
+            for (int row = firstRow; row < endRow; row++) {
+                source.getRowClamped(layer, row + radius, -radius, padded,
+                        window[slot(row + radius)], 0);
+
+                Arrays.fill(histogram, 0);
+                Arrays.fill(counts, 0);
+                counts[0] = BINS;
+                int highest = 0;
+                for (int col = 0; col < diameter - 1; col++) {
+                    highest = addColumn(window, col, histogram, counts,
+                            highest);
+                }
+
+                final int[] centre = window[slot(row)];
+                for (int col = 0; col < w; col++) {
+                    if (col > 0) {
+                        highest = removeColumn(window, col - 1, histogram,
+                                counts, highest);
+                    }
+                    highest = addColumn(window, col + diameter - 1, histogram,
+                            counts, highest);
+
+                    int mode = centre[col + radius];
+                    if (histogram[mode] < highest) {
+                        mode = 0;
+                        while (histogram[mode] < highest) {
+                            mode++;
+                        }
+                    }
+                    result[col] = mode;
+                }
+
+                target.setRow(layer, row, result);
+            }
+        }
+    }
+
+    // Adds a column of the square to the histogram and returns the new
+    // highest count.
+    private int addColumn(int[][] window, int col, int[] histogram,
+            int[] counts, int highest) {
+        for (int[] line : window) {
+            final int count = histogram[line[col]]++;
+            counts[count]--;
+            counts[count + 1]++;
+            if (count + 1 > highest) {
+                highest = count + 1;
+            }
+        }
+        return highest;
+    }
+
+    // Removes a column of the square from the histogram and returns the new
+    // highest count.
+    private int removeColumn(int[][] window, int col, int[] histogram,
+            int[] counts, int highest) {
+        for (int[] line : window) {
+            final int count = histogram[line[col]]--;
+            counts[count]--;
+            counts[count - 1]++;
+            if (count == highest && counts[count] == 0) {
+                highest = count - 1;
+            }
+        }
+        return highest;
+    }
+
+    private int slot(int row) {
+        final int slot = row % diameter;
+        return slot < 0 ? slot + diameter : slot;
+    }
+}
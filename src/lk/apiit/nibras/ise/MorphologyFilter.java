@@ -0,0 +1,233 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file applies the grey scale morphological operations with a rectangle
+ * of pixels as the structuring element. Erosion takes the lowest value under
+ * the rectangle and dilation the highest. Opening is an erosion followed by a
+ * dilation, closing a dilation followed by an erosion, and the morphological
+ * gradient is the dilation less the erosion.
+ *
+ * The lowest (or highest) value of a rectangle is the lowest of the lowest
+ * values of its rows, so a pass along the rows is followed by a pass down the
+ * columns. Each pass uses the algorithm of van Herk (1992) and Gil and Werman
+ * (1993): the line is cut into blocks as long as the rectangle, and the
+ * running lowest value is found from the start of each block forwards and
+ * from its end backwards. Any window as long as a block covers the end of one
+ * block and the start of the next, so its lowest value is the lower of two
+ * running values. The cost per pixel is the same whatever the size of the
+ * rectangle. The row pass runs in parallel bands of rows and the column pass
+ * in parallel bands of columns.
+ *
+ * Pixels beyond the edge of the image take the value of the nearest edge
+ * pixel, so every pixel is filtered.
+ *
+ * References:
+ *
+ * Gil, J. and Werman, M. 1993. Computing 2-D min, median, and max filters.
+ * IEEE Transactions on Pattern Analysis and Machine Intelligence, 15 (5), pp.
+ * 504--507.
+ *
+ * van Herk, M. 1992. A fast algorithm for local minimum and maximum filters on
+ * rectangular and octagonal kernels. Pattern Recognition Letters, 13 (7), pp.
+ * 517--521.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+public class MorphologyFilter {
+
+    public static enum Operation {
+
+        EROSION, DILATION, OPENING, CLOSING, GRADIENT
+    }
+
+    // Columns processed at a time by the column pass, which keeps its
+    // running values small.
+    private static final int TILE_WIDTH = 64;
+
+    private final int height, width;
+
+    // The origin of the rectangle is at row height / 2 and column
+    // width / 2, its centre when the sides are odd.
+    public MorphologyFilter(int height, int width) {
+        if (height < 1 || width < 1) {
+            throw new IllegalArgumentException(
+                    "Structuring element must be at least 1 x 1");
+        }
+        this.height = height;
+        this.width = width;
+    }
+
+    // Writes the result of the operation on source into target, which must
+    // be the same size as source and must not be source. The passes read
+    // and write the stores directly, through a single byte store holding
+    // the result of the row pass, so nothing larger than one more copy of
+    // the image is ever held.
+    public void apply(PixelStore source, PixelStore target,
+            Operation operation) {
+        final PixelStore rows = new PixelStore(source.getPlanes(),
+                source.getHeight(), source.getWidth());
+
+        switch (operation) {
+            case EROSION:
+                filter(source, rows, target, false);
+                break;
+            case DILATION:
+                filter(source, rows, target, true);
+                break;
+            case OPENING:
+                filter(source, rows, target, false);
+                filter(target, rows, target, true);
+                break;
+            case CLOSING:
+                filter(source, rows, target, true);
+                filter(target, rows, target, false);
+                break;
+            case GRADIENT:
+                filter(source, rows, target, true);
+                passRows(source, rows, false);
+                passColumns(rows, target, false, true);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation");
+        }
+    }
+
+    // Lowest (or with highest set, highest) value under the rectangle around
+    // each pixel. Dilation uses the rectangle reflected about its origin, so
+    // that opening and closing keep their meaning when a side is even.
+    private void filter(PixelStore source, PixelStore rows, PixelStore target,
+            boolean highest) {
+        passRows(source, rows, highest);
+        passColumns(rows, target, highest, false);
+    }
+
+    private void passRows(final PixelStore source, final PixelStore result,
+            final boolean highest) {
+        final int w = source.getWidth();
+        final int planes = source.getPlanes();
+        // Pixels before the current one covered by the rectangle.
+        final int before = highest ? width - 1 - width / 2 : width / 2;
+        final int padded = w + width - 1;
+
+        ParallelEngine.forEachRow(source.getHeight(),
+                new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                final int[] forwards = new int[padded];
+                final int[] backwards = new int[padded];
+                final int[] out = new int[w];
+
+                for (int row = firstRow; row < endRow; row++) {
+                    for (int layer = 0; layer < planes; layer++) {
+                        source.getRowClamped(layer, row, -before, padded,
+                                forwards, 0);
+                        System.arraycopy(forwards, 0, backwards, 0, padded);
+
+                        for (int i = 1; i < padded; i++) {
+                            if (i % width != 0) {
+                                forwards[i] = extreme(forwards[i - 1],
+                                        forwards[i], highest);
+                            }
+                        }
+                        for (int i = padded - 2; i >= 0; i--) {
+                            if ((i + 1) % width != 0) {
+                                backwards[i] = extreme(backwards[i + 1],
+                                        backwards[i], highest);
+                            }
+                        }
+
+                        for (int col = 0; col < w; col++) {
+                            out[col] = extreme(backwards[col],
+                                    forwards[col + width - 1], highest);
+                        }
+                        result.setRow(layer, row, out);
+                    }
+                }
+            }
+        });
+    }
+
+    // As above, down the columns. A row of a tile of columns is handled at a
+    // time so the pixels are read in the order they are laid out. With
+    // subtract set, the result is taken from what target already holds
+    // rather than replacing it, which gives the gradient.
+    private void passColumns(final PixelStore source, final PixelStore result,
+            final boolean highest, final boolean subtract) {
+        final int h = source.getHeight();
+        final int planes = source.getPlanes();
+        final int before = highest ? height - 1 - height / 2 : height / 2;
+        final int padded = h + height - 1;
+
+        ParallelEngine.forEachColumn(source.getWidth(), TILE_WIDTH,
+                new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstCol, int endCol) {
+                final int[][] forwards = new int[padded][TILE_WIDTH];
+                final int[][] backwards = new int[padded][TILE_WIDTH];
+                final int[] out = new int[TILE_WIDTH];
+                final int[] held = new int[TILE_WIDTH];
+
+                for (int tileCol = firstCol; tileCol < endCol;
+                        tileCol += TILE_WIDTH) {
+                    final int count = Math.min(TILE_WIDTH, endCol - tileCol);
+
+                    for (int layer = 0; layer < planes; layer++) {
+                        for (int i = 0; i < padded; i++) {
+                            source.getRowClamped(layer, i - before, tileCol,
+                                    count, forwards[i], 0);
+                            System.arraycopy(forwards[i], 0, backwards[i], 0,
+                                    count);
+                        }
+
+                        for (int i = 1; i < padded; i++) {
+                            if (i % height != 0) {
+                                final int[] previous = forwards[i - 1];
+                                final int[] current = forwards[i];
+                                for (int c = 0; c < count; c++) {
+                                    current[c] = extreme(previous[c],
+                                            current[c], highest);
+                                }
+                            }
+                        }
+                        for (int i = padded - 2; i >= 0; i--) {
+                            if ((i + 1) % height != 0) {
+                                final int[] next = backwards[i + 1];
+                                final int[] current = backwards[i];
+                                for (int c = 0; c < count; c++) {
+                                    current[c] = extreme(next[c], current[c],
+                                            highest);
+                                }
+                            }
+                        }
+
+                        for (int row = 0; row < h; row++) {
+                            final int[] end = forwards[row + height - 1];
+                            final int[] start = backwards[row];
+                            for (int c = 0; c < count; c++) {
+                                out[c] = extreme(start[c], end[c], highest);
+                            }
+                            if (subtract) {
+                                result.getRow(layer, row, tileCol, count,
+                                        held, 0);
+                                for (int c = 0; c < count; c++) {
+                                    out[c] = held[c] - out[c];
+                                }
+                            }
+                            result.setRow(layer, row, tileCol, count, out,
+                                    0);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private static int extreme(int a, int b, boolean highest) {
+        return highest ? Math.max(a, b) : Math.min(a, b);
+    }
+}
@@ -384,6 +384,26 @@ public class NIMP
 			}
 		});
 		this.mnScale.add(this.mntmBilinear);
+		this.mntmBicubic = new JMenuItem("Bicubic");
+		this.mntmBicubic.setMnemonic(KeyEvent.VK_C);
+		this.mntmBicubic.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent arg0)
+			{
+				handleScaleImage(Resampler.Mode.BICUBIC);
+			}
+		});
+		this.mnScale.add(this.mntmBicubic);
+		this.mntmLanczos = new JMenuItem("Lanczos");
+		this.mntmLanczos.setMnemonic(KeyEvent.VK_Z);
+		this.mntmLanczos.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent arg0)
+			{
+				handleScaleImage(Resampler.Mode.LANCZOS);
+			}
+		});
+		this.mnScale.add(this.mntmLanczos);
 		mntmScale.addActionListener(new ActionListener()
 		{
 			@Override
@@ -422,6 +442,61 @@ public class NIMP
 				handleRotate();
 			}
 		});
+		this.separator_15 = new JSeparator();
+		this.mnRotate.add(this.separator_15);
+		this.mntmLeft = new JMenuItem("90 Left");
+		this.mntmLeft.setMnemonic(KeyEvent.VK_E);
+		this.mntmLeft.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent arg0)
+			{
+				handleTurn(1);
+			}
+		});
+		this.mnRotate.add(this.mntmLeft);
+		this.mntmRight = new JMenuItem("90 Right");
+		this.mntmRight.setMnemonic(KeyEvent.VK_I);
+		this.mntmRight.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent arg0)
+			{
+				handleTurn(-1);
+			}
+		});
+		this.mnRotate.add(this.mntmRight);
+		this.mntmHalfTurn = new JMenuItem("180");
+		this.mntmHalfTurn.setMnemonic(KeyEvent.VK_1);
+		this.mntmHalfTurn.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent arg0)
+			{
+				handleTurn(2);
+			}
+		});
+		this.mnRotate.add(this.mntmHalfTurn);
+		this.mnFlip = new JMenu("Flip");
+		this.mnFlip.setMnemonic('F');
+		this.mnTransform.add(this.mnFlip);
+		this.mntmHorizontal = new JMenuItem("Horizontal");
+		this.mntmHorizontal.setMnemonic(KeyEvent.VK_H);
+		this.mntmHorizontal.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent arg0)
+			{
+				handleFlip(true);
+			}
+		});
+		this.mnFlip.add(this.mntmHorizontal);
+		this.mntmVertical = new JMenuItem("Vertical");
+		this.mntmVertical.setMnemonic(KeyEvent.VK_V);
+		this.mntmVertical.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent arg0)
+			{
+				handleFlip(false);
+			}
+		});
+		this.mnFlip.add(this.mntmVertical);
 		separator_3 = new JSeparator();
 		mnTransform.add(separator_3);
 		mnConvert = new JMenu("Convert");
@@ -460,6 +535,28 @@ public class NIMP
 			
 		});
 		this.mnGrayScale.add(this.mntmLuminescence);
+		this.mntmRec601 = new JMenuItem("Rec. 601");
+		this.mntmRec601.setMnemonic(KeyEvent.VK_6);
+		this.mntmRec601.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent arg0)
+			{
+				handleConvertToGrayScale(ColourSpace.Luma.REC_601);
+			}
+			
+		});
+		this.mnGrayScale.add(this.mntmRec601);
+		this.mntmRec709 = new JMenuItem("Rec. 709");
+		this.mntmRec709.setMnemonic(KeyEvent.VK_7);
+		this.mntmRec709.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent arg0)
+			{
+				handleConvertToGrayScale(ColourSpace.Luma.REC_709);
+			}
+			
+		});
+		this.mnGrayScale.add(this.mntmRec709);
 		mntmConvertToGray.addActionListener(new ActionListener()
 		{
 			@Override
@@ -501,6 +598,17 @@ public class NIMP
 				handleKValueFilter();
 			}
 		});
+		mntmGaussianBlur = new JMenuItem("Gaussian Blur");
+		this.mntmGaussianBlur.setMnemonic(KeyEvent.VK_B);
+		mnWeighted.add(mntmGaussianBlur);
+		mntmGaussianBlur.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				handleGaussianBlur();
+			}
+		});
 		this.separator_14 = new JSeparator();
 		this.mnWeighted.add(this.separator_14);
 		mnWeighted.add(mntmGaussian);
@@ -620,6 +728,64 @@ public class NIMP
 			}
 		});
 		mnLaplacean.add(mntmLightEdges);
+		mnMorphology = new JMenu("Morphology");
+		this.mnMorphology.setMnemonic('o');
+		mnEnhanceImage.add(mnMorphology);
+		mntmErode = new JMenuItem("Erode");
+		this.mntmErode.setMnemonic(KeyEvent.VK_E);
+		mntmErode.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				handleMorphology(MorphologyFilter.Operation.EROSION);
+			}
+		});
+		mnMorphology.add(mntmErode);
+		mntmDilate = new JMenuItem("Dilate");
+		this.mntmDilate.setMnemonic(KeyEvent.VK_D);
+		mntmDilate.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				handleMorphology(MorphologyFilter.Operation.DILATION);
+			}
+		});
+		mnMorphology.add(mntmDilate);
+		mntmOpen_1 = new JMenuItem("Open");
+		this.mntmOpen_1.setMnemonic(KeyEvent.VK_O);
+		mntmOpen_1.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				handleMorphology(MorphologyFilter.Operation.OPENING);
+			}
+		});
+		mnMorphology.add(mntmOpen_1);
+		mntmClose_1 = new JMenuItem("Close");
+		this.mntmClose_1.setMnemonic(KeyEvent.VK_C);
+		mntmClose_1.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				handleMorphology(MorphologyFilter.Operation.CLOSING);
+			}
+		});
+		mnMorphology.add(mntmClose_1);
+		mntmGradient = new JMenuItem("Gradient");
+		this.mntmGradient.setMnemonic(KeyEvent.VK_G);
+		mntmGradient.addActionListener(new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				handleMorphology(MorphologyFilter.Operation.GRADIENT);
+			}
+		});
+		mnMorphology.add(mntmGradient);
 		separator_2 = new JSeparator();
 		mnEnhanceImage.add(separator_2);
 		mntmAdjustBrightness = new JMenuItem("Adjust Brightness");
@@ -680,8 +846,11 @@ public class NIMP
 		mnHistogram.add(mntmHistogramStretchcustom);
 		this.separator_7 = new JSeparator();
 		this.mnEnhanceImage.add(this.separator_7);
-		this.mntmSegment = new JMenuItem("Segment");
-		this.mntmSegment.setMnemonic(KeyEvent.VK_S);
+		this.mnSegment = new JMenu("Segment");
+		this.mnSegment.setMnemonic(KeyEvent.VK_S);
+		this.mnEnhanceImage.add(this.mnSegment);
+		this.mntmSegment = new JMenuItem("2 Classes");
+		this.mntmSegment.setMnemonic(KeyEvent.VK_2);
 		this.mntmSegment.addActionListener(new ActionListener()
 		{
 			public void actionPerformed(ActionEvent arg0)
@@ -689,7 +858,37 @@ public class NIMP
 				handleThresholdToBWatOtsu();
 			}
 		});
-		this.mnEnhanceImage.add(this.mntmSegment);
+		this.mnSegment.add(this.mntmSegment);
+		this.mntmSegment3 = new JMenuItem("3 Classes");
+		this.mntmSegment3.setMnemonic(KeyEvent.VK_3);
+		this.mntmSegment3.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent arg0)
+			{
+				handleSegment(3);
+			}
+		});
+		this.mnSegment.add(this.mntmSegment3);
+		this.mntmSegment4 = new JMenuItem("4 Classes");
+		this.mntmSegment4.setMnemonic(KeyEvent.VK_4);
+		this.mntmSegment4.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent arg0)
+			{
+				handleSegment(4);
+			}
+		});
+		this.mnSegment.add(this.mntmSegment4);
+		this.mntmSegment5 = new JMenuItem("5 Classes");
+		this.mntmSegment5.setMnemonic(KeyEvent.VK_5);
+		this.mntmSegment5.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent arg0)
+			{
+				handleSegment(5);
+			}
+		});
+		this.mnSegment.add(this.mntmSegment5);
 		mntmHistogramStretchcustom.addActionListener(new ActionListener()
 		{
 			@Override
@@ -1398,6 +1597,20 @@ public class NIMP
 		
 	}
 	
+	public void handleSegment(int classes)
+	{
+		final ImageWindow active = (ImageWindow) desktopPane.getSelectedFrame();
+		
+		if (active == null)
+		{
+			showError("No image to modify!");
+			return;
+		}
+		
+		active.applySegmentation(classes);
+		
+	}
+	
 	public void handleThresholdatOtsu()
 	{
 		final ImageWindow active = (ImageWindow) desktopPane.getSelectedFrame();
@@ -1456,6 +1669,20 @@ public class NIMP
 		
 	}
 	
+	public void handleConvertToGrayScale(ColourSpace.Luma luma)
+	{
+		final ImageWindow active = (ImageWindow) desktopPane.getSelectedFrame();
+		
+		if (active == null)
+		{
+			showError("No image to modify!");
+			return;
+		}
+		
+		active.applyConvertToGrayScale(luma);
+		
+	}
+	
 	public void handleFade()
 	{
 		final ImageWindow active = (ImageWindow) desktopPane.getSelectedFrame();
@@ -1762,6 +1989,34 @@ public class NIMP
 			active.undo();
 	}
 	
+	public void handleTurn(int quarterTurns)
+	{
+		final ImageWindow active = (ImageWindow) desktopPane.getSelectedFrame();
+		
+		if (active == null)
+		{
+			showError("No image to rotate!");
+			return;
+		}
+		
+		active.prepUndo();
+		active.turn(quarterTurns);
+	}
+	
+	public void handleFlip(boolean horizontally)
+	{
+		final ImageWindow active = (ImageWindow) desktopPane.getSelectedFrame();
+		
+		if (active == null)
+		{
+			showError("No image to flip!");
+			return;
+		}
+		
+		active.prepUndo();
+		active.flip(horizontally);
+	}
+	
 	public void handleBrightnessAdjust()
 	{
 		// (java2s 2009)
@@ -1830,6 +2085,63 @@ public class NIMP
 			active.applyKValueFilter(slide.getValue());
 	}
 	
+	public void handleGaussianBlur()
+	{
+		// (java2s 2009)
+		final ImageWindow active = (ImageWindow) desktopPane.getSelectedFrame();
+		
+		if (active == null)
+		{
+			showError("No image to smoothen!");
+			return;
+		}
+		
+		int max = active.getImage().getHeight();
+		
+		if (active.getImage().getWidth() > max)
+			max = active.getImage().getWidth();
+		
+		final JSlider slide = getSlider(max / 10, 1);
+		
+		//
+		// (javadocs n.d.)
+		final int resp = JOptionPane.showInternalConfirmDialog(active,
+				new Object[] { "Select the radius of the blur:\n", slide },
+				"Apply Gaussian blur", JOptionPane.OK_CANCEL_OPTION);
+		
+		if (resp == JOptionPane.OK_OPTION)
+			active.applyGaussianBlur(slide.getValue());
+	}
+	
+	public void handleMorphology(MorphologyFilter.Operation operation)
+	{
+		final ImageWindow active = (ImageWindow) desktopPane.getSelectedFrame();
+		
+		if (active == null)
+		{
+			showError("No image to apply morphology to!");
+			return;
+		}
+		
+		int max = active.getImage().getHeight();
+		
+		if (active.getImage().getWidth() > max)
+			max = active.getImage().getWidth();
+		
+		final JSlider height = getSlider(max / 10, 1);
+		final JSlider width = getSlider(max / 10, 1);
+		
+		//
+		// (javadocs n.d.)
+		final int resp = JOptionPane.showInternalConfirmDialog(active,
+				new Object[] { "Select the height of the structuring element:\n",
+						height, "Select the width of the structuring element:\n",
+						width }, "Apply morphology", JOptionPane.OK_CANCEL_OPTION);
+		
+		if (resp == JOptionPane.OK_OPTION)
+			active.applyMorphology(operation, height.getValue(), width.getValue());
+	}
+	
 	// int tempPixellateColSize = 1;
 	private JMenuItem	mntmPixellate;
 	
@@ -1856,6 +2168,13 @@ public class NIMP
 	private JMenuItem	mntmHistogramEqualization;
 	private JMenuItem	mntmMode;
 	private JMenuItem	mntmKvalue;
+	private JMenuItem	mntmGaussianBlur;
+	private JMenu		mnMorphology;
+	private JMenuItem	mntmErode;
+	private JMenuItem	mntmDilate;
+	private JMenuItem	mntmOpen_1;
+	private JMenuItem	mntmClose_1;
+	private JMenuItem	mntmGradient;
 	private JMenu		mnConvert;
 	private JMenu		mnHistogram;
 	private JSeparator	separator_4;
@@ -1863,10 +2182,23 @@ public class NIMP
 	private JSeparator	separator_6;
 	private JMenu		mnScale;
 	private JMenuItem	mntmBilinear;
+	private JMenuItem	mntmBicubic;
+	private JMenuItem	mntmLanczos;
 	private JMenu		mnRotate;
 	private JMenuItem	mntmInterpolate;
+	private JSeparator	separator_15;
+	private JMenuItem	mntmLeft;
+	private JMenuItem	mntmRight;
+	private JMenuItem	mntmHalfTurn;
+	private JMenu		mnFlip;
+	private JMenuItem	mntmHorizontal;
+	private JMenuItem	mntmVertical;
 	private JMenuItem	mntmJinZhou;
+	private JMenu		mnSegment;
 	private JMenuItem	mntmSegment;
+	private JMenuItem	mntmSegment3;
+	private JMenuItem	mntmSegment4;
+	private JMenuItem	mntmSegment5;
 	private JSeparator	separator_7;
 	private JMenu		mnThreshold;
 	private JMenuItem	mntmAt;
@@ -1878,6 +2210,8 @@ public class NIMP
 	private JSeparator	separator_9;
 	private JMenu		mnGrayScale;
 	private JMenuItem	mntmLuminescence;
+	private JMenuItem	mntmRec601;
+	private JMenuItem	mntmRec709;
 	private JMenuItem	mntmFade;
 	private JMenu		mnWarp;
 	private JMenuItem	mntmBulge;
@@ -2236,6 +2570,13 @@ public class NIMP
 	// (java2s 2009)
 	
 	public void handleBilinearScaleImage()
+	{
+		handleScaleImage(Resampler.Mode.BILINEAR);
+	}
+	
+	// (java2s 2009)
+	
+	public void handleScaleImage(Resampler.Mode mode)
 	{
 		final ImageWindow active = (ImageWindow) desktopPane.getSelectedFrame();
 		
@@ -2246,8 +2587,8 @@ public class NIMP
 		}
 		
 		final JCheckBox scale = getKeepToScaleCheckBox();
-		final JSlider v = getSlider(5, 1);
-		final JSlider h = getSlider(5, 1);
+		final JSlider v = getPercentageSlider();
+		final JSlider h = getPercentageSlider();
 		
 		v.addChangeListener(new ChangeListener()
 		{
@@ -2272,17 +2613,31 @@ public class NIMP
 		});
 		
 		final int resp = JOptionPane.showInternalConfirmDialog(active,
-				new Object[] { "Select scaling to use when scaling image!\n",
+				new Object[] { "Select scaling (%) to use when scaling image!\n",
 						"Horizontal", h, "Vertical", v, scale }, "Scaling",
 				JOptionPane.OK_CANCEL_OPTION);
 		
 		if (resp != JOptionPane.OK_OPTION)
 			return;
 		
-		active.biLinearEnlarge(h.getValue(), v.getValue());
+		// Below 100% the image is shrunk, by averaging unless nearest
+		// pixels are asked for. 0% is taken as 1%.
+		active.scale(Math.max(1, h.getValue()) / 100.0,
+				Math.max(1, v.getValue()) / 100.0, mode);
 		
 	}
 	
+	// Slider of percentages up to 500%, starting at 100%.
+	private JSlider getPercentageSlider()
+	{
+		final JSlider slider = new JSlider(0, 500, 100);
+		slider.setMajorTickSpacing(100);
+		slider.setMinorTickSpacing(25);
+		slider.setPaintTicks(true);
+		slider.setPaintLabels(true);
+		return slider;
+	}
+	
 	private JSlider getSlider(int max, int min)
 	{
 		final JSlider h = new JSlider();
@@ -2559,13 +2914,19 @@ public class NIMP
 		
 		final DataOutputStream outputStream = new DataOutputStream(
 				new FileOutputStream(file));
+		// getRGB corrects the gamma of gray-scale images, so their
+		// samples are read as they are.
+		final boolean gray = image.getType() == BufferedImage.TYPE_BYTE_GRAY;
 		
 		for (int row = 0; row < imHeight; ++row)
 			for (int col = 0; col < imWidth; ++col)
 			{
 				statusBar.setProgress(row / imHeight);
 				
-				temp = image.getRGB(col, row);
+				if (gray)
+					temp = image.getRaster().getSample(col, row, 0) << 16;
+				else
+					temp = image.getRGB(col, row);
 				outputStream.writeByte(temp >> 16 & 0xff);
 				
 			}
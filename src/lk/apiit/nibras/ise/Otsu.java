@@ -0,0 +1,105 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file finds the thresholds that split the values of a layer into
+ * classes as far apart as possible, by Otsu's method. The thresholds are the
+ * ones for which the sum, over the classes, of the square of the sum of the
+ * values of a class divided by the number of values in it is greatest; this
+ * is the between class variance, less a constant. The numbers and sums of
+ * the values below each value are added up once, so those of any class are
+ * found with two subtractions.
+ *
+ * Trying every set of thresholds takes 256 steps for one threshold but
+ * 256 x 256 x 256 for three. Instead the best split of the values up to
+ * each value is found for one threshold, then from those for two and so on,
+ * which takes 256 x 256 steps for each threshold.
+ *
+ * References:
+ *
+ * Greensted, A. 2010. Otsu Thresholding - The Lab Book Pages. [online]
+ * Available at:
+ * http://www.labbookpages.co.uk/software/imgProc/otsuThreshold.html [Accessed:
+ * 7 Jan 2014].
+ *
+ * Liao, P., Chen, T. and Chung, P. 2001. A fast algorithm for multilevel
+ * thresholding. Journal of Information Science and Engineering, 17 (5),
+ * pp. 713--727.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+public final class Otsu {
+
+    private static final int LEVELS = LookupTable.LEVELS;
+    // Most thresholds worked out at once, for five classes.
+    public static final int MAX_THRESHOLDS = 4;
+
+    private Otsu() {
+    }
+
+    // Returns count thresholds, in increasing order, splitting the values of
+    // the histogram into count + 1 classes. Values up to and including the
+    // first threshold make up the first class and so on. Of equally good
+    // thresholds the lowest are taken.
+    // (Greensted 2010)
+    // (Liao and Chen et al., 2001, pp. 713--727)
+    public static int[] thresholds(int[] histogram, int count) {
+        if (count < 1 || count > MAX_THRESHOLDS) {
+            throw new IllegalArgumentException("Between 1 and "
+                    + MAX_THRESHOLDS + " thresholds");
+        }
+        // Number and sum of the values below each value.
+        final long[] below = new long[LEVELS + 1];
+        final long[] sumBelow = new long[LEVELS + 1];
+        for (int value = 0; value < LEVELS; value++) {
+            below[value + 1] = below[value] + histogram[value];
+            sumBelow[value + 1] = sumBelow[value] + (long) value
+                    * histogram[value];
+        }
+
+        // best[c][v] is the best the values 0 to v can do split by c
+        // thresholds, and split[c][v] the last of those thresholds.
+        final double[][] best = new double[count + 1][LEVELS];
+        final int[][] split = new int[count + 1][LEVELS];
+        for (int value = 0; value < LEVELS; value++) {
+            best[0][value] = spread(below, sumBelow, 0, value);
+        }
+        for (int c = 1; c <= count; c++) {
+            for (int value = c; value < LEVELS; value++) {
+                double most = -1;
+                for (int t = c - 1; t < value; t++) {
+                    final double score = best[c - 1][t]
+                            + spread(below, sumBelow, t + 1, value);
+                    if (score > most) {
+                        most = score;
+                        split[c][value] = t;
+                    }
+                }
+                best[c][value] = most;
+            }
+        }
+
+        final int[] thresholds = new int[count];
+        int value = LEVELS - 1;
+        for (int c = count; c > 0; c--) {
+            value = split[c][value];
+            thresholds[c - 1] = value;
+        }
+        return thresholds;
+    }
+
+    // Square of the sum of the values first to last over their number.
+    private static double spread(long[] below, long[] sumBelow, int first,
+            int last) {
+        final long number = below[last + 1] - below[first];
+        if (number == 0) {
+            return 0;
+        }
+        final double sum = sumBelow[last + 1] - sumBelow[first];
+        return sum * sum / number;
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file runs image operations on all processors. An operation hands over
+ * a kernel that processes a band of rows (or of columns). The rows of the
+ * image are split into bands which are processed in parallel on a
+ * ForkJoinPool. Kernels must only write to the rows they are given, and must
+ * keep every other variable they change local, so that bands can't interfere
+ * with each other. Each band covers all layers of its rows since the layers
+ * of a pixel may share a single int in the image buffer.
+ *
+ * References:
+ *
+ * JavaDocs. n.d. ForkJoinPool (Java Platform SE 7 ). [online] Available at:
+ * http://docs.oracle.com/javase/7/docs/api/java/util/concurrent/ForkJoinPool.html
+ * [Accessed: 7 Jan 2014].
+ *
+ * JavaDocs. n.d. RecursiveAction (Java Platform SE 7 ). [online] Available at:
+ * http://docs.oracle.com/javase/7/docs/api/java/util/concurrent/RecursiveAction.html
+ * [Accessed: 7 Jan 2014].
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public final class ParallelEngine {
+
+    // One pool, sized to the number of processors, is shared by all images.
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+    // Bands smaller than this are not worth handing to another thread.
+    private static final int MIN_BAND_HEIGHT = 8;
+    // Bands per thread. A few more bands than threads evens out the load
+    // when some rows take longer than others.
+    private static final int BANDS_PER_THREAD = 4;
+
+    // Work done on rows firstRow (inclusive) to endRow (exclusive).
+    public interface RowKernel {
+
+        void processRows(int firstRow, int endRow);
+    }
+
+    private ParallelEngine() {
+    }
+
+    public static int getParallelism() {
+        return POOL.getParallelism();
+    }
+
+    // Runs the kernel over rows 0 to rows - 1 and returns once all of them
+    // are done.
+    public static void forEachRow(int rows, RowKernel kernel) {
+        forEachRow(rows, MIN_BAND_HEIGHT, kernel);
+    }
+
+    // As above, for kernels that need bands of at least minBandHeight rows
+    // to be worth splitting.
+    public static void forEachRow(int rows, int minBandHeight,
+            RowKernel kernel) {
+        if (rows <= 0) {
+            return;
+        }
+        final int bandHeight = Math.max(Math.max(MIN_BAND_HEIGHT,
+                minBandHeight), rows
+                / (POOL.getParallelism() * BANDS_PER_THREAD));
+        if (rows <= bandHeight) {
+            kernel.processRows(0, rows); // Not worth a thread.
+            return;
+        }
+        POOL.invoke(new Band(kernel, 0, rows, bandHeight));
+    }
+
+    // Runs the kernel over bands of columns 0 to columns - 1 instead, for
+    // kernels that go down the image. The kernel is given the first and end
+    // column of its band. Bands of columns may share rows since separate
+    // pixels never share an int.
+    public static void forEachColumn(int columns, int minBandWidth,
+            RowKernel kernel) {
+        forEachRow(columns, minBandWidth, kernel);
+    }
+
+    // Splits its rows in half until they fit in a band.
+    private static final class Band extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final RowKernel kernel;
+        private final int firstRow, endRow, bandHeight;
+
+        Band(RowKernel kernel, int firstRow, int endRow, int bandHeight) {
+            this.kernel = kernel;
+            this.firstRow = firstRow;
+            this.endRow = endRow;
+            this.bandHeight = bandHeight;
+        }
+
+        @Override
+        protected void compute() {
+            if (endRow - firstRow <= bandHeight) {
+                kernel.processRows(firstRow, endRow);
+                return;
+            }
+            final int middle = (firstRow + endRow) >>> 1;
+            invokeAll(new Band(kernel, firstRow, middle, bandHeight),
+                    new Band(kernel, middle, endRow, bandHeight));
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file turns an image into a pencil sketch. The image is turned gray by
+ * averaging its layers and smoothed with a 3 x 3 median filter. Its edges are
+ * then found, with the Sobel operator, a Laplacean mask or the method of Zhou
+ * and Li (2005), and turned into pencil shades: the stronger the edge the
+ * darker the shade. The shades are smoothed with a 3 x 3 median filter again.
+ *
+ * The steps are run as a pipeline on a single gray layer. Each step keeps
+ * only the last three rows it worked out, which is all the next step needs,
+ * so a row of the sketch is made as soon as the rows around it in the image
+ * have been read, and the image is read and written once. Rows are processed
+ * in parallel bands, each band working out the few rows above it again. The
+ * method of Zhou and Li searches along whole rows and columns, so the
+ * smoothed gray image is worked out in full first and the rest of the
+ * pipeline follows in a second pass.
+ *
+ * Pixels beyond the edge of the image take the value of the nearest edge
+ * pixel at every step.
+ *
+ * References:
+ *
+ * Amarasinghe, U. (n.d). Basic Effects. [PowerPoint slides]. Colombo: Asia
+ * Pacific Institute of Information Technology. Available at: Learning
+ * Management System APIIT City Campus. Imaging and Special Effects.
+ * <http://lms.apiit.lk/course/view.php?id=1815> (accessed 6th January 2014)
+ *
+ * Durovic I. (n.d). Digital image processing. [PowerPoint slides].
+ * <www.etf.ucg.ac.me/Digital%20image%20processing.pdf?> (accessed 6th January
+ * 2014)
+ *
+ * Zhou, J. and Li, B. 2005. Automatic generation of pencil-sketch like
+ * drawings from personal photos. In: IEEE International Conference on
+ * Multimedia and Expo. pp. 1026--1029.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+public class PencilSketch {
+
+    public static enum Edges {
+
+        SOBEL, LAPLACEAN, JIN_ZHOU
+    }
+
+    // Edges weaker than this are not drawn.
+    private static final int FAINTEST_EDGE = 4;
+    private static final GradientEngine SOBEL = new GradientEngine(
+            GradientEngine.Magnitude.EXACT);
+    // Bands recompute the rows above them, so are kept tall.
+    private static final int MIN_BAND_HEIGHT = 32;
+
+    private final Edges edges;
+    private final LookupTable shades;
+
+    public PencilSketch(Edges edges, int lightestShade) {
+        this.edges = edges;
+        this.shades = LookupTable.pencilShade(1, lightestShade);
+    }
+
+    // Writes the sketch of source into every layer of target, which must be
+    // the same size as source.
+    public void apply(final PixelStore source, final PixelStore target) {
+        final int h = source.getHeight();
+        final int w = source.getWidth();
+
+        if (edges != Edges.JIN_ZHOU) {
+            ParallelEngine.forEachRow(h, MIN_BAND_HEIGHT,
+                    new ParallelEngine.RowKernel() {
+                @Override
+                public void processRows(int firstRow, int endRow) {
+                    new Pipeline(source, null, target).run(firstRow, endRow);
+                }
+            });
+            return;
+        }
+
+        // The smoothed gray image, laid out row after row.
+        final int[] smooth = new int[h * w];
+        ParallelEngine.forEachRow(h, MIN_BAND_HEIGHT,
+                new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                final Pipeline pipeline = new Pipeline(source, null, null);
+                pipeline.start(firstRow);
+                for (int row = firstRow; row < endRow; row++) {
+                    System.arraycopy(pipeline.smooth(row), 1, smooth, row * w,
+                            w);
+                }
+            }
+        });
+        ParallelEngine.forEachRow(h, MIN_BAND_HEIGHT,
+                new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                new Pipeline(source, smooth, target).run(firstRow, endRow);
+            }
+        });
+    }
+
+    // The steps of the sketch for one band of rows. Each step holds its
+    // last three rows in a ring, padded by a pixel either side, and works
+    // out the next row when asked for one it doesn't have.
+    private final class Pipeline {
+
+        private final PixelStore source, target;
+        private final int[] smoothImage;
+        private final int h, w;
+        private final int[][] grayRows, smoothRows, shadeRows;
+        // Next row each step will work out.
+        private int nextGray, nextSmooth, nextShade;
+        private final int[] line, result;
+
+        // With smoothImage given, the smoothed rows are taken from it
+        // rather than worked out.
+        Pipeline(PixelStore source, int[] smoothImage, PixelStore target) {
+            this.source = source;
+            this.smoothImage = smoothImage;
+            this.target = target;
+            h = source.getHeight();
+            w = source.getWidth();
+            grayRows = new int[3][w + 2];
+            smoothRows = new int[3][w + 2];
+            shadeRows = new int[3][w + 2];
+            line = new int[w];
+            result = new int[w];
+        }
+
+        // Sets each step to start at the first row the band needs of it.
+        void start(int firstRow) {
+            nextShade = Math.max(0, firstRow - 1);
+            nextSmooth = Math.max(0, nextShade - 1);
+            nextGray = Math.max(0, nextSmooth - 1);
+        }
+
+        void run(int firstRow, int endRow) {
+            start(firstRow);
+            for (int row = firstRow; row < endRow; row++) {
+                final int[] above = shade(row - 1);
+                final int[] middle = shade(row);
+                final int[] below = shade(row + 1);
+                median(above, middle, below, result);
+                for (int layer = 0; layer < target.getPlanes(); layer++) {
+                    target.setRow(layer, row, result);
+                }
+            }
+        }
+
+        // Average of the layers of a row.
+        int[] gray(int row) {
+            row = clamp(row);
+            while (nextGray <= row) {
+                final int[] gray = grayRows[nextGray % 3];
+                final int planes = source.getPlanes();
+                for (int col = 1; col <= w; col++) {
+                    gray[col] = 0;
+                }
+                for (int layer = 0; layer < planes; layer++) {
+                    source.getRow(layer, nextGray, 0, w, line, 0);
+                    for (int col = 0; col < w; col++) {
+                        gray[col + 1] += line[col];
+                    }
+                }
+                for (int col = 1; col <= w; col++) {
+                    gray[col] /= planes;
+                }
+                pad(gray);
+                nextGray++;
+            }
+            return grayRows[row % 3];
+        }
+
+        // Median of the gray values around each pixel of a row.
+        int[] smooth(int row) {
+            row = clamp(row);
+            while (nextSmooth <= row) {
+                final int[] smooth = smoothRows[nextSmooth % 3];
+                if (smoothImage != null) {
+                    System.arraycopy(smoothImage, nextSmooth * w, smooth, 1, w);
+                } else {
+                    final int[] above = gray(nextSmooth - 1);
+                    final int[] middle = gray(nextSmooth);
+                    final int[] below = gray(nextSmooth + 1);
+                    median(above, middle, below, line);
+                    System.arraycopy(line, 0, smooth, 1, w);
+                }
+                pad(smooth);
+                nextSmooth++;
+            }
+            return smoothRows[row % 3];
+        }
+
+        // Pencil shade of the edge at each pixel of a row.
+        int[] shade(int row) {
+            row = clamp(row);
+            while (nextShade <= row) {
+                final int[] shade = shadeRows[nextShade % 3];
+                switch (edges) {
+                    case SOBEL:
+                        sobel(smooth(nextShade - 1), smooth(nextShade),
+                                smooth(nextShade + 1), shade);
+                        break;
+                    case LAPLACEAN:
+                        laplacean(smooth(nextShade - 1), smooth(nextShade),
+                                smooth(nextShade + 1), shade);
+                        break;
+                    default:
+                        for (int col = 0; col < w; col++) {
+                            shade[col + 1] = jinZhou(nextShade, col);
+                        }
+                }
+                for (int col = 1; col <= w; col++) {
+                    shade[col] = shades.lookup(0, shade[col]);
+                }
+                pad(shade);
+                nextShade++;
+            }
+            return shadeRows[row % 3];
+        }
+
+        private void sobel(int[] above, int[] middle, int[] below,
+                int[] shade) {
+            SOBEL.filterRow(above, middle, below, w, line, null, 0);
+            for (int col = 0; col < w; col++) {
+                shade[col + 1] = line[col] < FAINTEST_EDGE ? 0 : line[col];
+            }
+        }
+
+        // Only the dark side of each edge is drawn.
+        // (Amarasinghe n.d.; Durovic n.d.)
+        private void laplacean(int[] above, int[] middle, int[] below,
+                int[] shade) {
+            for (int col = 1; col <= w; col++) {
+                final int edge = above[col] + middle[col - 1] + middle[col + 1]
+                        + below[col] - 4 * middle[col];
+                shade[col] = edge > 0 ? 0 : PixelStore.clamp(-edge);
+            }
+        }
+
+        // The steepest slope away from the pixel along its row and column,
+        // in either direction, as long as the slope keeps getting steeper.
+        // (Zhou and Li, 2005, pp. 1026--1029)
+        private int jinZhou(int row, int col) {
+            final int[] image = smoothImage;
+            final int centre = image[row * w + col];
+            int maxrow = 0, maxcol = 0, maxg;
+
+            // Find the maxima to the left
+            maxg = 0;
+            for (int i = row - 1; i >= 0; i--) {
+                final int g = (centre - image[i * w + col]) / (row - i);
+                if (Math.abs(g) > Math.abs(maxg)) {
+                    maxg = g;
+                } else {
+                    break;
+                }
+            }
+            maxrow += maxg;
+
+            // To the right
+            maxg = 0;
+            for (int i = row + 1; i < h; i++) {
+                final int g = (centre - image[i * w + col]) / (row - i);
+                if (Math.abs(g) > Math.abs(maxg)) {
+                    maxg = g;
+                } else {
+                    break;
+                }
+            }
+            maxrow += maxg;
+
+            maxg = 0;
+            for (int i = col - 1; i >= 0; i--) {
+                final int g = (centre - image[row * w + i]) / (col - i);
+                if (Math.abs(g) > Math.abs(maxg)) {
+                    maxg = g;
+                } else {
+                    break;
+                }
+            }
+            maxcol += maxg;
+
+            maxg = 0;
+            for (int i = col + 1; i < w; i++) {
+                final int g = (centre - image[row * w + i]) / (col - i);
+                if (Math.abs(g) > Math.abs(maxg)) {
+                    maxg = g;
+                } else {
+                    break;
+                }
+            }
+            maxcol += maxg;
+
+            final int shade = Math.min(255, Math.abs(Math.abs(maxrow) >= Math
+                    .abs(maxcol) ? maxrow : maxcol));
+            return shade < FAINTEST_EDGE ? 0 : shade;
+        }
+
+        // Median of the 3 x 3 square around each pixel of the middle row.
+        private void median(int[] above, int[] middle, int[] below,
+                int[] median) {
+            for (int col = 0; col < w; col++) {
+                median[col] = MedianFilter.median(above[col], above[col + 1],
+                        above[col + 2], middle[col], middle[col + 1],
+                        middle[col + 2], below[col], below[col + 1],
+                        below[col + 2]);
+            }
+        }
+
+        // Repeats the pixels at either end of a row into its padding.
+        private void pad(int[] padded) {
+            padded[0] = padded[1];
+            padded[w + 1] = padded[w];
+        }
+
+        private int clamp(int row) {
+            return row < 0 ? 0 : row >= h ? h - 1 : row;
+        }
+    }
+}
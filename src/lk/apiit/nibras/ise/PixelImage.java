@@ -20,463 +20,401 @@
  */
 package lk.apiit.nibras.ise;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
 
 public class PixelImage {
 
     private BufferedImage image;
-    // Arrays to read and store pixel values for manipulation.
-    // Image is loaded into rawImageArray. Where image cannot
-    // be manipulated in same array, targetImageArray is used
-    // to store the result.
-    // Both gray-scale and color images are treated as color
-    // images. Alpha layer is ignored. Each image is considered
-    // as a 2D array with three/four layer with each layer
-    // representing either a color(Red, Green or Blue) or alpha
-    // layer. This results in a 3D array.
-    private short[][][] rawImageArray;
-    private short[][][] targetImageArray;
-    private int[] rgbArray;
+    // Stores to read and keep pixel values for manipulation.
+    // Image is loaded into store. Where image cannot be
+    // manipulated in place, target is used to store the result
+    // and the two are swapped afterwards.
+    // Color images have three layers (Red, Green and Blue) and
+    // gray-scale images one. Alpha layer is ignored. Each store
+    // works on the buffer of its own BufferedImage, see PixelStore.
+    // Black and white results are held as bits in binary instead, with
+    // store null, and expanded into a store by store() only once an
+    // operation needs gray levels.
+    private PixelStore store;
+    private PixelStore target;
     private int h, l, w;
-    private short[][][] snapshot;
+    private PixelStore snapshot;
+    private BinaryImage snapshotBinary;
     private boolean undoable;
-    // Temporary counter variables are defined once here instead
-    // of redefining them as required to improve performance.
-    private int srcRow, srcCol;
-    private int layer, row, col;
-    private final int colorDepth = 256;
+    // Parts of the image changed since the display last asked for them and
+    // since the snapshot was taken. Null when nothing has changed.
+    private Rectangle dirtyRegion, changedSinceSnapshot;
+    // Rotations, scalings, moves and crops done one after the other are
+    // chained into one transformation of the image the first of them
+    // started from, so the image is only ever resampled once from it. The
+    // chain holds while nothing else has changed the image, that is while
+    // version, counting every change, is still chainVersion.
+    private PixelStore chainSource, snapshotChainSource;
+    private Transformation chain, snapshotChain;
+    private long version, chainVersion;
+    // Halvings of the image, kept while the image is at pyramidVersion.
+    private Pyramid pyramid;
+    private long pyramidVersion;
+    // Histograms and the like, kept while the image is at
+    // statisticsVersion.
+    private Statistics statistics;
+    private long statisticsVersion;
+    // The image as one bit a pixel while it is at binaryVersion, or null
+    // if it is not black and white. Dropped whenever the image changes.
+    private BinaryImage binary;
+    private long binaryVersion = -1;
 
     private void updateImage() {
-        NIMP.getInstance().getStatusBar().setStatus("Rendering Image...");
-        NIMP.getInstance().getStatusBar().setProgress(0);
-        // (stackoverflow 2012)
-        updateDimensions(); // In case images sizes have changed, check it.
+        updateImage(null);
+    }
 
-        // Make sure the buffer is large enough to hold the entire image.
-        if (rgbArray.length != h * w) {
-            rgbArray = new int[h * w];
+    // Operations that only change part of the image pass the part they
+    // changed. Null stands for the whole image. The status bar is left to
+    // ImageWindow, which sets it around every operation.
+    private void updateImage(Rectangle changed) {
+        updateDimensions(); // In case images sizes have changed, check it.
+        version++;
+        if (chainVersion != version) {
+            // Anything but a geometric operation ends the chain, and the
+            // image the chain started from is let go.
+            chain = null;
+            chainSource = null;
         }
-
-        int colOffset;
-        for (row = 0; row < h; row++) {
-            colOffset = row * w;
-            for (col = 0; col < w; col++) {
-                // Alpha layer is always 100%/255.
-                // Use the 0xAARRGGBB style for int.
-                rgbArray[col + colOffset] = 0xff000000
-                        | rawImageArray[0][row][col] << 16
-                        | rawImageArray[1][row][col] << 8
-                        | rawImageArray[2][row][col];
-            }
+        // What was worked out for the previous version is let go, so that
+        // none of it keeps old stores from being freed.
+        pyramid = null;
+        statistics = null;
+        if (store == null) {
+            binaryVersion = version; // Held as bits, see holdAsBits.
+        } else {
+            binary = null;
         }
 
-        // Make sure the BufferedImage used is the right size. If not,
-        // make a new one.
-        if (h != image.getHeight() || w != image.getWidth()) {
-            image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        // The store works on the buffer of its BufferedImage, so the pixels
+        // are already in place. Only the image to display may have changed,
+        // in which case all of it is new. Bits are displayed through an
+        // image of their own, set by holdAsBits.
+        final BufferedImage displayed = store != null ? store.getImage()
+                : image;
+        if (changed == null || image != displayed) {
+            changed = new Rectangle(0, 0, w, h);
+            image = displayed;
         }
+        if (!changed.isEmpty()) {
+            dirtyRegion = union(dirtyRegion, changed);
+            changedSinceSnapshot = union(changedSinceSnapshot, changed);
+        }
+    }
 
-        // Put the RGB int values into the BufferedImage.
-        image.setRGB(0, 0, w, h, rgbArray, 0, w);
-
-        NIMP.getInstance().getStatusBar().setProgress(100);
-        NIMP.getInstance().getStatusBar().setStatus("");
+    private static Rectangle union(Rectangle region, Rectangle changed) {
+        return region == null ? new Rectangle(changed) : region.union(changed);
     }
 
     public BufferedImage getImage() {
         return image;
     }
 
+    // Returns the part of the image changed since the last call, so that
+    // only that part needs to be repainted. Null if nothing has changed.
+    public Rectangle takeDirtyRegion() {
+        final Rectangle region = dirtyRegion;
+        dirtyRegion = null;
+        return region;
+    }
+
     // Likely to be the first method called.
     public void setImage(BufferedImage image) {
-        // Store a reference to the original BufferedImage. BufferedImage acts
-        // as the universal currency in this program. All images are loaded as
-        // BufferedImage and passed here. The BufferedImage is sliced into 3
-        // layers and stored in Arrays and manipulated. When image is to be
-        // displayed, it's converted from the Arrays back into BufferedImage.
-        this.image = image;
-        w = image.getWidth();
-        h = image.getHeight();
-
-        // Color layer is the first array. Using [row][column][layer]
-        // would result in row*column number of short[] arrays but, this
-        // setup would result in only layer*row number of short[] arrays
-        // which is significantly lower.
-
-        // Initialize the required Arrays.
-        rawImageArray = new short[3][h][w];
-        rgbArray = new int[h * w]; // The buffer between 3D Array and
-        // BufferedImage.
-
-        image.getRGB(0, 0, w, h, rgbArray, 0, w);
-
-        int colOffset;
-        for (row = 0; row < h; row++) {
-            colOffset = row * w;
-            for (col = 0; col < w; col++) {
-                // Convert from the combined ARGB colored model to individual
-                // color layers.
-                // (stackoverflow 2012)
-                int temp = rgbArray[col + colOffset];
-                rawImageArray[0][row][col] = (short) (temp >> 16 & 0xff);
-                rawImageArray[1][row][col] = (short) (temp >> 8 & 0xff);
-                rawImageArray[2][row][col] = (short) (temp & 0xff);
-                // Alpha layers is discarded. It's not loaded.
-            }
-        }
+        // BufferedImage acts as the universal currency in this program. All
+        // images are loaded as BufferedImage and passed here. The store works
+        // directly on the data buffer of the BufferedImage, so manipulating
+        // the store manipulates the image being displayed. Images of a layout
+        // the store doesn't know are converted once, here.
+        // (Manipulation 2012)
+        store = PixelStore.wrap(image);
+        target = null;
+        snapshotBinary = null;
+        chain = null;
+        chainSource = null;
+        pyramid = null;
+        statistics = null;
+        binary = null;
+        binaryVersion = -1;
+        snapshotChain = null;
+        snapshotChainSource = null;
+        this.image = store.getImage();
         // (Burke, 2011)
         // (Campbell, 2007)
 
         updateDimensions();
+        dirtyRegion = new Rectangle(0, 0, w, h);
+        changedSinceSnapshot = new Rectangle(dirtyRegion);
 
     }
 
     private void updateDimensions() {
-        l = rawImageArray.length;
-        h = rawImageArray[0].length;
-        w = rawImageArray[0][0].length;
+        if (store == null) {
+            l = 1;
+            h = binary.getHeight();
+            w = binary.getWidth();
+            return;
+        }
+        l = store.getPlanes();
+        h = store.getHeight();
+        w = store.getWidth();
 
     }
 
+    // Makes the target the current image. The previous image becomes the
+    // target so its memory can be reused by the next operation.
+    private void swapTarget() {
+        final PixelStore previous = store;
+        store = target;
+        target = previous;
+        updateDimensions();
+    }
+
     // (Amarasinghe n.d.; Durovik n.d.)
     public void adjustBrightness(short amount) {
-        for (int layer = 0; layer < l; ++layer) {
-            for (int row = 0; row < h; ++row) {
-                for (int col = 0; col < w; col++) {
-                    rawImageArray[layer][row][col] += amount;
-
-                    if (rawImageArray[layer][row][col] > 255) {
-                        rawImageArray[layer][row][col] = (short) 255;
-                    } else if (rawImageArray[layer][row][col] < 0) {
-                        rawImageArray[layer][row][col] = (short) 0;
-                    }
-
-                }
-            }
-        }
-
-        updateImage();
+        applyLookupTable(LookupTable.brightness(l, amount));
     }
 
     // (Amarasinghe n.d.; Durovic n.d.)
     public void quantization(short step_size) {
-        for (layer = 0; layer < l; ++layer) {
-            for (row = 0; row < h; ++row) {
-                for (col = 0; col < w; col++) {
-                    rawImageArray[layer][row][col] = (short) (rawImageArray[layer][row][col]
-                            / step_size * step_size);
-                }
-            }
-        }
+        applyLookupTable(LookupTable.quantization(l, step_size));
+    }
 
+    // Applies a point operation, or a chain of them joined with
+    // LookupTable.then, in a single pass.
+    public void applyLookupTable(LookupTable table) {
+        table.apply(store());
         updateImage();
     }
 
     // (Amarasinghe n.d.;Durovic n.d.)
     public void rotate(double angle) {
-
-        targetImageArray = getTargetImageArray(h, w);
-        angle = Math.toRadians(angle);
-        int x0 = w / 2;
-        int y0 = h / 2;
-        for (row = 0; row < h; ++row) {
-
-            for (col = 0; col < w; col++) {
-                row = y0 - row;
-                col = x0 - col;
-
-                // Following code uses Cartesian coordinates and rotates the
-                // points
-                // about the origin. However, by default, top right is the
-                // origin.
-                // Instead, we are temporarily changing the origin to the center
-                // of the image perform the rotation and convert back to regular
-                // coordinates.
-                srcRow = (int) Math.round((col) * Math.sin(angle) + (row)
-                        * Math.cos(angle));
-                srcCol = (int) Math.round((col) * Math.cos(angle) - (row)
-                        * Math.sin(angle));
-                srcRow -= y0;
-                srcCol -= x0;
-
-                srcRow *= -1;
-                srcCol *= -1;
-
-                row -= y0;
-                col -= x0;
-                row *= -1;
-                col *= -1;
-                if (srcRow >= 0 && srcRow < h && srcCol >= 0 && srcCol < w) {
-                    targetImageArray[0][row][col] = rawImageArray[0][srcRow][srcCol];
-                    targetImageArray[1][row][col] = rawImageArray[1][srcRow][srcCol];
-                    targetImageArray[2][row][col] = rawImageArray[2][srcRow][srcCol];
-                } else {
-                    targetImageArray[0][row][col] = targetImageArray[1][row][col] = targetImageArray[2][row][col] = 255;
-                }
-            }
-        }
-
-        rawImageArray = targetImageArray;
-
-        updateImage();
+        rotate(angle, Resampler.Mode.NEAREST);
     }
 
     // (Amarasinghe n.d.; Durovic n.d.)
     public void rotateIngterpolate(double angle) {
-        angle = Math.toRadians(angle);
-
-        double x, y;
-        short row1WeightedAvg, row2WeigtedAvg;
-
-        int xcenter = w / 2;
-        int ycenter = h / 2;
-
-        targetImageArray = getTargetImageArray(h, w);
-
-        double tempSrcRow, tempSrcCol;
-
-        for (row = 0; row < h; ++row) {
-            NIMP.getInstance().getStatusBar().setProgress(row / (2 * l));
-
-            for (col = 0; col < w; col++) {
-                row = ycenter - row;
-                col = xcenter - col;
-                tempSrcRow = Math.round(col * Math.sin(angle) + row
-                        * Math.cos(angle));
-                tempSrcCol = Math.round(col * Math.cos(angle) - row
-                        * Math.sin(angle));
-
-                tempSrcRow -= ycenter;
-                tempSrcCol -= xcenter;
-
-                tempSrcRow *= -1;
-                tempSrcCol *= -1;
-
-                row -= ycenter;
-                col -= xcenter;
-                row *= -1;
-                col *= -1;
-
-                srcRow = (int) tempSrcRow;
-                srcCol = (int) tempSrcCol;
-
-                x = tempSrcCol - srcCol;
-                y = tempSrcRow - srcRow;
-
-                for (layer = 0; layer < l; ++layer) {
-                    if (srcRow >= 0 && srcRow < h - 1 && srcCol >= 0
-                            && srcCol < w - 1) {
-
-                        row1WeightedAvg = getLinearInterpolate(x,
-                                rawImageArray[layer][srcRow][srcCol],
-                                rawImageArray[layer][srcRow][srcCol + 1]);
-                        row2WeigtedAvg = getLinearInterpolate(x,
-                                rawImageArray[layer][srcRow + 1][srcCol],
-                                rawImageArray[layer][srcRow + 1][srcCol + 1]);
+        rotate(angle, Resampler.Mode.BILINEAR);
+    }
 
-                        targetImageArray[layer][row][col] = getLinearInterpolate(
-                                y, row1WeightedAvg, row2WeigtedAvg);
+    // Turns the image about its centre. Corners turned out of the image are
+    // lost and those turned in are white.
+    // (Amarasinghe n.d.; Durovic n.d.)
+    public void rotate(double angle, Resampler.Mode mode) {
+        transform(chain().rotate(angle), mode);
+    }
 
-                    } else {
-                        targetImageArray[layer][row][col] = 255;
-                    }
-                }
-            }
-        }
+    // Turns the image by a number of right angles, anticlockwise for
+    // positive numbers, without losing any of it.
+    public void turn(int quarterTurns) {
+        transform(chain().turn(quarterTurns), Resampler.Mode.NEAREST);
+    }
 
-        rawImageArray = targetImageArray;
+    public void flipHorizontally() {
+        transform(chain().flipHorizontally(), Resampler.Mode.NEAREST);
+    }
 
-        updateImage();
+    public void flipVertically() {
+        transform(chain().flipVertically(), Resampler.Mode.NEAREST);
     }
 
     // (Amarasinghe n.d.; Durovic n.d.)
-    public void pixellate(int rStepSize, int cStepSize) {
-        targetImageArray = getTargetImageArray(h, w);
-        for (layer = 0; layer < l; ++layer) {
-            for (row = 0; row < h; ++row) {
-                srcRow = row / rStepSize * rStepSize;
-                for (col = 0; col < w; col++) {
-                    srcCol = col / cStepSize * cStepSize;
-                    targetImageArray[layer][row][col] = rawImageArray[layer][srcRow][srcCol];
+    public void pixellate(final int rStepSize, final int cStepSize) {
+        resample(h, w, Resampler.Mode.NEAREST, new Resampler.Mapping() {
+            @Override
+            public void map(int row, int[] cols, int[] rows) {
+                Arrays.fill(rows, row / rStepSize * rStepSize
+                        << Resampler.FRACTION_BITS);
+                for (int col = 0; col < cols.length; col++) {
+                    cols[col] = col / cStepSize * cStepSize
+                            << Resampler.FRACTION_BITS;
                 }
             }
-        }
-
-        rawImageArray = targetImageArray;
-
-        updateImage();
+        }, 255);
     }
 
     // (Amarasinghe n.d.; Durovic n.d.)
     public void enlarge(int horizontalPercentage, int verticalPercentage) {
+        scale(horizontalPercentage, verticalPercentage,
+                Resampler.Mode.NEAREST);
+    }
 
-        final int tw = w * horizontalPercentage;
-        final int th = h * verticalPercentage;
+    // (Amarasinghe n.d.; Durovic n.d.)
+    public short getLinearInterpolate(double value, int pixelValue1,
+            int pixelValue2) {
 
-        targetImageArray = getTargetImageArray(th, tw);
+        return (short) (value * (pixelValue2 - pixelValue1) + pixelValue1);
 
-        int srcRow;
-        int srcCol;
+    }
 
-        for (row = 0; row < th; ++row) {
-            NIMP.getInstance().getStatusBar().setProgress(row / (th));
-            srcRow = row / verticalPercentage;
-            for (col = 0; col < tw; ++col) {
+    // (Amarasinghe n.d.; Durovic n.d.)
+    public void enlargeByLinearInterpolate(double horizontalPercentage,
+            double verticalPercentage) {
+        scale(horizontalPercentage, verticalPercentage,
+                Resampler.Mode.BILINEAR);
+    }
 
-                srcCol = col / horizontalPercentage;
-                if (srcRow >= 0 && srcRow < h && srcCol >= 0 && srcCol < w) {
-                    targetImageArray[0][row][col] = rawImageArray[0][srcRow][srcCol];
-                    targetImageArray[1][row][col] = rawImageArray[1][srcRow][srcCol];
-                    targetImageArray[2][row][col] = rawImageArray[2][srcRow][srcCol];
-                } else {
-                    targetImageArray[0][row][col] = targetImageArray[1][row][col] = targetImageArray[2][row][col] = 255;
-                }
-            }
+    // Scales the image by the given factors. The centres of the pixels at
+    // the edges of the scaled image are matched to those of the image.
+    // Unless nearest pixels are asked for, images are shrunk by averaging
+    // rather than sampled, so no detail is skipped.
+    // (Amarasinghe n.d.; Durovic n.d.)
+    public void scale(double horizontal, double vertical, Resampler.Mode mode) {
+        if (horizontal > 1 || vertical > 1 || mode == Resampler.Mode.NEAREST) {
+            transform(chain().scale(horizontal, vertical), mode);
+            return;
         }
 
-        rawImageArray = targetImageArray;
-
-        updateDimensions();
+        target = getTargetStore(Math.max(1, (int) (h * vertical)), Math.max(
+                1, (int) (w * horizontal)));
+        getPyramid().reduce(target);
+        swapTarget();
         updateImage();
     }
 
-    // (Amarasinghe n.d.; Durovic n.d.)
-    public short getLinearInterpolate(double value, int pixelValue1,
-            int pixelValue2) {
+    // Returns the pyramid of halvings of the image, made once for each
+    // version of the image. Only valid until the image next changes.
+    public Pyramid getPyramid() {
+        if (pyramid == null || pyramidVersion != version) {
+            pyramid = new Pyramid(store());
+            pyramidVersion = version;
+        }
+        return pyramid;
+    }
 
-        return (short) (value * (pixelValue2 - pixelValue1) + pixelValue1);
+    // Returns a copy of the image shrunk to the given size, for icons and
+    // previews.
+    public BufferedImage getThumbnail(int height, int width) {
+        final PixelStore thumbnail = store().createCompatible(height, width);
+        getPyramid().reduce(thumbnail);
+        return thumbnail.getImage();
+    }
 
+    // Returns the histograms and statistics of the image, worked out once
+    // for each version of the image.
+    public Statistics getStatistics() {
+        if (statistics == null || statisticsVersion != version) {
+            statistics = new Statistics(store());
+            statisticsVersion = version;
+        }
+        return statistics;
     }
 
-    // (Amarasinghe n.d.; Durovic n.d.)
-    public void enlargeByLinearInterpolate(double horizontalPercentage,
-            double verticalPercentage) {
+    // Statistics of the image given, from the cache if it is this image.
+    private Statistics getStatistics(PixelStore image) {
+        return image == store ? getStatistics() : new Statistics(image);
+    }
 
-        final int targetWidth = (int) (w * horizontalPercentage);
-        final int targetHeight = (int) (h * verticalPercentage);
-
-        double x, y; // Interpolation constants.
-        short rVal1;
-        short rVal2;
-        targetImageArray = getTargetImageArray(targetHeight, targetWidth);
-
-        int srcRow;
-        int srcCol;
-
-        h -= 1;
-        w -= 1;
-        for (layer = 0; layer < l; layer++) {
-            for (row = 0; row < targetHeight; ++row) {
-                NIMP.getInstance().getStatusBar().setProgress(row / (2 * l));
-                srcRow = (int) (row / verticalPercentage);
-                y = row / verticalPercentage - srcRow;
-                for (col = 0; col < targetWidth; ++col) {
-
-                    srcCol = (int) (col / horizontalPercentage);
-                    x = col / horizontalPercentage - srcCol;
-                    if (srcRow >= 0 && srcRow < h && srcCol >= 0 && srcCol < w) {
-                        rVal1 = getLinearInterpolate(x,
-                                rawImageArray[layer][srcRow][srcCol],
-                                rawImageArray[layer][srcRow][srcCol + 1]);
-                        rVal2 = getLinearInterpolate(x,
-                                rawImageArray[layer][srcRow + 1][srcCol],
-                                rawImageArray[layer][srcRow + 1][srcCol + 1]);
-
-                        targetImageArray[layer][row][col] = getLinearInterpolate(
-                                y, rVal1, rVal2);
-
-                    } else {
-                        targetImageArray[layer][row][col] = 255;
-                    }
-                }
-            }
+    // Returns the image as one bit a pixel, or null if it is not black and
+    // white. Worked out once for each version of the image.
+    public BinaryImage getBinaryImage() {
+        if (binaryVersion != version) {
+            binary = BinaryImage.of(store);
+            binaryVersion = version;
         }
+        return binary;
+    }
 
-        rawImageArray = targetImageArray;
+    // Returns the store of the image. An image held as bits is expanded
+    // into a gray-scale store the first time this is called, and is held as
+    // bytes from then on.
+    private PixelStore store() {
+        if (store == null) {
+            store = new PixelStore(1, h, w);
+            binary.writeTo(store);
+        }
+        return store;
+    }
 
-        updateDimensions();
+    // Makes a black and white image the image, held as one bit a pixel.
+    // The stores are let go, so only the bits and the image displaying them
+    // are kept until an operation needs gray levels again.
+    private void holdAsBits(BinaryImage bits) {
+        store = null;
+        target = null;
+        chain = null;
+        chainSource = null;
+        binary = bits;
+        image = bits.toBufferedImage();
         updateImage();
     }
 
-    private int blobCounter(int row, int col) {
+    // Holds the image as bits if it is black and white. For operations
+    // whose results are usually black and white.
+    private void holdAsBitsIfBinary() {
+        final BinaryImage bits = BinaryImage.of(store());
+        if (bits != null) {
+            holdAsBits(bits);
+        }
+    }
 
-        if (row > h || col > w) {
-            return 0;
+    // The chain the next geometric operation adds to. A new one is started
+    // from the current image if anything else changed it since the last.
+    private Transformation chain() {
+        if (chain == null || chainVersion != version) {
+            chainSource = store();
+            chain = new Transformation(h, w);
         }
+        return chain;
+    }
 
-        if (rawImageArray[0][row][col] == 255) {
-            return 0;
+    // Makes the image the chain source resampled through the given chain,
+    // or copied through it if it only moves whole pixels.
+    // The chain source is never written to, so it is kept out of the
+    // stores reused as targets.
+    private void transform(Transformation transformation, Resampler.Mode mode) {
+        chain = transformation;
+        if (target == chainSource) {
+            target = null;
+        }
+        target = getTargetStore(chain.getHeight(), chain.getWidth());
+        if (chain.isWholePixel()) {
+            // Turns by right angles, moves and crops need no resampling.
+            chain.copy(chainSource, target, 255);
+        } else {
+            new Resampler(mode).resample(chainSource, target, chain, 255);
         }
 
-        rawImageArray[0][row][col] = 255;
+        swapTarget();
+        if (target == chainSource) {
+            target = null;
+        }
+        chainVersion = version + 1; // The chain holds through this change.
+        updateImage();
+    }
 
-        return 1 + blobCounter(row + 1, col + 1) + blobCounter(row - 1, col - 1)
-                + blobCounter(row + 1, col)
-                + blobCounter(row - 1, col)
-                + blobCounter(row, col + 1)
-                + blobCounter(row, col - 1)
-                + blobCounter(row + 1, col - 1)
-                + blobCounter(row - 1, col + 1);
+    // Fills a new image of the given size from points of the current one.
+    private void resample(int height, int width, Resampler.Mode mode,
+            Resampler.Mapping mapping, int background) {
+        target = getTargetStore(height, width);
+        new Resampler(mode).resample(store(), target, mapping, background);
 
+        swapTarget();
+        updateImage();
     }
 
     public static enum FILTERS {
 
         AVERAGE_BOX, GAUSSIAN_BOX_1, GAUSSIAN_BOX_2, LAPLACEAN_LIGHT, LAPLACEAN_DARK, MEDIAN, MEDIAN_LOW, MEDIAN_HIGH, MODE
     }
-    int j;
-    private int temp;
 
     public void applyModeFilter() {
-        int mode;
-        int mcount;
-        int count;
-        final short[] temp = new short[9];
-
-        targetImageArray = getTargetImageArray(h, w);
-
-        final int temph = h - 2, tempw = w - 2;
+        applyModeFilter(1);
+    }
 
+    // Most frequent value in the square of pixels reaching radius pixels
+    // around each pixel.
+    public void applyModeFilter(int radius) {
+        target = getTargetStore(h, w);
         // (Amarasinghe n.d.; Durovic n.d.)
-        for (layer = 0; layer < l; layer++) {
-            for (row = 1; row < temph; row++) {
-                for (col = 1; col < tempw; col++) {
-                    count = 0;
-                    for (i = -1; i < 2; i++) {
-                        for (j = -1; j < 2; j++) {
-                            temp[count++] = rawImageArray[layer][row + i][col
-                                    + j];
-                        }
-                    }
-
-                    Arrays.sort(temp);
+        new ModeFilter(radius).apply(store(), target);
 
-                    mode = rawImageArray[layer][row][col];
-                    count = 1;
-                    mcount = 1;
-                    for (i = 1; i < 9; i++) {
-                        if (temp[i] == temp[i - 1]) {
-                            mcount++;
-                        } else {
-                            mcount = 0;
-                        }
-                        if (mcount > count) {
-                            count = mcount;
-                            mode = temp[i];
-                        }
-
-                    }
-
-                    targetImageArray[layer][row][col] = (short) mode;
-
-                }
-            }
-        }
-        rawImageArray = targetImageArray;
+        swapTarget();
         updateImage();
     }
 
@@ -507,489 +445,276 @@ public class PixelImage {
     }
 
     public void applyUnweightedMaskAndShowRaw(short[][] mask) {
-        rawImageArray = applyMask(rawImageArray, mask);
-
-        for (layer = 0; layer < l; layer++) {
-            for (row = 0; row < h; row++) {
-                NIMP.getInstance().getStatusBar()
-                        .setProgress(layer * row / (l * h));
-                for (col = 0; col < w; col++) {
-
-                    if (rawImageArray[layer][row][col] > 255) {
-                        rawImageArray[layer][row][col] = 255;
-                    } else if (rawImageArray[layer][row][col] < 0) {
-                        rawImageArray[layer][row][col] = 0;
+        final int[][] result = applyMask(store(), mask);
+
+        ParallelEngine.forEachRow(h, new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                for (int row = firstRow; row < endRow; row++) {
+                    for (int layer = 0; layer < l; layer++) {
+                        for (int col = 0; col < w; col++) {
+                            store.set(layer, row, col, PixelStore
+                                    .clamp(result[layer][row * w + col]));
+                        }
                     }
-
                 }
             }
-        }
+        });
         updateImage();
     }
 
     // spie.org/samples/TT92.pdf
     public void enhanceContrastNaively(int scale) {
-        temp = 255 / scale;
-        for (layer = 0; layer < l; layer++) {
-            for (row = 0; row < h; row++) {
-                for (col = 0; col < w; col++) {
-                    if (rawImageArray[layer][row][col] < temp) {
-                        rawImageArray[layer][row][col] *= scale;
-                    } else {
-                        rawImageArray[layer][row][col] = 255;
-                    }
-                }
-            }
-        }
-
-        updateImage();
+        applyLookupTable(LookupTable.contrast(l, scale));
     }
 
     // (Amarasinghe n.d.; Durovic n.d.)
     public void enhanceContrastUsingHistogramEqualization() {
-        final int[][] histogram = generateRGBHistogram(rawImageArray);
-        final int N = w * h;
-
-        // (Amarasinghe n.d.; Durovic n.d.)
-        // Convert histogram to show cumulative values.
-        // Gtg/N -1
-
-        int temp;
-        for (layer = 0; layer < l; layer++) {
-            temp = 0;
-            for (int i = 0; i < colorDepth; i++) {
-
-                temp += histogram[layer][i];
-                histogram[layer][i] = temp;
-
-            }
-        }
-        for (layer = 0; layer < l; layer++) {
-            for (row = 0; row < h; row++) {
-                for (col = 0; col < w; col++) {
-
-                    rawImageArray[layer][row][col] = (short) (colorDepth
-                            * histogram[layer][rawImageArray[layer][row][col]]
-                            / N - 1);
-
-                    if (rawImageArray[layer][row][col] < 0) {
-                        rawImageArray[layer][row][col] = 0;
-                    }
-
-                }
-            }
-        }
-        updateImage();
+        applyLookupTable(LookupTable.equalization(generateRGBHistogram(
+                store())));
     }
 
     // (Amarasinghe n.d.; Durovic n.d.)
     public void enhanceContrastByStretch(int newMin, int newMax) {
-
-        int curMax = 0, curMin = 0, factor;
-
         // spie.org/samples/TT92.pdf
-
-        for (layer = 0; layer < l; layer++) {
-            curMax = curMin = rawImageArray[layer][0][0];
-            for (row = 0; row < h && curMin >= 0 && curMax <= 255; row++) {
-                for (col = 0; col < w; col++) {
-                    if (rawImageArray[layer][row][col] > curMax) {
-                        curMax = rawImageArray[layer][row][col];
-                    }
-
-                    if (rawImageArray[layer][row][col] < curMin) {
-                        curMin = rawImageArray[layer][row][col];
-                    }
-                }
-            }
-
-            factor = (newMax - newMin) / (curMax - curMin);
-            for (row = 0; row < h; row++) {
-                for (col = 0; col < w; col++) {
-                    rawImageArray[layer][row][col] = (short) (factor
-                            * (rawImageArray[layer][row][col] - curMin) + newMin);
-                }
-            }
-        }
-
-        updateImage();
+        applyLookupTable(LookupTable.stretch(generateRGBHistogram(store()),
+                newMin, newMax));
     }
 
     public void enhanceContrastByStretch() {
         enhanceContrastByStretch(0, 255);
     }
 
-    public int[][] generateRGBHistogram(short[][][] image) {
+    public int[][] generateRGBHistogram(PixelStore image) {
         // (Amarasinghe n.d.; Durovic n.d.)
-        final int[][] histogram = new int[3][];
-
-        final int l = image.length;
-
-        for (layer = 0; layer < l; layer++) {
-            histogram[layer] = generateHistogram(image[layer]);
-        }
-
-        return histogram;
-
+        return getStatistics(image).getHistograms();
     }
 
-    public int[] generateHistogram(short[][] image) {
+    public int[] generateHistogram(PixelStore image, int layer) {
         // (Amarasinghe n.d.; Durovic n.d.)
-        final int[] histogram = new int[colorDepth];
-        final int h = image.length;
-        final int w = image[0].length;
-
-        for (row = 0; row < h; row++) {
-            for (col = 0; col < w; col++) {
-                histogram[image[row][col]]++;
-            }
-        }
-
-        return histogram;
-
+        return getStatistics(image).getHistogram(layer);
     }
 
     public void applyFilter(PixelImage.FILTERS filter) {
         switch (filter) {
             case AVERAGE_BOX:
-                targetImageArray = applyWeightedMask(rawImageArray,
-                        MASKS.AVERAGE_BOX);
+                target = applyWeightedMask(store(), MASKS.AVERAGE_BOX);
                 break;
             case GAUSSIAN_BOX_1:
-                targetImageArray = applyWeightedMask(rawImageArray,
-                        MASKS.GAUSSIAN_BOX_1);
+                target = applyWeightedMask(store(), MASKS.GAUSSIAN_BOX_1);
                 break;
             case GAUSSIAN_BOX_2:
-                targetImageArray = applyWeightedMask(rawImageArray,
-                        MASKS.GAUSSIAN_BOX_2);
+                target = applyWeightedMask(store(), MASKS.GAUSSIAN_BOX_2);
                 break;
             case LAPLACEAN_DARK:
-                targetImageArray = applyMask(rawImageArray,
-                        MASKS.LAPLACEAN_DARK);
-                // (Amarasinghe n.d.; Durovic n.d.)
-                for (layer = 0; layer < l; layer++) {
-                    for (row = 0; row < h; row++) {
-                        NIMP.getInstance().getStatusBar()
-                                .setProgress(layer * row / (l * h));
-                        for (col = 0; col < w; col++) {
-
-                            targetImageArray[layer][row][col] = (short) (rawImageArray[layer][row][col] - targetImageArray[layer][row][col]);
-                            if (targetImageArray[layer][row][col] > 255) {
-                                targetImageArray[layer][row][col] = 255;
-                            } else if (targetImageArray[layer][row][col] < 0) {
-                                targetImageArray[layer][row][col] = 0;
-                            }
-
-                        }
-                    }
-                }
-
+                subtractEdges(applyMask(store(), MASKS.LAPLACEAN_DARK));
                 break;
             case LAPLACEAN_LIGHT:
-
-                targetImageArray = applyMask(rawImageArray,
-                        MASKS.LAPLACEAN_LIGHT);
-                // (Amarasinghe n.d.; Durovic n.d.)
-                for (layer = 0; layer < l; layer++) {
-                    for (row = 1; row < h; row++) {
-                        NIMP.getInstance().getStatusBar()
-                                .setProgress(layer * row / (l * h));
-                        for (col = 1; col < w; col++) {
-
-                            targetImageArray[layer][row][col] = (short) (rawImageArray[layer][row][col] - targetImageArray[layer][row][col]);
-                            if (targetImageArray[layer][row][col] > 255) {
-                                targetImageArray[layer][row][col] = 255;
-                            } else if (targetImageArray[layer][row][col] < 0) {
-                                targetImageArray[layer][row][col] = 0;
-                            }
-
-                        }
-                    }
-                }
+                subtractEdges(applyMask(store(), MASKS.LAPLACEAN_LIGHT));
                 break;
             case MEDIAN:
             case MEDIAN_HIGH:
             case MEDIAN_LOW:
+                // These update the image themselves.
                 applyMedianFilter(filter);
-                break;
+                return;
             case MODE:
                 applyModeFilter();
-                break;
+                return;
 
         }
 
-        rawImageArray = targetImageArray;
+        swapTarget();
 
         updateImage();
     }
 
+    // Subtracts the edges found by a Laplacean mask from the image. The
+    // result is written into the target.
+    private void subtractEdges(final int[][] edges) {
+        target = getTargetStore(h, w);
+        // (Amarasinghe n.d.; Durovic n.d.)
+        ParallelEngine.forEachRow(h, new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                for (int row = firstRow; row < endRow; row++) {
+                    for (int layer = 0; layer < l; layer++) {
+                        for (int col = 0; col < w; col++) {
+                            target.set(layer, row, col, PixelStore.clamp(store
+                                    .get(layer, row, col)
+                                    - edges[layer][row * w + col]));
+                        }
+                    }
+                }
+            }
+        });
+    }
+
     public void applyMedianFilter(PixelImage.FILTERS filter) {
-        int count;
-        final int l = rawImageArray.length;
-        final int h = rawImageArray[0].length - 2;
-        final int w = rawImageArray[0][0].length - 2;
-        final short[] temp = new short[9];
+        applyMedianFilter(filter, 1);
+    }
 
-        int position = 0;
+    // Median, low median or high median of the square of pixels reaching
+    // radius pixels around each pixel.
+    public void applyMedianFilter(PixelImage.FILTERS filter, int radius) {
+        final int diameter = 2 * radius + 1;
 
         switch (filter) {
             case MEDIAN:
-                position = 4;
                 break;
             case MEDIAN_HIGH:
-                position = 8;
-                break;
+                // The highest value of the square is its dilation.
+                applyMorphology(MorphologyFilter.Operation.DILATION, diameter,
+                        diameter);
+                return;
             case MEDIAN_LOW:
-                position = 0;
-                break;
+                // The lowest value of the square is its erosion.
+                applyMorphology(MorphologyFilter.Operation.EROSION, diameter,
+                        diameter);
+                return;
             default:
                 assert false; // We shouldn't come here.
         }
 
-        targetImageArray = getTargetImageArray(h + 2, w + 2);
-
+        final MedianFilter median = new MedianFilter(radius);
+        target = getTargetStore(h, w);
         // (Amarasinghe n.d.; Durovic n.d.)
-        for (int layer = 0; layer < l; layer++) {
-            for (int row = 1; row < h; row++) {
-                NIMP.getInstance().getStatusBar()
-                        .setProgress(layer * row / (l * h));
-                for (int col = 1; col < w; col++) {
-                    count = 0;
-
-                    for (int i = -1; i < 2; i++) {
-                        for (int j = -1; j < 2; j++, count++) {
-                            temp[count] = rawImageArray[layer][row + i][col + j];
-                        }
-                    }
-
-                    Arrays.sort(temp);
-                    targetImageArray[layer][row][col] = temp[position];
+        median.apply(store(), target, median.getWindowSize() / 2);
 
-                }
-            }
-        }
-
-        rawImageArray = targetImageArray;
+        swapTarget();
         updateImage();
 
     }
 
-    public short[][][] applyMask(short[][][] sourceImage, short[][] mask) {
-        int total;
+    // Erosion, dilation, opening, closing or morphological gradient with a
+    // rectangle of height x width pixels as the structuring element.
+    public void applyMorphology(MorphologyFilter.Operation operation,
+            int height, int width) {
+        // Black and white images are filtered 64 pixels at a time, and
+        // stay as bits.
+        final BinaryImage bits = getBinaryImage();
+        if (bits != null) {
+            holdAsBits(bits.morphology(operation, height, width));
+            return;
+        }
+        target = getTargetStore(h, w);
+        new MorphologyFilter(height, width).apply(store, target, operation);
 
-        final int h = sourceImage[0].length - 2;
-        final int w = sourceImage[0][0].length - 2;
-        final short[][][] result = new short[l][h + 2][w + 2];
+        swapTarget();
+        updateImage();
+    }
 
+    // Result is signed and is not clamped. Each layer of the result is a
+    // single array of h * w values laid out row after row.
+    public int[][] applyMask(PixelStore sourceImage, short[][] mask) {
         // (Amarasinghe n.d.; Durovic n.d.)
-        for (layer = 0; layer < l; layer++) {
-            for (row = 1; row < h; row++) {
-                NIMP.getInstance().getStatusBar()
-                        .setProgress(layer * row / (l * h));
-                for (col = 1; col < w; col++) {
-                    total = 0;
-
-                    for (i = -1; i < 2; i++) {
-                        for (j = -1; j < 2; j++) {
-                            total += mask[i + 1][j + 1]
-                                    * sourceImage[layer][row + i][col + j];
-                        }
-                    }
+        return new ConvolutionEngine(mask).convolve(sourceImage);
+    }
 
-                    result[layer][row][col] = (short) total;
+    // Blurs the image with a Gaussian mask reaching radius pixels. The mask
+    // is applied in two passes, so large radii are affordable.
+    public void applyGaussianBlur(int radius) {
+        target = getTargetStore(h, w);
+        ConvolutionEngine.gaussian(radius).average(store(), target);
 
-                }
-            }
-        }
-
-        return result;
+        swapTarget();
+        updateImage();
     }
 
     public void applyKValueFilter(int k) {
         // (Amarasinghe n.d.; Durovic n.d.)
-        int total;
-
-        final int h = rawImageArray[0].length - 2 * k;
-        final int w = rawImageArray[0][0].length - 2 * k;
-
-        targetImageArray = getTargetImageArray(h + 2 * k, w + 2 * k);
-
-        final int avg = (int) Math.pow(2 * k + 1, 2);
-
-        for (layer = 0; layer < l; layer++) {
-            for (row = k; row < h; row++) {
-                NIMP.getInstance().getStatusBar()
-                        .setProgress(layer * row / (l * h));
-                for (col = k; col < w; col++) {
-                    total = 0;
-
-                    for (i = -k; i <= k; i++) {
-                        for (j = -k; j <= k; j++) {
-                            total += rawImageArray[layer][row + i][col + j];
-                        }
-                    }
+        target = getTargetStore(h, w);
+        new BoxFilter(k).average(store(), target);
 
-                    total /= avg;
-
-                    targetImageArray[layer][row][col] = (short) total;
-
-                }
-            }
-        }
-
-        rawImageArray = targetImageArray;
+        swapTarget();
         updateImage();
     }
 
-    public short[][][] applyWeightedMask(short[][][] sourceImage, short[][] mask) {
-        int total;
-
-        final int h = sourceImage[0].length - 2;
-        final int w = sourceImage[0][0].length - 2;
+    // Returns the weighted average of the mask on each pixel. The result of
+    // an operation on the current image is written into the target.
+    public PixelStore applyWeightedMask(PixelStore sourceImage, short[][] mask) {
+        final PixelStore result = sourceImage == store ? getTargetStore(h, w)
+                : sourceImage.createCompatible(sourceImage.getHeight(),
+                        sourceImage.getWidth());
 
-        int avg = 0;
-
-        for (short[] aMask : mask) {
-            for (int j = 0; j < mask[0].length; j++) {
-                avg += aMask[j];
-            }
-        }
-
-        final short[][][] result = new short[l][h + 2][w + 2];
         // (Amarasinghe n.d.; Durovic n.d.)
-        for (layer = 0; layer < l; layer++) {
-            for (row = 1; row < h; row++) {
-                NIMP.getInstance().getStatusBar()
-                        .setProgress(layer * row / (l * h));
-                for (col = 1; col < w; col++) {
-                    total = 0;
-
-                    for (i = -1; i < 2; i++) {
-                        for (j = -1; j < 2; j++) {
-                            total += mask[i + 1][j + 1]
-                                    * sourceImage[layer][row + i][col + j];
-                        }
-                    }
-
-                    total /= avg;
-
-                    if (total > 255) {
-                        total = 255;
-                    } else if (total < 0) {
-                        total = 0;
-                    }
-
-                    result[layer][row][col] = (short) total;
-
-                }
-            }
-        }
+        new ConvolutionEngine(mask).average(sourceImage, result);
 
         return result;
     }
-    int i;
 
     // (Amarasinghe n.d.; Durovic n.d.)
-    public void negate() {
-
-        List<Integer> counts = new ArrayList<Integer>();
-        for (row = 0; row < h; ++row) {
-            for (col = 0; col < w; col++) {
-                if (rawImageArray[0][row][col] == 0) {
-                    counts.add(blobCounter(row, col));
-                    
-                }
-            }
+    // Counts the black blobs of the first layer, leaving out those smaller
+    // than a fifth of the largest as noise. Returns the count.
+    public int negate() {
+        final BinaryImage bits = getBinaryImage();
+        final Components blobs = bits != null ? new Components(bits, false)
+                : new Components(store(), 0, 0);
+        int largest = 0;
+        for (Components.Component blob : blobs.getComponents()) {
+            largest = Math.max(largest, blob.getArea());
         }
 
-        
-        counts.add(50);
-        counts.add(60);
-        counts.add(10);
-        counts.add(20);
-        Collections.sort(counts);
-        
-        
-        int count =counts.size();
-        
-        
-
-        for(int i=0; i<counts.size();i++)
-            if(counts.get(counts.size()-1)/5>counts.get(i))
-                count--;
+        int count = 0;
+        for (Components.Component blob : blobs.getComponents()) {
+            if (blob.getArea() >= largest / 5) {
+                count++;
+            }
+        }
 
-        System.out.println(count);
+        return count;
     }
 
     public void applyUnsharpMasking() {
 
-        final short[][][] backup = cloneArray(rawImageArray);
+        final PixelStore backup = store().copy();
         applyFilter(FILTERS.MEDIAN);
 
         // (Amarasinghe n.d.; Durovic n.d.)
-        for (layer = 0; layer < l; ++layer) {
-            for (row = 0; row < h; ++row) {
-                for (col = 0; col < w; col++) {
-                    backup[layer][row][col] += (short) (backup[layer][row][col] - rawImageArray[layer][row][col]);
-                    backup[layer][row][col] = backup[layer][row][col] > 255 ? 255
-                            : backup[layer][row][col] < 0 ? 0
-                            : backup[layer][row][col];
+        ParallelEngine.forEachRow(h, new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                for (int row = firstRow; row < endRow; ++row) {
+                    for (int layer = 0; layer < l; ++layer) {
+                        for (int col = 0; col < w; col++) {
+                            store.set(layer, row, col, PixelStore.clamp(2
+                                    * backup.get(layer, row, col)
+                                    - store.get(layer, row, col)));
 
+                        }
+                    }
                 }
             }
-        }
-
-        rawImageArray = backup;
+        });
 
         updateImage();
     }
 
-    private short[][][] cloneArray(short[][][] original) {
-        final int l = original.length;
-        final int h = original[0].length;
-        final int w = original[0][0].length;
-
-        final short[][][] clone = new short[l][h][w];
-
-        for (layer = 0; layer < l; layer++) {
-            for (row = 0; row < h; row++) {
-                for (col = 0; col < w; col++) {
-                    clone[layer][row][col] = original[layer][row][col];
-                }
-            }
-        }
-
-        return clone;
-    }
-
     // (Amarasinghe n.d.; Durovic n.d.)
     public void applySobelOperator() {
+        applySobelOperator(GradientEngine.Magnitude.EXACT);
+    }
 
-        final short[][][] xImage = applyMask(rawImageArray, MASKS.SOBEL_X_MASK);
-        final short[][][] yImage = applyMask(rawImageArray, MASKS.SOBEL_Y_MASK);
-
-        for (layer = 0; layer < l; ++layer) {
-            for (row = 0; row < h; ++row) {
-                for (col = 0; col < w; col++) {
-                    rawImageArray[layer][row][col] += (short) Math.sqrt(Math
-                            .pow(xImage[layer][row][col], 2)
-                            + Math.pow(yImage[layer][row][col], 2));
-
-                    rawImageArray[layer][row][col] = rawImageArray[layer][row][col] > 255 ? 255
-                            : rawImageArray[layer][row][col] < 0 ? 0
-                            : rawImageArray[layer][row][col];
-
-                }
-            }
-        }
+    // Adds the strength of the edge at each pixel to the pixel.
+    public void applySobelOperator(GradientEngine.Magnitude magnitude) {
+        target = getTargetStore(h, w);
+        // (Amarasinghe n.d.; Durovic n.d.)
+        new GradientEngine(magnitude).sharpen(store(), target);
 
+        swapTarget();
         updateImage();
 
     }
 
     public void prepareUndo() {
         undoable = true;
-        snapshot = cloneArray(rawImageArray);
+        // Bits are kept as bits.
+        snapshot = store != null ? store.copy() : null;
+        snapshotBinary = store != null ? null : binary.copy();
+        changedSinceSnapshot = null;
+        // Undoing back to the end of a chain carries on with the chain.
+        snapshotChain = chainVersion == version ? chain : null;
+        snapshotChainSource = snapshotChain != null ? chainSource : null;
 
     }
 
@@ -997,351 +722,163 @@ public class PixelImage {
         if (!undoable) {
             throw new UnsupportedOperationException("Cannot undo");
         }
-        rawImageArray = cloneArray(snapshot);
-        updateImage();
+        if (snapshotBinary != null) {
+            holdAsBits(snapshotBinary.copy());
+        } else if (store != null && store.hasSameSize(snapshot)) {
+            // Reuse the image being displayed and only restore the part
+            // changed since the snapshot was taken.
+            final Rectangle changed = changedSinceSnapshot;
+            if (changed != null) {
+                store.copyFrom(snapshot, changed);
+            }
+            updateImage(changed != null ? changed : new Rectangle());
+        } else {
+            store = snapshot.copy();
+            updateImage();
+        }
+        changedSinceSnapshot = null;
+        if (snapshotChain != null) {
+            chain = snapshotChain;
+            chainSource = snapshotChainSource;
+            chainVersion = version;
+        }
 
     }
 
     // (Amarasinghe n.d.; Durovic n.d.)
     public void applySobelOperatorOnly() {
-        final short[][][] xImage = applyMask(rawImageArray, MASKS.SOBEL_X_MASK);
-
-        final short[][][] yImage = applyMask(rawImageArray, MASKS.SOBEL_Y_MASK);
-
-        for (layer = 0; layer < l; ++layer) {
-            for (row = 0; row < h; ++row) {
-                for (col = 0; col < w; col++) {
-                    rawImageArray[layer][row][col] = (short) Math.sqrt(Math
-                            .pow(xImage[layer][row][col], 2)
-                            + Math.pow(yImage[layer][row][col], 2));
-
-                    rawImageArray[layer][row][col] = rawImageArray[layer][row][col] > 255 ? 255
-                            : rawImageArray[layer][row][col] < 0 ? 0
-                            : rawImageArray[layer][row][col];
+        applySobelOperatorOnly(GradientEngine.Magnitude.EXACT);
+    }
 
-                }
-            }
-        }
+    // Replaces each pixel by the strength of the edge at it.
+    public void applySobelOperatorOnly(GradientEngine.Magnitude magnitude) {
+        target = getTargetStore(h, w);
+        new GradientEngine(magnitude).magnitude(store(), target, null);
 
+        swapTarget();
         updateImage();
 
     }
 
     // (Amarasinghe n.d.; Durovic n.d.)
     public void convertToPencilSketchUsingSobel(short lightestShade) {
-        convertToGrayScaleUsingAveraging();
-        applyFilter(FILTERS.MEDIAN);
-
-        final short[][][] xImage = applyMask(rawImageArray, MASKS.SOBEL_X_MASK);
-        final short[][][] yImage = applyMask(rawImageArray, MASKS.SOBEL_Y_MASK);
-
-        for (layer = 0; layer < l; ++layer) {
-
-            for (row = 0; row < h; ++row) {
-                for (col = 0; col < w; col++) {
-                    rawImageArray[layer][row][col] = (short) Math.sqrt(Math
-                            .pow(xImage[layer][row][col], 2)
-                            + Math.pow(yImage[layer][row][col], 2));
-
-                    if (rawImageArray[layer][row][col] < 4) {
-                        rawImageArray[layer][row][col] = 0;
-                    }
-                    rawImageArray[layer][row][col] = pencilEffectHelperClamper(
-                            lightestShade, rawImageArray[layer][row][col]);
-
-                }
-            }
-        }
-
-        applyFilter(FILTERS.MEDIAN);
-
-        updateImage();
-
+        applyPencilSketch(PencilSketch.Edges.SOBEL, lightestShade);
     }
 
     // (Amarasinghe n.d.; Durovic n.d.)
     public void convertToPencilSketchUsingJinZhou(short lightestShade) {
-
         // This algorithm is adapted from
         // (Zhou and Li, 2005, pp. 1026--1029)
-        convertToGrayScaleUsingAveraging();
-        applyFilter(FILTERS.MEDIAN);
-
-        targetImageArray = getTargetImageArray(h, w);
-
-        for (layer = 0; layer < l; ++layer) {
-            for (row = 0; row < h; ++row) {
-                for (col = 0; col < w; col++) {
-
-                    // Find the maxima to the left
-
-                    int maxg = 0;
-                    int maxrow = 0;
-
-                    for (i = row - 1; i >= 0; i--) {
-                        int g = (rawImageArray[layer][row][col] - rawImageArray[layer][i][col])
-                                / (row - i);
-
-                        if (Math.abs(g) > Math.abs(maxg)) {
-                            maxg = g;
-                        } else {
-                            break;
-                        }
-
-                    }
-
-                    maxrow += maxg;
-
-                    // To the right
-                    maxg = 0;
-
-                    for (i = row + 1; i < h; i++) {
-                        int g = (rawImageArray[layer][row][col] - rawImageArray[layer][i][col])
-                                / (row - i);
-
-                        if (Math.abs(g) > Math.abs(maxg)) {
-                            maxg = g;
-                        } else {
-                            break;
-                        }
-                    }
-
-                    maxrow += maxg;
-
-                    int maxcol = 0;
-
-                    maxg = 0;
-                    for (i = col - 1; i >= 0; i--) {
-                        int g = (rawImageArray[layer][row][col] - rawImageArray[layer][row][i])
-                                / (col - i);
-
-                        if (Math.abs(g) > Math.abs(maxg)) {
-                            maxg = g;
-                        } else {
-                            break;
-                        }
-                    }
-                    maxcol += maxg;
-
-                    maxg = 0;
-                    for (i = col + 1; i < w; i++) {
-                        int g = (rawImageArray[layer][row][col] - rawImageArray[layer][row][i])
-                                / (col - i);
-
-                        if (Math.abs(g) > Math.abs(maxg)) {
-                            maxg = g;
-                        } else {
-                            break;
-                        }
-                    }
-                    maxcol += maxg;
-
-                    targetImageArray[layer][row][col] = (short) ((Math
-                            .abs(maxrow) >= Math.abs(maxcol)) ? maxrow : maxcol);
-
-                    if (targetImageArray[layer][row][col] < 0) {
-                        targetImageArray[layer][row][col] = (short) Math
-                                .abs(targetImageArray[layer][row][col]);
-                    }
-
-                    if (targetImageArray[layer][row][col] > 255) {
-                        targetImageArray[layer][row][col] = 255;
-                    }
-
-                    if (targetImageArray[layer][row][col] < 4) {
-                        targetImageArray[layer][row][col] = 0;
-                    }
-                    targetImageArray[layer][row][col] = pencilEffectHelperClamper(
-                            lightestShade, targetImageArray[layer][row][col]);
-
-                }
-            }
-        }
-
-        rawImageArray = targetImageArray;
-
-        applyFilter(FILTERS.MEDIAN);
-
-        updateImage();
-
+        applyPencilSketch(PencilSketch.Edges.JIN_ZHOU, lightestShade);
     }
 
     // (Amarasinghe n.d.; Durovic n.d.)
-    public short getOtsuThreshold(short[][] image) {
+    public short getOtsuThreshold(PixelStore image, int layer) {
         // (Greensted 2010)
-        //
-
-        short threshold;
-        int[] histogram = generateHistogram(image);
-
-        // Total number of pixels
-        int totalPixels = image.length * image[0].length;
-
-        float weight = 0;
-        for (int t = 0; t < colorDepth; t++) {
-            weight += t * histogram[t];
-        }
-
-        float sumB = 0;
-        int weightBackground = 0;
-        int weightForeground = 0;
-
-        float varMax = 0;
-        threshold = 0;
-
-        for (int t = 0; t < colorDepth; t++) {
-            weightBackground += histogram[t]; // Weight Background
-            if (weightBackground == 0) {
-                continue;
-            }
-
-            weightForeground = totalPixels - weightBackground; // Weight
-            // Foreground
-            if (weightForeground == 0) {
-                break;
-            }
-
-            sumB += t * histogram[t];
-
-            float mB = sumB / weightBackground; // Mean Background
-            float mF = (weight - sumB) / weightForeground; // Mean Foreground
-
-            // Calculate Between Class Variance
-            float varBetween = (float) weightBackground
-                    * (float) weightForeground * (mB - mF) * (mB - mF);
-
-            // Check if new maximum found
-            if (varBetween > varMax) {
-                varMax = varBetween;
-                threshold = (short) t;
-            }
-        }
-        return threshold;
+        return (short) getStatistics(image).getOtsuThresholds(layer, 1)[0];
     }
 
     // (Amarasinghe n.d.; Durovic n.d.)
     public void convertToPencilSketchUsingLaplaceanDark(short lightestShade) {
-        convertToGrayScaleUsingAveraging();
-        applyFilter(FILTERS.MEDIAN);
-
-        rawImageArray = applyMask(rawImageArray, MASKS.LAPLACEAN_DARK);
-
-        for (layer = 0; layer < l; ++layer) {
-            for (row = 0; row < h; ++row) {
-                for (col = 0; col < w; col++) {
-
-                    if (rawImageArray[layer][row][col] > 0) {
-                        rawImageArray[layer][row][col] = 0;
-                    } else {
-                        rawImageArray[layer][row][col] *= -1;
-                    }
-                    rawImageArray[layer][row][col] = pencilEffectHelperClamper(
-                            lightestShade, rawImageArray[layer][row][col]);
-
-                }
-            }
-        }
-
-        applyFilter(FILTERS.MEDIAN);
-
-        updateImage();
-
+        applyPencilSketch(PencilSketch.Edges.LAPLACEAN, lightestShade);
     }
 
     // (Amarasinghe n.d.; Durovic n.d.)
     public void convertToPencilSketchUsingLaplaceanLight(short lightestShade) {
-        convertToGrayScaleUsingAveraging();
-        applyFilter(FILTERS.MEDIAN);
-
-        rawImageArray = applyMask(rawImageArray, MASKS.LAPLACEAN_DARK);
-
-        for (layer = 0; layer < l; ++layer) {
-            for (row = 0; row < h; ++row) {
-                for (col = 0; col < w; col++) {
-
-                    if (rawImageArray[layer][row][col] > 0) {
-                        rawImageArray[layer][row][col] = 0;
-                    } else {
-                        rawImageArray[layer][row][col] *= -1;
-                    }
-                    rawImageArray[layer][row][col] = pencilEffectHelperClamper(
-                            (short) 120, rawImageArray[layer][row][col]);
-
-                }
-            }
-        }
-
-        applyFilter(FILTERS.MEDIAN);
-
-        updateImage();
+        // Drawn with a fixed lightest shade, as it always was.
+        applyPencilSketch(PencilSketch.Edges.LAPLACEAN, 120);
     }
 
-    private short pencilEffectHelperClamper(short lightestShade, short pixel) {
-        if (pixel > 0) {
-            pixel = (short) (lightestShade - pixel);
-        } else {
-            pixel = 255;
-        }
-
-        return pixel > 255 ? 255 : pixel < 0 ? 0 : pixel;
+    // Gray-scale conversion, smoothing, edge detection, shading and
+    // smoothing again, in a single pass.
+    private void applyPencilSketch(PencilSketch.Edges edges, int lightestShade) {
+        // Sketches are gray, so are kept as a single layer.
+        target = getTargetStore(1, h, w);
+        new PencilSketch(edges, lightestShade).apply(store(), target);
 
+        swapTarget();
+        updateImage();
     }
 
+    // Gray-scale images are held as a single layer, so everything done to
+    // them afterwards is done once rather than for three equal layers.
     public void convertToGrayScaleUsingAveraging() {
-        for (int row = 0; row < h; ++row) {
-            for (int col = 0; col < w; col++) {
-                final short avg = (short) ((rawImageArray[0][row][col]
-                        + rawImageArray[1][row][col] + rawImageArray[2][row][col]) / 3);
-                rawImageArray[0][row][col] = rawImageArray[1][row][col] = rawImageArray[2][row][col] = avg;
-            }
-        }
-
-        updateImage();
+        convertToGrayScale(ColourSpace.Luma.AVERAGE);
     }
 
     public void convertToGrayScaleUsingLuminescence() {
         // (Stokes and Anderson et al., 1996)
         // (Cook 2009)
-        for (row = 0; row < h; ++row) {
-            for (col = 0; col < w; col++) {
+        convertToGrayScale(ColourSpace.Luma.LUMINESCENCE);
+    }
 
-                final short avg = (short) (rawImageArray[0][row][col] * 0.21
-                        + rawImageArray[1][row][col] * 0.71 + rawImageArray[2][row][col] * 0.07);
-                rawImageArray[0][row][col] = rawImageArray[1][row][col] = rawImageArray[2][row][col] = avg;
-            }
+    public void convertToGrayScale(ColourSpace.Luma luma) {
+        if (l < 3) {
+            return; // Already gray.
         }
+        final PixelStore gray = getTargetStore(1, h, w);
+        ColourSpace.toGray(store, gray, luma);
 
+        swapTarget();
         updateImage();
     }
 
-    public void fade(double balance, PixelImage image) {
-        short[][][] secondImage = image.rawImageArray;
-
-        targetImageArray = getTargetImageArray(h, w);
-
-        int h = secondImage[0].length;
-        int w = secondImage[0][0].length;
-
-        int tvoffset = (this.h - h) / 2;
-        int thoffset = (this.w - w) / 2;
-
-        targetImageArray = cloneArray(rawImageArray);
-
-        for (layer = 0; layer < l; layer++) {
-            for (row = 0; row < h; ++row) {
-                for (col = 0; col < w; col++) {
-
-                    // (Amarasinghe n.d.; Durovic n.d.)
-                    targetImageArray[layer][row + tvoffset][col + thoffset] = getLinearInterpolate(
-                            balance, rawImageArray[layer][row + tvoffset][col
-                            + thoffset], secondImage[layer][row][col]);
+    // Copies a gray-scale image into all three layers of a colour image.
+    // The image is not updated, which is left to the caller.
+    private void toColour() {
+        final PixelStore gray = store();
+        final PixelStore colour = getTargetStore(3, h, w);
+        ParallelEngine.forEachRow(h, new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                final int[] line = new int[w];
+                for (int row = firstRow; row < endRow; ++row) {
+                    gray.getRow(0, row, line);
+                    for (int layer = 0; layer < 3; layer++) {
+                        colour.setRow(layer, row, line);
+                    }
                 }
             }
+        });
+        swapTarget();
+    }
+
+    public void fade(final double balance, PixelImage image) {
+        final PixelStore secondImage = image.store();
+        if (store().getPlanes() < secondImage.getPlanes()) {
+            toColour(); // Fading in colour needs layers to hold it.
         }
 
-        rawImageArray = targetImageArray;
+        final int h = secondImage.getHeight();
+        final int w = secondImage.getWidth();
+        final int secondLayers = secondImage.getPlanes();
+
+        final int tvoffset = (this.h - h) / 2;
+        final int thoffset = (this.w - w) / 2;
+
+        // Each pixel only depends on itself so the image is faded in place.
+        ParallelEngine.forEachRow(h, new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                for (int row = firstRow; row < endRow; ++row) {
+                    for (int layer = 0; layer < l; layer++) {
+                        for (int col = 0; col < w; col++) {
+
+                            // (Amarasinghe n.d.; Durovic n.d.)
+                            store.set(layer, row + tvoffset, col + thoffset,
+                                    getLinearInterpolate(balance, store.get(
+                                            layer, row + tvoffset, col
+                                                    + thoffset), secondImage
+                                            .get(layer % secondLayers, row, col)));
+                        }
+                    }
+                }
+            }
+        });
 
-        updateImage();
+        // Only the part covered by the second image has changed.
+        updateImage(new Rectangle(thoffset, tvoffset, w, h).intersection(
+                new Rectangle(0, 0, this.w, this.h)));
 
     }
 
@@ -1350,302 +887,106 @@ public class PixelImage {
         convertToGrayScaleUsingAveraging();
         threshold((short) 128);
         updateImage();
+        holdAsBitsIfBinary();
     }
 
     public void thresholdUsing128() {
 
-        for (layer = 0; layer < l; layer++) {
-            thresholdLayer(layer, (short) 128);
-        }
+        threshold((short) 128);
         updateImage();
+        holdAsBitsIfBinary();
     }
 
     public void thresholdUsingOtsu() {
-        for (layer = 0; layer < l; layer++) {
-            thresholdLayer(layer, getOtsuThreshold(rawImageArray[layer]));
+        final short[] thresholds = new short[l];
+        for (int layer = 0; layer < l; layer++) {
+            thresholds[layer] = getOtsuThreshold(store(), layer);
         }
+        threshold(thresholds);
         updateImage();
+        holdAsBitsIfBinary();
     }
 
     public void convertToBWusingOtsu() {
         convertToGrayScaleUsingAveraging();
 
-        threshold(getOtsuThreshold(rawImageArray[0]));
+        threshold(getOtsuThreshold(store(), 0));
 
         updateImage();
+        holdAsBitsIfBinary();
     }
 
-    private void threshold(short threshold) {
-        for (layer = 0; layer < l; layer++) {
-            for (row = 0; row < h; ++row) {
-                for (col = 0; col < w; col++) {
-                    rawImageArray[layer][row][col] = (short) (rawImageArray[layer][row][col] > threshold ? 255
-                            : 0);
+    // Splits the gray-scale image into classes by multi-level Otsu
+    // thresholds, each class taking a shade spread evenly from black to
+    // white. Two classes is black and white.
+    public void segmentUsingOtsu(int classes) {
+        convertToGrayScaleUsingAveraging();
 
-                }
-            }
-        }
-    }
+        LookupTable.segmentation(l,
+                getStatistics().getOtsuThresholds(0, classes - 1)).apply(
+                store());
 
-    private void thresholdLayer(int layer, short threshold) {
+        updateImage();
+    }
 
-        for (row = 0; row < h; ++row) {
-            for (col = 0; col < w; col++) {// (Amarasinghe n.d.; Durovic n.d.)
-                rawImageArray[layer][row][col] = (short) (rawImageArray[layer][row][col] > threshold ? 255
-                        : 0);
+    private void threshold(short threshold) {
+        final short[] thresholds = new short[l];
+        Arrays.fill(thresholds, threshold);
+        threshold(thresholds);
+    }
 
-            }
-        }
+    // Thresholds each layer by its own threshold.
+    private void threshold(short[] thresholds) {
+        // (Amarasinghe n.d.; Durovic n.d.)
+        LookupTable.threshold(thresholds).apply(store());
     }
 
     // (Amarasinghe n.d.; Durovic n.d.)
     public void translate(int vertical, int horizontal) {
-        targetImageArray = getTargetImageArray(h, w);
-        for (layer = 0; layer < l; layer++) {
-            for (row = 0; row < h; row++) {
-                srcRow = row - vertical;
-                for (col = 0; col < w; col++) {
-                    srcCol = col - horizontal;
-
-                    if (srcCol >= 0 && srcCol < w && srcRow >= 0 && srcRow < h) {
-                        targetImageArray[layer][row][col] = rawImageArray[layer][srcRow][srcCol];
-                    } else {
-                        targetImageArray[layer][row][col] = 255;
-                    }
-                }
-            }
-        }
-
-        rawImageArray = targetImageArray;
-
-        updateImage();
+        transform(chain().translate(vertical, horizontal),
+                Resampler.Mode.NEAREST);
+    }
 
+    // Returns a store of the given size to write results into. The store
+    // of the previous result is reused where possible. Contents are not
+    // cleared.
+    public PixelStore getTargetStore(int h, int w) {
+        return getTargetStore(l, h, w);
     }
 
-    public short[][][] getTargetImageArray(int h, int w) {
-        if (targetImageArray == null || targetImageArray[0].length != h
-                || targetImageArray[0][0].length != w) {
-            targetImageArray = new short[3][h][w];
+    // As above, for operations that change the number of layers.
+    private PixelStore getTargetStore(int planes, int h, int w) {
+        if (target == null || target == store
+                || target.getPlanes() != planes || target.getHeight() != h
+                || target.getWidth() != w) {
+            target = planes == l ? store().createCompatible(h, w)
+                    : new PixelStore(planes, h, w);
         }
 
-        return targetImageArray;
+        return target;
 
     }
 
     // (Amarasinghe n.d.; Durovic n.d.)
     public void crop(int x, int y, int height, int width) {
-
-        // Reinitialize targetImageArray since it is liked to be larger.
-        targetImageArray = getTargetImageArray(height, width);
-        for (layer = 0; layer < l; layer++) {
-            for (row = y, i = 0; i < height; row++, i++) {
-                for (col = x, j = 0; j < width; col++, j++) {
-                    targetImageArray[layer][i][j] = rawImageArray[layer][row][col];
-                }
-            }
-        }
-
-        rawImageArray = targetImageArray;
-        updateDimensions();
-        updateImage();
+        transform(chain().crop(x, y, height, width), Resampler.Mode.NEAREST);
     }
 
     public void applyFishEyeWarp(double factor) {
-        targetImageArray = getTargetImageArray(h, w);
-
         // (Gribbon and Johnston et al., 2003, pp. 408--413)
         // (stackoverflow 2012)
         // (Bourke 2002)
         // (Vass and Perlaki, 2003, pp. 9--16)
         // (Hughes and Glavin et al., 2008)
-
-        double x0 = w / 2;
-        double y0 = h / 2;
-        double x, y, src, angle;
-        int maxW = w;
-        int maxH = h;
-        int minW = 0;
-        int minH = 0;
-        double cvalue, rvalue;
-
-        if (factor < 0.7 && factor > 0.45) {
-
-            maxW = (int) (w - (0.7 - factor) * w);
-            maxH = (int) (h - (0.70 - factor) * h);
-            minH = (int) ((0.70 - factor) * h);
-            minW = (int) ((0.70 - factor) * w);
-        } else if (factor < 0.46 && factor > 0.38) {
-
-            maxW = (int) (w - (0.65 - factor) * w);
-            maxH = (int) (h - (0.65 - factor) * h);
-            minH = (int) ((0.65 - factor) * h);
-            minW = (int) ((0.65 - factor) * w);
-        } else if (factor < 0.39 && factor > 0.36) {
-
-            maxW = (int) (w - (0.6 - factor) * w);
-            maxH = (int) (h - (0.6 - factor) * h);
-            minH = (int) ((0.6 - factor) * h);
-            minW = (int) ((0.6 - factor) * w);
-        } else if (factor < 0.37 && factor > 0.32) {
-
-            maxW = (int) (w - (0.63 - factor) * w);
-            maxH = (int) (h - (0.63 - factor) * h);
-            minH = (int) ((0.63 - factor) * h);
-            minW = (int) ((0.63 - factor) * w);
-        } else if (factor < 0.33 && factor > 0.29) {
-
-            maxW = (int) (w - (0.61 - factor) * w);
-            maxH = (int) (h - (0.61 - factor) * h);
-            minH = (int) ((0.61 - factor) * h);
-            minW = (int) ((0.61 - factor) * w);
-        }
-        System.out.println(factor);
-
-        for (row = 0; row < h; row++) {
-            y = -(row - y0) / (h / 2);
-            for (col = 0; col < w; col++) {
-                if (row >= maxH || col >= maxW || row <= minH || col <= minW) {
-                    targetImageArray[0][row][col] = targetImageArray[1][row][col] = targetImageArray[2][row][col] = 255;
-                    continue;
-                }
-
-                x = -(col - x0) / (w / 2);
-
-                angle = Math.atan2(y, x);
-
-                src = factor * Math.tan(Math.sqrt(x * x + y * y) / factor);
-
-                rvalue = (src * -Math.sin(angle) * (h / 2) + y0);
-                cvalue = (src * -Math.cos(angle) * (w / 2) + x0);
-
-                srcCol = (int) cvalue;
-                srcRow = (int) rvalue;
-
-                rvalue -= srcRow;
-                cvalue -= srcCol;
-                int r1temp;
-                int r2temp;
-                if (srcCol >= 0 && srcCol < w - 1 && srcRow >= 0
-                        && srcRow < h - 1) {
-                    r1temp = getLinearInterpolate(cvalue,
-                            rawImageArray[0][srcRow][srcCol],
-                            rawImageArray[0][srcRow][srcCol + 1]);
-                    r2temp = getLinearInterpolate(cvalue,
-                            rawImageArray[0][srcRow + 1][srcCol],
-                            rawImageArray[0][srcRow + 1][srcCol + 1]);
-                    targetImageArray[0][row][col] = getLinearInterpolate(
-                            rvalue, r1temp, r2temp);
-
-                    r1temp = getLinearInterpolate(cvalue,
-                            rawImageArray[1][srcRow][srcCol],
-                            rawImageArray[1][srcRow][srcCol + 1]);
-                    r2temp = getLinearInterpolate(cvalue,
-                            rawImageArray[1][srcRow + 1][srcCol],
-                            rawImageArray[1][srcRow + 1][srcCol + 1]);
-                    targetImageArray[1][row][col] = getLinearInterpolate(
-                            rvalue, r1temp, r2temp);
-
-                    r1temp = getLinearInterpolate(cvalue,
-                            rawImageArray[2][srcRow][srcCol],
-                            rawImageArray[2][srcRow][srcCol + 1]);
-                    r2temp = getLinearInterpolate(cvalue,
-                            rawImageArray[2][srcRow + 1][srcCol],
-                            rawImageArray[2][srcRow + 1][srcCol + 1]);
-                    targetImageArray[2][row][col] = getLinearInterpolate(
-                            rvalue, r1temp, r2temp);
-
-                } else if (srcRow == h - 1 && srcCol == w - 1) {
-                    targetImageArray[0][row][col] = rawImageArray[0][srcRow][srcCol];
-                    targetImageArray[1][row][col] = rawImageArray[1][srcRow][srcCol];
-                    targetImageArray[2][row][col] = rawImageArray[2][srcRow][srcCol];
-                } else {
-                    targetImageArray[0][row][col] = targetImageArray[1][row][col] = targetImageArray[2][row][col] = 255;
-                }
-            }
-        }
-        rawImageArray = targetImageArray;
-        updateImage();
-
+        applyWarp(WarpMap.Type.FISH_EYE, factor);
     }
 
     public void applyTwirlWarp(double factor) {
         // (The Supercomputing Blog, n.d.)
-        double angle = Math.toRadians(1440);
-        double x, y, tempangle;
-        short rVal1, rVal2;
-
-        int x0 = w / 2;
-        int y0 = h / 2;
-
-        targetImageArray = getTargetImageArray(h, w);
-
-        double tempSrcRow, tempSrcCol;
-
-        for (int row = 0; row < h; ++row) {
-            NIMP.getInstance().getStatusBar().setProgress(row / (2 * l));
-
-            for (int col = 0; col < w; col++) {
-
-                row = y0 - row;
-                col = x0 - col;
-
-                double length = Math.sqrt(row * row / ((double) h * h) + col
-                        * col / ((double) w * w));
-
-                tempangle = angle * length * factor;
-
-                tempSrcRow = Math.round(col * Math.sin(tempangle) + row
-                        * Math.cos(tempangle));
-                tempSrcCol = Math.round(col * Math.cos(tempangle) - row
-                        * Math.sin(tempangle));
-
-                tempSrcRow -= y0;
-                tempSrcCol -= x0;
-
-                tempSrcRow *= -1;
-                tempSrcCol *= -1;
-
-                row -= y0;
-                col -= x0;
-                row *= -1;
-                col *= -1;
-
-                srcRow = (int) tempSrcRow;
-                srcCol = (int) tempSrcCol;
-
-                x = tempSrcCol - srcCol;
-                y = tempSrcRow - srcRow;
-
-                for (layer = 0; layer < l; ++layer) {
-                    if (srcRow >= 0 && srcRow < h - 1 && srcCol >= 0
-                            && srcCol < w - 1) {
-
-                        rVal1 = getLinearInterpolate(x,
-                                rawImageArray[layer][srcRow][srcCol],
-                                rawImageArray[layer][srcRow][srcCol + 1]);
-                        rVal2 = getLinearInterpolate(x,
-                                rawImageArray[layer][srcRow + 1][srcCol],
-                                rawImageArray[layer][srcRow + 1][srcCol + 1]);
-
-                        targetImageArray[layer][row][col] = getLinearInterpolate(
-                                y, rVal1, rVal2);
-
-                    } else {
-                        targetImageArray[layer][row][col] = rawImageArray[layer][row][col];
-                    }
-                }
-            }
-        }
-
-        rawImageArray = targetImageArray;
-
-        updateImage();
-
+        applyWarp(WarpMap.Type.TWIRL, factor);
     }
 
     public void applyBulgeWarp(double factor) {
-        targetImageArray = getTargetImageArray(h, w);
-
         // (Gribbon and Johnston et al., 2003, pp. 408--413)
         // (stackoverflow 2012)
         // (Bourke 2002)
@@ -1653,78 +994,16 @@ public class PixelImage {
         // (Hughes and Glavin et al., 2008)
         // (StackExchange 2013)
         // (stackoverflow 2012)
+        applyWarp(WarpMap.Type.BULGE, factor);
+    }
 
-        double x0 = w / 2;
-        double y0 = h / 2;
-        double x, y, src, angle;
-
-        double cvalue, rvalue;
-
-        for (row = 0; row < h; row++) {
-            y = -(row - y0) / (h / 2);
-            for (col = 0; col < w; col++) {
-
-                x = -(col - x0) / (w / 2);
-
-                angle = Math.atan2(y, x);
-
-                src = Math.sqrt(x * x + y * y);
-
-                src = Math.pow(src, factor);// / 0.25;
-
-                rvalue = (src * -Math.sin(angle) * (h / 2) + y0);
-                cvalue = (src * -Math.cos(angle) * (w / 2) + x0);
-
-                srcCol = (int) cvalue;
-                srcRow = (int) rvalue;
-
-                rvalue -= srcRow;
-                cvalue -= srcCol;
-                int r1temp;
-                int r2temp;
-                if (srcCol >= 0 && srcCol < w - 1 && srcRow >= 0
-                        && srcRow < h - 1) {
-                    r1temp = getLinearInterpolate(cvalue,
-                            rawImageArray[0][srcRow][srcCol],
-                            rawImageArray[0][srcRow][srcCol + 1]);
-                    r2temp = getLinearInterpolate(cvalue,
-                            rawImageArray[0][srcRow + 1][srcCol],
-                            rawImageArray[0][srcRow + 1][srcCol + 1]);
-                    targetImageArray[0][row][col] = getLinearInterpolate(
-                            rvalue, r1temp, r2temp);
-
-                    r1temp = getLinearInterpolate(cvalue,
-                            rawImageArray[1][srcRow][srcCol],
-                            rawImageArray[1][srcRow][srcCol + 1]);
-                    r2temp = getLinearInterpolate(cvalue,
-                            rawImageArray[1][srcRow + 1][srcCol],
-                            rawImageArray[1][srcRow + 1][srcCol + 1]);
-                    targetImageArray[1][row][col] = getLinearInterpolate(
-                            rvalue, r1temp, r2temp);
-
-                    r1temp = getLinearInterpolate(cvalue,
-                            rawImageArray[2][srcRow][srcCol],
-                            rawImageArray[2][srcRow][srcCol + 1]);
-                    r2temp = getLinearInterpolate(cvalue,
-                            rawImageArray[2][srcRow + 1][srcCol],
-                            rawImageArray[2][srcRow + 1][srcCol + 1]);
-                    targetImageArray[2][row][col] = getLinearInterpolate(
-                            rvalue, r1temp, r2temp);
-
-                } else if (srcRow == h - 1 && srcCol == w - 1) {
-                    targetImageArray[0][row][col] = rawImageArray[0][srcRow][srcCol];
-                    targetImageArray[1][row][col] = rawImageArray[1][srcRow][srcCol];
-                    targetImageArray[2][row][col] = rawImageArray[2][srcRow][srcCol];
-                } else {
-                    targetImageArray[0][row][col] = rawImageArray[0][row][col];
-                    targetImageArray[1][row][col] = rawImageArray[1][row][col];
-                    targetImageArray[2][row][col] = rawImageArray[2][row][col];
-                }
-            }
-        }
-        rawImageArray = targetImageArray;
-        updateImage();
+    // The map of the warp is reused while the size and factor stay the same.
+    private void applyWarp(WarpMap.Type type, double factor) {
+        target = getTargetStore(h, w);
+        WarpMap.get(type, factor, h, w).apply(store(), target);
 
+        swapTarget();
+        updateImage();
     }
 }
 /**
@@ -0,0 +1,431 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file holds the pixels PixelImage manipulates. The samples live directly
+ * in the data buffer of a BufferedImage, so the image being manipulated is
+ * also the image being displayed and nothing has to be copied between the
+ * two. Images of type TYPE_3BYTE_BGR, TYPE_BYTE_GRAY and TYPE_INT_RGB are used
+ * as they are. Any other image is converted once into TYPE_INT_RGB when it is
+ * wrapped. Samples are unsigned (0 - 255); callers are expected to clamp
+ * before storing.
+ *
+ * References:
+ *
+ * JavaDocs. n.d. ComponentSampleModel (Java Platform SE 7 ). [online]
+ * Available at:
+ * http://docs.oracle.com/javase/7/docs/api/java/awt/image/ComponentSampleModel.html
+ * [Accessed: 7 Jan 2014].
+ *
+ * JavaDocs. n.d. SinglePixelPackedSampleModel (Java Platform SE 7 ). [online]
+ * Available at:
+ * http://docs.oracle.com/javase/7/docs/api/java/awt/image/SinglePixelPackedSampleModel.html
+ * [Accessed: 7 Jan 2014].
+ *
+ * Manipulation, B. 2012. java - Buffered image pixel manipulation - Stack
+ * Overflow. [online] Available at:
+ * http://stackoverflow.com/questions/7742444/buffered-image-pixel-manipulation
+ * [Accessed: 7 Jan 2014].
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+public class PixelStore {
+
+    private final BufferedImage image;
+    private final int planes, height, width;
+    // Distance, in array elements, between the start of two consecutive
+    // rows and between two neighbouring pixels of a row.
+    private final int stride, pixelStride;
+    // Index of the first sample of each layer. For packed images, the bit
+    // position of each layer within the int.
+    private final int[] offsets, shifts;
+    // Index of the first element of the top left pixel.
+    private final int origin;
+    // Exactly one of these is the data buffer of the image.
+    private final byte[] bytes;
+    private final int[] packed;
+
+    // Creates a blank image. One layer is stored as a gray-scale image,
+    // three as a BGR image.
+    public PixelStore(int planes, int height, int width) {
+        this(new BufferedImage(width, height,
+                planes == 1 ? BufferedImage.TYPE_BYTE_GRAY
+                : BufferedImage.TYPE_3BYTE_BGR));
+    }
+
+    private PixelStore(BufferedImage image) {
+        this.image = image;
+        this.height = image.getHeight();
+        this.width = image.getWidth();
+
+        final WritableRaster raster = image.getRaster();
+        // Sub images share the buffer of their parent, so locate the
+        // top left sample through the translation of the raster.
+        final int x0 = -raster.getSampleModelTranslateX();
+        final int y0 = -raster.getSampleModelTranslateY();
+
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            final SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster
+                    .getSampleModel();
+            final DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+            planes = 3;
+            stride = model.getScanlineStride();
+            pixelStride = 1;
+            offsets = new int[planes];
+            shifts = model.getBitOffsets();
+            for (int plane = 0; plane < planes; plane++) {
+                offsets[plane] = buffer.getOffset() + model.getOffset(x0, y0);
+            }
+            origin = offsets[0];
+            packed = buffer.getData();
+            bytes = null;
+        } else {
+            final ComponentSampleModel model = (ComponentSampleModel) raster
+                    .getSampleModel();
+            final DataBufferByte buffer = (DataBufferByte) raster
+                    .getDataBuffer();
+            planes = model.getNumBands();
+            stride = model.getScanlineStride();
+            pixelStride = model.getPixelStride();
+            offsets = new int[planes];
+            shifts = new int[planes];
+            for (int plane = 0; plane < planes; plane++) {
+                offsets[plane] = buffer.getOffset()
+                        + model.getOffset(x0, y0, plane);
+            }
+            // Layers of a BGR pixel are stored in reverse order.
+            int first = offsets[0];
+            for (int plane = 1; plane < planes; plane++) {
+                first = Math.min(first, offsets[plane]);
+            }
+            origin = first;
+            bytes = buffer.getData();
+            packed = null;
+        }
+    }
+
+    // Wraps the buffer of an image so that changes to the store show up in
+    // the image directly. Images of other layouts are converted first.
+    public static PixelStore wrap(BufferedImage image) {
+        switch (image.getType()) {
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_BYTE_GRAY:
+            case BufferedImage.TYPE_INT_RGB:
+                return new PixelStore(image);
+            default:
+                return new PixelStore(convert(image));
+        }
+    }
+
+    // Copies an image of any layout into a TYPE_INT_RGB image. The alpha
+    // layer is discarded. Done a row at a time to keep the buffer small.
+    private static BufferedImage convert(BufferedImage image) {
+        final int w = image.getWidth();
+        final int h = image.getHeight();
+        final BufferedImage converted = new BufferedImage(w, h,
+                BufferedImage.TYPE_INT_RGB);
+        final int[] rgbRow = new int[w];
+        for (int row = 0; row < h; row++) {
+            // (stackoverflow 2012)
+            image.getRGB(0, row, w, 1, rgbRow, 0, w);
+            converted.setRGB(0, row, w, 1, rgbRow, 0, w);
+        }
+        return converted;
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    public int getPlanes() {
+        return planes;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int get(int plane, int row, int col) {
+        final int index = offsets[plane] + row * stride + col * pixelStride;
+        if (packed != null) {
+            return packed[index] >> shifts[plane] & 0xff;
+        }
+        return bytes[index] & 0xff;
+    }
+
+    // Value is expected to be within 0 - 255. Use clamp otherwise.
+    public void set(int plane, int row, int col, int value) {
+        final int index = offsets[plane] + row * stride + col * pixelStride;
+        if (packed != null) {
+            packed[index] = packed[index] & ~(0xff << shifts[plane])
+                    | (value & 0xff) << shifts[plane];
+            return;
+        }
+        bytes[index] = (byte) value;
+    }
+
+    // Returns all layers of a pixel in one int, the first layer in the
+    // lowest 8 bits, the next in the 8 bits above and so on.
+    public int getPixel(int row, int col) {
+        final int index = row * stride + col * pixelStride;
+        if (packed != null) {
+            final int pixel = packed[origin + index];
+            return pixel >> shifts[0] & 0xff | (pixel >> shifts[1] & 0xff) << 8
+                    | (pixel >> shifts[2] & 0xff) << 16;
+        }
+        int pixel = 0;
+        for (int plane = 0; plane < planes; plane++) {
+            pixel |= (bytes[offsets[plane] + index] & 0xff) << plane * 8;
+        }
+        return pixel;
+    }
+
+    // Copies count pixels, as getPixel returns them, into dst starting at
+    // offset. The first is at row and col, and each next one rowStep rows
+    // and colStep columns further on.
+    public void getPixels(int row, int col, int rowStep, int colStep,
+            int count, int[] dst, int offset) {
+        int index = row * stride + col * pixelStride;
+        final int step = rowStep * stride + colStep * pixelStride;
+        final int end = offset + count;
+        if (packed != null) {
+            final int shift0 = shifts[0], shift1 = shifts[1],
+                    shift2 = shifts[2];
+            index += origin;
+            for (int i = offset; i < end; i++, index += step) {
+                final int pixel = packed[index];
+                dst[i] = pixel >> shift0 & 0xff | (pixel >> shift1 & 0xff) << 8
+                        | (pixel >> shift2 & 0xff) << 16;
+            }
+        } else if (planes == 1) {
+            index += offsets[0];
+            for (int i = offset; i < end; i++, index += step) {
+                dst[i] = bytes[index] & 0xff;
+            }
+        } else {
+            final int offset0 = offsets[0], offset1 = offsets[1],
+                    offset2 = offsets[2];
+            for (int i = offset; i < end; i++, index += step) {
+                dst[i] = bytes[offset0 + index] & 0xff
+                        | (bytes[offset1 + index] & 0xff) << 8
+                        | (bytes[offset2 + index] & 0xff) << 16;
+            }
+        }
+    }
+
+    // Stores count pixels, held as getPixel returns them, starting at
+    // offset of src, into a row starting at col.
+    public void setPixels(int row, int col, int count, int[] src, int offset) {
+        final int index = row * stride + col * pixelStride;
+        final int end = offset + count;
+        if (packed != null) {
+            final int shift0 = shifts[0], shift1 = shifts[1],
+                    shift2 = shifts[2];
+            for (int i = offset, at = origin + index; i < end; i++, at++) {
+                final int pixel = src[i];
+                packed[at] = (pixel & 0xff) << shift0
+                        | (pixel >> 8 & 0xff) << shift1
+                        | (pixel >> 16 & 0xff) << shift2;
+            }
+            return;
+        }
+        for (int plane = 0; plane < planes; plane++) {
+            final int shift = plane * 8;
+            for (int i = offset, at = offsets[plane] + index; i < end; i++,
+                    at += pixelStride) {
+                bytes[at] = (byte) (src[i] >> shift);
+            }
+        }
+    }
+
+    // Copies a row of a layer into dst, widening each sample to an int.
+    public void getRow(int plane, int row, int[] dst) {
+        getRow(plane, row, 0, width, dst, 0);
+    }
+
+    // Copies count samples of a row, starting at col, into dst starting at
+    // offset.
+    public void getRow(int plane, int row, int col, int count, int[] dst,
+            int offset) {
+        int index = offsets[plane] + row * stride + col * pixelStride;
+        final int end = offset + count;
+        if (packed != null) {
+            final int shift = shifts[plane];
+            for (int i = offset; i < end; i++, index++) {
+                dst[i] = packed[index] >> shift & 0xff;
+            }
+            return;
+        }
+        for (int i = offset; i < end; i++, index += pixelStride) {
+            dst[i] = bytes[index] & 0xff;
+        }
+    }
+
+    // As above, except that the row and columns may lie beyond the image,
+    // in which case the nearest pixels at the edge are copied.
+    public void getRowClamped(int plane, int row, int col, int count,
+            int[] dst, int offset) {
+        row = row < 0 ? 0 : row >= height ? height - 1 : row;
+        final int first = Math.max(col, 0);
+        final int end = Math.min(col + count, width);
+        if (first >= end) {
+            // Entirely beyond the left or right edge.
+            final int edge = get(plane, row, col < 0 ? 0 : width - 1);
+            Arrays.fill(dst, offset, offset + count, edge);
+            return;
+        }
+
+        getRow(plane, row, first, end - first, dst, offset + first - col);
+        Arrays.fill(dst, offset, offset + first - col, dst[offset + first
+                - col]);
+        Arrays.fill(dst, offset + end - col, offset + count, dst[offset + end
+                - col - 1]);
+    }
+
+    // Stores a row of already clamped values into a layer.
+    public void setRow(int plane, int row, int[] src) {
+        setRow(plane, row, 0, width, src, 0);
+    }
+
+    // Stores count already clamped values, starting at offset of src, into
+    // a row starting at col.
+    public void setRow(int plane, int row, int col, int count, int[] src,
+            int offset) {
+        int index = offsets[plane] + row * stride + col * pixelStride;
+        final int end = offset + count;
+        if (packed != null) {
+            final int shift = shifts[plane];
+            final int mask = ~(0xff << shift);
+            for (int i = offset; i < end; i++, index++) {
+                packed[index] = packed[index] & mask | (src[i] & 0xff) << shift;
+            }
+            return;
+        }
+        for (int i = offset; i < end; i++, index += pixelStride) {
+            bytes[index] = (byte) src[i];
+        }
+    }
+
+    // Replaces each sample of rows firstRow to endRow - 1 by its entry in
+    // the table of its layer. The layers of a packed pixel are replaced
+    // together.
+    public void mapRows(int[][] tables, int firstRow, int endRow) {
+        if (packed != null) {
+            final int[] first = tables[0], second = tables[1],
+                    third = tables[2];
+            final int shift0 = shifts[0], shift1 = shifts[1],
+                    shift2 = shifts[2];
+            final int others = ~(0xff << shift0 | 0xff << shift1
+                    | 0xff << shift2);
+            for (int row = firstRow; row < endRow; row++) {
+                final int start = origin + row * stride;
+                for (int index = start; index < start + width; index++) {
+                    final int pixel = packed[index];
+                    packed[index] = pixel & others
+                            | first[pixel >> shift0 & 0xff] << shift0
+                            | second[pixel >> shift1 & 0xff] << shift1
+                            | third[pixel >> shift2 & 0xff] << shift2;
+                }
+            }
+            return;
+        }
+        for (int plane = 0; plane < planes; plane++) {
+            final int[] table = tables[plane];
+            for (int row = firstRow; row < endRow; row++) {
+                int index = offsets[plane] + row * stride;
+                for (int col = 0; col < width; col++, index += pixelStride) {
+                    bytes[index] = (byte) table[bytes[index] & 0xff];
+                }
+            }
+        }
+    }
+
+    public void fill(int value) {
+        final int[] samples = new int[width];
+        Arrays.fill(samples, value);
+        for (int plane = 0; plane < planes; plane++) {
+            for (int row = 0; row < height; row++) {
+                setRow(plane, row, samples);
+            }
+        }
+    }
+
+    public boolean hasSameSize(PixelStore other) {
+        return other != null && other.planes == planes
+                && other.height == height && other.width == width;
+    }
+
+    // Overwrites this store with the content of another of the same size.
+    public void copyFrom(PixelStore other) {
+        copyFrom(other, new Rectangle(0, 0, width, height));
+    }
+
+    // Overwrites a region of this store with the same region of another
+    // store of the same size.
+    public void copyFrom(PixelStore other, Rectangle region) {
+        final Rectangle bounds = region.intersection(new Rectangle(0, 0,
+                width, height));
+        if (bounds.isEmpty()) {
+            return;
+        }
+        final int top = bounds.y, bottom = bounds.y + bounds.height;
+
+        if (other.image.getType() == image.getType()) {
+            // Same layout. Rows can be copied as they are.
+            final int start = bounds.x * pixelStride;
+            final int length = bounds.width * pixelStride;
+            for (int row = top; row < bottom; row++) {
+                if (packed != null) {
+                    System.arraycopy(other.packed, other.origin + row
+                            * other.stride + start, packed, origin + row
+                            * stride + start, length);
+                } else {
+                    System.arraycopy(other.bytes, other.origin + row
+                            * other.stride + start, bytes, origin + row
+                            * stride + start, length);
+                }
+            }
+            return;
+        }
+
+        for (int plane = 0; plane < planes; plane++) {
+            for (int row = top; row < bottom; row++) {
+                for (int col = bounds.x; col < bounds.x + bounds.width; col++) {
+                    set(plane, row, col, other.get(plane, row, col));
+                }
+            }
+        }
+    }
+
+    // Creates a blank store of the same layout as this one.
+    public PixelStore createCompatible(int height, int width) {
+        return new PixelStore(new BufferedImage(width, height, image.getType()));
+    }
+
+    public PixelStore copy() {
+        final PixelStore clone = createCompatible(height, width);
+        clone.copyFrom(this);
+        return clone;
+    }
+
+    public static int clamp(int value) {
+        return value > 255 ? 255 : value < 0 ? 0 : value;
+    }
+}
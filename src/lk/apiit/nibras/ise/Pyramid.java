@@ -0,0 +1,173 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file shrinks images. Each pixel of the smaller image is the average of
+ * the part of the larger image it covers, each pixel of which counts by how
+ * much of it is covered, so every pixel of the larger image plays its part
+ * and nothing is skipped. Part covered is worked out in whole numbers, in
+ * units of one pixel of the larger image times one of the smaller. The
+ * average is taken along the rows and then down the columns, and the rows of
+ * the smaller image are worked out in parallel bands.
+ *
+ * An image is also kept as a pyramid: the image, the image halved, halved
+ * again and so on down to a single pixel, each level made from the one
+ * before. To shrink the image to any size, the smallest level at least that
+ * size is shrunk instead, which reads at most four times as many pixels as
+ * the result has, however large the image.
+ *
+ * References:
+ *
+ * Amarasinghe, U. (n.d). Basic Effects. [PowerPoint slides]. Colombo: Asia
+ * Pacific Institute of Information Technology. Available at: Learning
+ * Management System APIIT City Campus. Imaging and Special Effects.
+ * <http://lms.apiit.lk/course/view.php?id=1815> (accessed 6th January 2014)
+ *
+ * Williams, L. 1983. Pyramidal parametrics. In: SIGGRAPH '83 Proceedings of
+ * the 10th annual conference on Computer graphics and interactive
+ * techniques. pp. 1--11.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Pyramid {
+
+    // The image first, then each half the size of the one before.
+    private final List<PixelStore> levels = new ArrayList<PixelStore>();
+
+    // Builds every level of the pyramid of image. The image itself is the
+    // first level, so the pyramid is only good until the image changes.
+    // (Williams, 1983, pp. 1--11)
+    public Pyramid(PixelStore image) {
+        levels.add(image);
+        PixelStore level = image;
+        while (level.getHeight() > 1 || level.getWidth() > 1) {
+            final PixelStore half = level.createCompatible(
+                    (level.getHeight() + 1) / 2, (level.getWidth() + 1) / 2);
+            areaAverage(level, half);
+            levels.add(half);
+            level = half;
+        }
+    }
+
+    public int getLevels() {
+        return levels.size();
+    }
+
+    public PixelStore getLevel(int level) {
+        return levels.get(level);
+    }
+
+    // Returns the smallest level at least the given size, or the image if
+    // it is smaller.
+    public PixelStore levelFor(int height, int width) {
+        int level = 0;
+        while (level + 1 < levels.size()
+                && levels.get(level + 1).getHeight() >= height
+                && levels.get(level + 1).getWidth() >= width) {
+            level++;
+        }
+        return levels.get(level);
+    }
+
+    // Shrinks the image to the size of target, from the nearest level.
+    public void reduce(PixelStore target) {
+        areaAverage(levelFor(target.getHeight(), target.getWidth()), target);
+    }
+
+    // Fills target with the average of the part of source each of its
+    // pixels covers. Targets larger than source in either direction work
+    // too, each pixel then covering parts of one or two pixels.
+    // (Amarasinghe n.d.)
+    public static void areaAverage(final PixelStore source,
+            final PixelStore target) {
+        final int sh = source.getHeight(), sw = source.getWidth();
+        final int th = target.getHeight(), tw = target.getWidth();
+        final Coverage across = new Coverage(sw, tw);
+        final Coverage down = new Coverage(sh, th);
+        // Parts covered add up to sw along a row, so to sw x sh over the
+        // whole area of a pixel.
+        final long area = (long) sw * sh;
+
+        ParallelEngine.forEachRow(th, new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                final int[] line = new int[sw];
+                final int[] rowSums = new int[tw];
+                final long[] sums = new long[tw];
+                final int[] result = new int[tw];
+
+                for (int row = firstRow; row < endRow; row++) {
+                    for (int layer = 0; layer < source.getPlanes(); layer++) {
+                        Arrays.fill(sums, 0);
+                        for (int k = down.first[row]; k < down.first[row + 1];
+                                k++) {
+                            source.getRow(layer, down.index[k], line);
+                            across.sum(line, rowSums);
+                            final long weight = down.weight[k];
+                            for (int col = 0; col < tw; col++) {
+                                sums[col] += weight * rowSums[col];
+                            }
+                        }
+                        for (int col = 0; col < tw; col++) {
+                            result[col] = (int) ((sums[col] + area / 2) / area);
+                        }
+                        target.setRow(layer, row, result);
+                    }
+                }
+            }
+        });
+    }
+
+    // How much of each of the pixels of a line of size pixels each of the
+    // count pixels of the shrunk line covers. Pixel i of the shrunk line
+    // covers [i size, (i + 1) size) and pixel j of the line
+    // [j count, (j + 1) count), so parts covered are whole numbers adding
+    // up to size for each shrunk pixel.
+    private static final class Coverage {
+
+        // Pixels covered by shrunk pixel i are index[first[i]] to
+        // index[first[i + 1] - 1], by weight[first[i]] and so on.
+        final int[] first, index, weight;
+
+        Coverage(int size, int count) {
+            first = new int[count + 1];
+            // Each shrunk pixel covers at most size / count + 2 pixels.
+            final int most = count * (size / count + 2);
+            index = new int[most];
+            weight = new int[most];
+
+            int k = 0;
+            for (int i = 0; i < count; i++) {
+                first[i] = k;
+                final long start = (long) i * size, end = start + size;
+                for (int j = (int) (start / count); (long) j * count < end
+                        && j < size; j++) {
+                    index[k] = j;
+                    weight[k] = (int) (Math.min(end, (long) (j + 1) * count)
+                            - Math.max(start, (long) j * count));
+                    k++;
+                }
+            }
+            first[count] = k;
+        }
+
+        // Sums the line over each shrunk pixel, weighted by part covered.
+        void sum(int[] line, int[] sums) {
+            for (int i = 0; i < sums.length; i++) {
+                int sum = 0;
+                for (int k = first[i]; k < first[i + 1]; k++) {
+                    sum += weight[k] * line[index[k]];
+                }
+                sums[i] = sum;
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file fills an image with values taken from points of another image,
+ * which is how images are rotated, scaled, moved and warped. Where each
+ * pixel is taken from is given a row at a time by a mapping, in fixed point,
+ * 16 bits of whole pixels and 16 bits of fraction. Whole numbers fall on the
+ * centres of pixels. A point is then worked out from the pixels around it:
+ * the nearest one, the 2 x 2 around it weighted by how close each is, or a
+ * cubic or Lanczos curve through the 4 x 4 or 6 x 6 around it. The weights
+ * of the curves only depend on the fraction of the point, so they are worked
+ * out once for 256 fractions and kept in tables.
+ *
+ * The pixels around a point are read once, with all their layers together,
+ * and rows are filled in parallel bands.
+ *
+ * A point is within the image if it is within half a pixel of the centre of
+ * one of its pixels. Points outside take a background value, or the value of
+ * the pixel at the same place in the image. Pixels around a point that lie
+ * beyond the edge take the value of the nearest edge pixel.
+ *
+ * References:
+ *
+ * Amarasinghe, U. (n.d). Basic Effects. [PowerPoint slides]. Colombo: Asia
+ * Pacific Institute of Information Technology. Available at: Learning
+ * Management System APIIT City Campus. Imaging and Special Effects.
+ * <http://lms.apiit.lk/course/view.php?id=1815> (accessed 6th January 2014)
+ *
+ * Duchon, C. E. 1979. Lanczos filtering in one and two dimensions. Journal of
+ * Applied Meteorology, 18 (8), pp. 1016--1022.
+ *
+ * Durovic I. (n.d). Digital image processing. [PowerPoint slides].
+ * <www.etf.ucg.ac.me/Digital%20image%20processing.pdf?> (accessed 6th January
+ * 2014)
+ *
+ * Keys, R. 1981. Cubic convolution interpolation for digital image
+ * processing. IEEE Transactions on Acoustics, Speech and Signal Processing,
+ * 29 (6), pp. 1153--1160.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+public class Resampler {
+
+    public static enum Mode {
+
+        // The pixel nearest to the point.
+        NEAREST,
+        // The 2 x 2 pixels around the point, weighted by distance.
+        BILINEAR,
+        // A cubic curve through the 4 x 4 pixels around the point.
+        BICUBIC,
+        // A windowed sinc through the 6 x 6 pixels around the point.
+        LANCZOS
+    }
+
+    // Points in fixed point have this many bits of fraction.
+    public static final int FRACTION_BITS = 16;
+    public static final int ONE = 1 << FRACTION_BITS;
+    // Marks a point that is not in the image.
+    public static final int NOWHERE = Integer.MIN_VALUE;
+    // Background that keeps the pixel at the same place in the source.
+    public static final int KEEP = -1;
+    // Points further than this from the image are not taken from it.
+    private static final double FURTHEST = 1 << 14;
+
+    // Curves are weighted for this many bits of the fraction of a point.
+    private static final int PHASE_BITS = 8;
+    // Weights are fixed point with this many bits of fraction.
+    private static final int WEIGHT_BITS = 12;
+    // Bits dropped from the sum along each row before the rows are
+    // weighted, so that the sum of the rows fits in an int.
+    private static final int ROW_SHIFT = 4;
+    private static final int SUM_SHIFT = 2 * WEIGHT_BITS - ROW_SHIFT;
+
+    // (Keys, 1981, pp. 1153--1160)
+    private static final int[] CUBIC = weights(4, new Kernel() {
+        @Override
+        public double weight(double t) {
+            t = Math.abs(t);
+            if (t < 1) {
+                return (1.5 * t - 2.5) * t * t + 1;
+            }
+            return t < 2 ? ((-0.5 * t + 2.5) * t - 4) * t + 2 : 0;
+        }
+    });
+
+    // (Duchon, 1979, pp. 1016--1022)
+    private static final int[] LANCZOS = weights(6, new Kernel() {
+        @Override
+        public double weight(double t) {
+            if (t == 0) {
+                return 1;
+            }
+            if (Math.abs(t) >= 3) {
+                return 0;
+            }
+            final double x = Math.PI * t;
+            return 3 * Math.sin(x) * Math.sin(x / 3) / (x * x);
+        }
+    });
+
+    // Where each pixel of a row of the target is taken from.
+    public interface Mapping {
+
+        // Fills cols and rows with the points, in fixed point, that the
+        // pixels of the row are taken from.
+        void map(int row, int[] cols, int[] rows);
+    }
+
+    // A mapping that also knows which run of each row is taken from within
+    // the source, so the points of the run need not be checked one by one.
+    public interface ClippedMapping extends Mapping {
+
+        // As map, for the run of the row only, which is returned as its
+        // first column in span[0] and the column after its last in
+        // span[1]. Every point of the run must be within the source.
+        void map(int row, int[] cols, int[] rows, int[] span);
+    }
+
+    // Whether the nearest pixel to a point is within an image of the given
+    // size, the test that a point of a ClippedMapping run must pass.
+    public static boolean isInside(int col, int row, int height, int width) {
+        final int x = col + ONE / 2 >> FRACTION_BITS;
+        final int y = row + ONE / 2 >> FRACTION_BITS;
+        return col != NOWHERE && row != NOWHERE && x >= 0 && x < width
+                && y >= 0 && y < height;
+    }
+
+    private final Mode mode;
+
+    public Resampler(Mode mode) {
+        this.mode = mode;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    // Turns a point into fixed point. Points that are far outside any image,
+    // or not numbers, become NOWHERE.
+    public static int toFixed(double point) {
+        if (!(Math.abs(point) < FURTHEST)) {
+            return NOWHERE;
+        }
+        return (int) Math.floor(point * ONE);
+    }
+
+    // Fills target with points of source. Points outside source take the
+    // background value, 0 - 255, in every layer. With KEEP, they take the
+    // pixel at the same place in source, which must then be at least as
+    // large as target. Both must have the same number of layers.
+    public void resample(final PixelStore source, final PixelStore target,
+            final Mapping mapping, final int background) {
+        if (source.getPlanes() != target.getPlanes()) {
+            throw new IllegalArgumentException("Images of different layers");
+        }
+        int fill = 0;
+        for (int plane = 0; plane < source.getPlanes(); plane++) {
+            fill |= (background & 0xff) << plane * 8;
+        }
+        final int backgroundPixel = fill;
+        final int w = target.getWidth();
+
+        ParallelEngine.forEachRow(target.getHeight(),
+                new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                final int[] cols = new int[w], rows = new int[w];
+                final int[] pixels = new int[w];
+                final int[] span = new int[2];
+                final Sampler sampler = new Sampler(source);
+
+                for (int row = firstRow; row < endRow; row++) {
+                    if (mapping instanceof ClippedMapping) {
+                        // Only the run is sampled, without checks.
+                        ((ClippedMapping) mapping).map(row, cols, rows, span);
+                        fillBackground(pixels, row, 0, span[0]);
+                        for (int col = span[0]; col < span[1]; col++) {
+                            pixels[col] = sampler.sampleInside(cols[col],
+                                    rows[col]);
+                        }
+                        fillBackground(pixels, row, span[1], w);
+                    } else {
+                        mapping.map(row, cols, rows);
+                        for (int col = 0; col < w; col++) {
+                            if (isInside(cols[col], rows[col], source
+                                    .getHeight(), source.getWidth())) {
+                                pixels[col] = sampler.sampleInside(cols[col],
+                                        rows[col]);
+                            } else {
+                                fillBackground(pixels, row, col, col + 1);
+                            }
+                        }
+                    }
+                    target.setPixels(row, 0, w, pixels, 0);
+                }
+            }
+
+            private void fillBackground(int[] pixels, int row, int first,
+                    int end) {
+                for (int col = first; col < end; col++) {
+                    pixels[col] = background == KEEP ? source.getPixel(row,
+                            col) : backgroundPixel;
+                }
+            }
+        });
+    }
+
+    // Works out points of one image. Not to be shared between threads.
+    private final class Sampler {
+
+        private final PixelStore source;
+        private final int h, w, planeBits;
+        // Pixels around the current point, row after row.
+        private final int[] around = new int[36];
+
+        Sampler(PixelStore source) {
+            this.source = source;
+            h = source.getHeight();
+            w = source.getWidth();
+            planeBits = source.getPlanes() * 8;
+        }
+
+        // Returns all layers of a point within the image, as
+        // PixelStore.getPixel does.
+        int sampleInside(int col, int row) {
+            // The pixel above and to the left of the point, which may be
+            // beyond the edge by one.
+            final int x = col >> FRACTION_BITS;
+            final int y = row >> FRACTION_BITS;
+            final int fx = col & (ONE - 1);
+            final int fy = row & (ONE - 1);
+            switch (mode) {
+                case NEAREST:
+                    return source.getPixel(row + ONE / 2 >> FRACTION_BITS,
+                            col + ONE / 2 >> FRACTION_BITS);
+                case BILINEAR:
+                    return bilinear(x, y, fx, fy);
+                case BICUBIC:
+                    return convolve(x, y, fx, fy, 4, CUBIC);
+                default:
+                    return convolve(x, y, fx, fy, 6, LANCZOS);
+            }
+        }
+
+        // (Amarasinghe n.d.; Durovic n.d.)
+        private int bilinear(int x, int y, int fx, int fy) {
+            final int x0 = Math.max(x, 0), x1 = Math.min(x + 1, w - 1);
+            final int y0 = Math.max(y, 0), y1 = Math.min(y + 1, h - 1);
+            final int p00 = source.getPixel(y0, x0);
+            final int p01 = source.getPixel(y0, x1);
+            final int p10 = source.getPixel(y1, x0);
+            final int p11 = source.getPixel(y1, x1);
+
+            int pixel = 0;
+            for (int shift = 0; shift < planeBits; shift += 8) {
+                final int a = p00 >> shift & 0xff, b = p01 >> shift & 0xff;
+                final int c = p10 >> shift & 0xff, d = p11 >> shift & 0xff;
+                final int top = a + (fx * (b - a) >> FRACTION_BITS);
+                final int bottom = c + (fx * (d - c) >> FRACTION_BITS);
+                pixel |= top + (fy * (bottom - top) >> FRACTION_BITS) << shift;
+            }
+            return pixel;
+        }
+
+        // Weighs the taps x taps pixels around the point by a table of
+        // weights, along the rows and then down the columns.
+        private int convolve(int x, int y, int fx, int fy, int taps,
+                int[] table) {
+            final int first = taps / 2 - 1;
+            for (int j = 0; j < taps; j++) {
+                final int r = clamp(y - first + j, h);
+                for (int i = 0; i < taps; i++) {
+                    around[j * taps + i] = source.getPixel(r,
+                            clamp(x - first + i, w));
+                }
+            }
+
+            final int wx = (fx >> FRACTION_BITS - PHASE_BITS) * taps;
+            final int wy = (fy >> FRACTION_BITS - PHASE_BITS) * taps;
+            int pixel = 0;
+            for (int shift = 0; shift < planeBits; shift += 8) {
+                int sum = 0;
+                for (int j = 0; j < taps; j++) {
+                    int rowSum = 0;
+                    for (int i = 0; i < taps; i++) {
+                        rowSum += table[wx + i]
+                                * (around[j * taps + i] >> shift & 0xff);
+                    }
+                    sum += table[wy + j] * (rowSum >> ROW_SHIFT);
+                }
+                pixel |= PixelStore.clamp(sum + (1 << SUM_SHIFT - 1)
+                        >> SUM_SHIFT) << shift;
+            }
+            return pixel;
+        }
+    }
+
+    private static int clamp(int index, int size) {
+        return index < 0 ? 0 : index >= size ? size - 1 : index;
+    }
+
+    // Weight of a pixel at a distance t from the point.
+    private interface Kernel {
+
+        double weight(double t);
+    }
+
+    // Weights of the taps around a point for each fraction, in fixed point.
+    // The weights of each fraction add up to exactly one, so flat areas
+    // stay flat.
+    private static int[] weights(int taps, Kernel kernel) {
+        final int phases = 1 << PHASE_BITS;
+        final int first = taps / 2 - 1;
+        final int[] table = new int[phases * taps];
+        final double[] exact = new double[taps];
+
+        for (int phase = 0; phase < phases; phase++) {
+            final double fraction = phase / (double) phases;
+            double total = 0;
+            for (int i = 0; i < taps; i++) {
+                exact[i] = kernel.weight(i - first - fraction);
+                total += exact[i];
+            }
+            int sum = 0;
+            for (int i = 0; i < taps; i++) {
+                table[phase * taps + i] = (int) Math.round(exact[i] / total
+                        * (1 << WEIGHT_BITS));
+                sum += table[phase * taps + i];
+            }
+            // What rounding lost goes to the pixel nearest the point.
+            final int nearest = fraction < 0.5 ? first : first + 1;
+            table[phase * taps + nearest] += (1 << WEIGHT_BITS) - sum;
+        }
+        return table;
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file works out the histogram of each layer of an image, along with
+ * the least and greatest value, the mean and the variance of each layer. The
+ * image is read once, in parallel bands. Each band counts into histograms of
+ * its own, which are added together once the band is done, so bands never
+ * wait for each other while counting. Everything else follows from the
+ * histograms in 256 steps a layer, however large the image.
+ *
+ * References:
+ *
+ * Amarasinghe, U. (n.d). Basic Effects. [PowerPoint slides]. Colombo: Asia
+ * Pacific Institute of Information Technology. Available at: Learning
+ * Management System APIIT City Campus. Imaging and Special Effects.
+ * <http://lms.apiit.lk/course/view.php?id=1815> (accessed 6th January 2014)
+ *
+ * Durovic I. (n.d). Digital image processing. [PowerPoint slides].
+ * <www.etf.ucg.ac.me/Digital%20image%20processing.pdf?> (accessed 6th January
+ * 2014)
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+public class Statistics {
+
+    private static final int LEVELS = LookupTable.LEVELS;
+
+    private final int planes;
+    private final long count;
+    // Number of samples of each value, for each layer.
+    private final int[][] histograms;
+    private final int[] min, max;
+    private final double[] mean, variance;
+    // Otsu thresholds already worked out, by layer and number.
+    private final int[][][] thresholds;
+
+    // (Amarasinghe n.d.; Durovic n.d.)
+    public Statistics(final PixelStore image) {
+        planes = image.getPlanes();
+        count = (long) image.getHeight() * image.getWidth();
+        histograms = new int[planes][LEVELS];
+        min = new int[planes];
+        max = new int[planes];
+        mean = new double[planes];
+        variance = new double[planes];
+        thresholds = new int[planes][Otsu.MAX_THRESHOLDS + 1][];
+
+        final int width = image.getWidth();
+        ParallelEngine.forEachRow(image.getHeight(),
+                new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                final int[][] counts = new int[planes][LEVELS];
+                final int[] pixels = new int[width];
+                for (int row = firstRow; row < endRow; row++) {
+                    image.getPixels(row, 0, 0, 1, width, pixels, 0);
+                    for (int plane = 0; plane < planes; plane++) {
+                        final int[] counted = counts[plane];
+                        final int shift = plane * 8;
+                        for (int col = 0; col < width; col++) {
+                            counted[pixels[col] >> shift & 0xff]++;
+                        }
+                    }
+                }
+                add(counts);
+            }
+        });
+
+        for (int plane = 0; plane < planes; plane++) {
+            summarise(plane);
+        }
+    }
+
+    // Adds the counts of a band to the histograms.
+    private synchronized void add(int[][] counts) {
+        for (int plane = 0; plane < planes; plane++) {
+            for (int value = 0; value < LEVELS; value++) {
+                histograms[plane][value] += counts[plane][value];
+            }
+        }
+    }
+
+    private void summarise(int plane) {
+        final int[] histogram = histograms[plane];
+        int least = LEVELS - 1, greatest = 0;
+        long sum = 0, sumOfSquares = 0;
+        for (int value = 0; value < LEVELS; value++) {
+            if (histogram[value] != 0) {
+                least = Math.min(least, value);
+                greatest = value;
+                sum += (long) value * histogram[value];
+                sumOfSquares += (long) value * value * histogram[value];
+            }
+        }
+        min[plane] = least;
+        max[plane] = greatest;
+        if (count > 0) {
+            mean[plane] = (double) sum / count;
+            variance[plane] = (double) sumOfSquares / count - mean[plane]
+                    * mean[plane];
+        }
+    }
+
+    public int getPlanes() {
+        return planes;
+    }
+
+    // Number of pixels of the image.
+    public long getCount() {
+        return count;
+    }
+
+    // Returns a copy of the histogram of a layer.
+    public int[] getHistogram(int plane) {
+        return histograms[plane].clone();
+    }
+
+    // Returns a copy of the histograms of all layers.
+    public int[][] getHistograms() {
+        final int[][] copy = new int[planes][];
+        for (int plane = 0; plane < planes; plane++) {
+            copy[plane] = getHistogram(plane);
+        }
+        return copy;
+    }
+
+    public int getMin(int plane) {
+        return min[plane];
+    }
+
+    public int getMax(int plane) {
+        return max[plane];
+    }
+
+    public double getMean(int plane) {
+        return mean[plane];
+    }
+
+    public double getVariance(int plane) {
+        return variance[plane];
+    }
+
+    // Returns count Otsu thresholds of a layer, worked out the first time
+    // they are asked for.
+    public synchronized int[] getOtsuThresholds(int plane, int count) {
+        if (thresholds[plane][count] == null) {
+            thresholds[plane][count] = Otsu.thresholds(histograms[plane],
+                    count);
+        }
+        return thresholds[plane][count].clone();
+    }
+}
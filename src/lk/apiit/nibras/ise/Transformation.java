@@ -0,0 +1,372 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file holds a chain of rotations, scalings, moves and crops as a single
+ * affine transformation, so that the chain is applied to an image with one
+ * pass of the resampler rather than one for each step. Each step only adds to
+ * a 2 x 3 matrix taking the pixels of the result back to the points of the
+ * original image they come from. Points along a row of the result are a fixed
+ * step apart in the original, so they are found by adding that step rather
+ * than by working out the matrix, or any sines and cosines, for each pixel.
+ *
+ * Each step loses whatever it moves beyond the edge of the image it makes,
+ * and fills whatever it brings in with white. So the chain also keeps the
+ * area of every image along the way. A pixel of the result is only taken
+ * from the original if it lies within all of them. Within a row each area is
+ * a single run of pixels, found once for the row.
+ *
+ * References:
+ *
+ * Amarasinghe, U. (n.d). Basic Effects. [PowerPoint slides]. Colombo: Asia
+ * Pacific Institute of Information Technology. Available at: Learning
+ * Management System APIIT City Campus. Imaging and Special Effects.
+ * <http://lms.apiit.lk/course/view.php?id=1815> (accessed 6th January 2014)
+ *
+ * Durovic I. (n.d). Digital image processing. [PowerPoint slides].
+ * <www.etf.ucg.ac.me/Digital%20image%20processing.pdf?> (accessed 6th January
+ * 2014)
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public final class Transformation implements Resampler.ClippedMapping {
+
+    // Steps along a row are added up with this many bits of fraction, so
+    // that rounding the step doesn't add up across a wide image.
+    private static final int STEP_BITS = 32;
+    private static final double STEP_ONE = 1L << STEP_BITS;
+    // Chains that only move whole pixels around are copied in square tiles
+    // of this size, so that turned images are read and written a few cache
+    // lines at a time.
+    private static final int TILE = 64;
+
+    private final int height, width, sourceHeight, sourceWidth;
+    // Takes a column and row of the result to a point of the original.
+    private final Matrix toSource;
+    // Takes the result to each image along the way, the original first.
+    private final List<Area> areas;
+
+    // A chain that leaves an image of the given size as it is.
+    public Transformation(int height, int width) {
+        this(height, width, height, width, Matrix.IDENTITY, Collections
+                .<Area>emptyList());
+    }
+
+    private Transformation(int height, int width, int sourceHeight,
+            int sourceWidth, Matrix toSource, List<Area> areas) {
+        this.height = height;
+        this.width = width;
+        this.sourceHeight = sourceHeight;
+        this.sourceWidth = sourceWidth;
+        this.toSource = toSource;
+        this.areas = areas;
+    }
+
+    // Size of the result.
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    // Turns the result about its centre. Positive angles turn it
+    // anticlockwise, in degrees. Turns by right angles are exact.
+    // (Amarasinghe n.d.; Durovic n.d.)
+    public Transformation rotate(double angle) {
+        final double radians = Math.toRadians(angle);
+        double sin = Math.sin(radians), cos = Math.cos(radians);
+        if (angle % 90 == 0) {
+            sin = Math.rint(sin);
+            cos = Math.rint(cos);
+        }
+        final int x0 = width / 2, y0 = height / 2;
+        return then(height, width, new Matrix(cos, -sin, x0 - x0 * cos + y0
+                * sin, sin, cos, y0 - x0 * sin - y0 * cos));
+    }
+
+    // Scales the result by the given factors, matching the centres of the
+    // pixels at the edges.
+    // (Amarasinghe n.d.; Durovic n.d.)
+    public Transformation scale(double horizontal, double vertical) {
+        return then(Math.max(1, (int) (height * vertical)), Math.max(1,
+                (int) (width * horizontal)), new Matrix(1 / horizontal, 0,
+                0.5 / horizontal - 0.5, 0, 1 / vertical, 0.5 / vertical - 0.5));
+    }
+
+    // Moves the result down and to the right by the given number of pixels.
+    // (Amarasinghe n.d.; Durovic n.d.)
+    public Transformation translate(int vertical, int horizontal) {
+        return then(height, width, new Matrix(1, 0, -horizontal, 0, 1,
+                -vertical));
+    }
+
+    // Turns the result by a number of right angles, anticlockwise for
+    // positive numbers. Nothing is lost: the result is made taller for a
+    // quarter turn of a wide image.
+    public Transformation turn(int quarterTurns) {
+        final int w = width - 1, h = height - 1;
+        switch ((quarterTurns % 4 + 4) % 4) {
+            case 1:
+                return then(width, height, new Matrix(0, -1, w, 1, 0, 0));
+            case 2:
+                return then(height, width, new Matrix(-1, 0, w, 0, -1, h));
+            case 3:
+                return then(width, height, new Matrix(0, 1, 0, -1, 0, h));
+            default:
+                return this;
+        }
+    }
+
+    // Mirrors the result left to right.
+    public Transformation flipHorizontally() {
+        return then(height, width, new Matrix(-1, 0, width - 1, 0, 1, 0));
+    }
+
+    // Mirrors the result top to bottom.
+    public Transformation flipVertically() {
+        return then(height, width, new Matrix(1, 0, 0, 0, -1, height - 1));
+    }
+
+    // Keeps the given part of the result.
+    // (Amarasinghe n.d.; Durovic n.d.)
+    public Transformation crop(int x, int y, int height, int width) {
+        return then(height, width, new Matrix(1, 0, x, 0, 1, y));
+    }
+
+    // The chain with one more step, of the given size, whose pixels come
+    // from the points of the result so far given by back.
+    private Transformation then(int height, int width, Matrix back) {
+        final List<Area> chained = new ArrayList<Area>(areas.size() + 1);
+        for (Area area : areas) {
+            chained.add(new Area(area.toImage.times(back), area.height,
+                    area.width));
+        }
+        chained.add(new Area(back, this.height, this.width));
+        return new Transformation(height, width, sourceHeight, sourceWidth,
+                toSource.times(back), Collections.unmodifiableList(chained));
+    }
+
+    // Whether each pixel of the result is exactly a pixel of the original,
+    // as after moves, crops and turns by right angles.
+    public boolean isWholePixel() {
+        return toSource.isWholePixel();
+    }
+
+    // Points of the original, in fixed point, that a row of the result is
+    // taken from. Pixels outside any of the images along the way are
+    // NOWHERE.
+    @Override
+    public void map(int row, int[] cols, int[] rows) {
+        final int[] span = new int[2];
+        map(row, cols, rows, span);
+        Arrays.fill(cols, 0, span[0], Resampler.NOWHERE);
+        Arrays.fill(cols, span[1], cols.length, Resampler.NOWHERE);
+    }
+
+    // As above, for the run of the row within all the images along the way
+    // only. The points are found a step at a time from the first.
+    @Override
+    public void map(int row, int[] cols, int[] rows, int[] span) {
+        clip(row, span);
+        int first = span[0], end = span[1];
+        long x = toStep(toSource.xx * first + toSource.xy * row + toSource.x);
+        long y = toStep(toSource.yx * first + toSource.yy * row + toSource.y);
+        final long stepX = toStep(toSource.xx), stepY = toStep(toSource.yx);
+        for (int col = first; col < end; col++) {
+            cols[col] = (int) (x >> STEP_BITS - Resampler.FRACTION_BITS);
+            rows[col] = (int) (y >> STEP_BITS - Resampler.FRACTION_BITS);
+            x += stepX;
+            y += stepY;
+        }
+
+        // The run was found without rounding, so its ends may lie a hair
+        // outside the original once rounded. Points along a row form a
+        // line, so only the ends need checking.
+        while (first < end && !Resampler.isInside(cols[first], rows[first],
+                sourceHeight, sourceWidth)) {
+            first++;
+        }
+        while (end > first && !Resampler.isInside(cols[end - 1],
+                rows[end - 1], sourceHeight, sourceWidth)) {
+            end--;
+        }
+        span[0] = first;
+        span[1] = end;
+    }
+
+    // Copies the pixels of source, the original, into target for chains
+    // that are whole pixel. Rows are copied in parallel bands, and each
+    // band a tile at a time. Pixels outside any of the images along the
+    // way take the background value, 0 - 255.
+    public void copy(final PixelStore source, final PixelStore target,
+            int background) {
+        if (!isWholePixel()) {
+            throw new IllegalStateException("Points are not whole pixels");
+        }
+        int fill = 0;
+        for (int plane = 0; plane < source.getPlanes(); plane++) {
+            fill |= (background & 0xff) << plane * 8;
+        }
+        final int backgroundPixel = fill;
+        final int xx = (int) toSource.xx, xy = (int) toSource.xy;
+        final int yx = (int) toSource.yx, yy = (int) toSource.yy;
+        final int x0 = (int) toSource.x, y0 = (int) toSource.y;
+
+        ParallelEngine.forEachRow(height, TILE, new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                final int[] firsts = new int[endRow - firstRow];
+                final int[] ends = new int[endRow - firstRow];
+                final int[] span = new int[2];
+                for (int row = firstRow; row < endRow; row++) {
+                    clip(row, span);
+                    firsts[row - firstRow] = span[0];
+                    ends[row - firstRow] = span[1];
+                }
+
+                final int[] pixels = new int[TILE];
+                for (int top = firstRow; top < endRow; top += TILE) {
+                    final int bottom = Math.min(top + TILE, endRow);
+                    for (int left = 0; left < width; left += TILE) {
+                        final int right = Math.min(left + TILE, width);
+                        for (int row = top; row < bottom; row++) {
+                            final int first = Math.min(right, Math.max(
+                                    left, firsts[row - firstRow]));
+                            final int end = Math.max(first, Math.min(right,
+                                    ends[row - firstRow]));
+                            Arrays.fill(pixels, 0, first - left,
+                                    backgroundPixel);
+                            source.getPixels(yx * first + yy * row + y0, xx
+                                    * first + xy * row + x0, yx, xx, end
+                                    - first, pixels, first - left);
+                            Arrays.fill(pixels, end - left, right - left,
+                                    backgroundPixel);
+                            target.setPixels(row, left, right - left, pixels,
+                                    0);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    // Finds the run of a row of the result within all the images along the
+    // way.
+    private void clip(int row, int[] span) {
+        int first = 0, end = width;
+        for (Area area : areas) {
+            first = Math.max(first, area.firstInside(row));
+            end = Math.min(end, area.endInside(row));
+        }
+        span[0] = Math.min(first, width);
+        span[1] = Math.max(span[0], end);
+    }
+
+    private static long toStep(double value) {
+        return (long) Math.floor(value * STEP_ONE);
+    }
+
+    // The area of an image along the way, as seen from the result.
+    private static final class Area {
+
+        private final Matrix toImage;
+        private final int height, width;
+
+        Area(Matrix toImage, int height, int width) {
+            this.toImage = toImage;
+            this.height = height;
+            this.width = width;
+        }
+
+        // First column of the row of the result within the image.
+        int firstInside(int row) {
+            return Math.max(
+                    first(toImage.xx, toImage.xy * row + toImage.x, width),
+                    first(toImage.yx, toImage.yy * row + toImage.y, height));
+        }
+
+        // Column after the last of the row within the image.
+        int endInside(int row) {
+            return Math.min(
+                    end(toImage.xx, toImage.xy * row + toImage.x, width),
+                    end(toImage.yx, toImage.yy * row + toImage.y, height));
+        }
+
+        // A pixel of an image covers the half pixel around its centre, so
+        // the columns within an image of the given size are those where
+        // -0.5 <= step * col + start < size - 0.5.
+        private static int first(double step, double start, int size) {
+            if (step == 0) {
+                return start >= -0.5 && start < size - 0.5 ? Integer.MIN_VALUE
+                        : Integer.MAX_VALUE;
+            }
+            final double bound = step > 0 ? (-0.5 - start) / step
+                    : (size - 0.5 - start) / step;
+            return clip(step > 0 ? Math.ceil(bound) : Math.floor(bound) + 1);
+        }
+
+        private static int end(double step, double start, int size) {
+            if (step == 0) {
+                return start >= -0.5 && start < size - 0.5 ? Integer.MAX_VALUE
+                        : Integer.MIN_VALUE;
+            }
+            final double bound = step > 0 ? (size - 0.5 - start) / step
+                    : (-0.5 - start) / step;
+            return clip(step > 0 ? Math.ceil(bound) : Math.floor(bound) + 1);
+        }
+
+        private static int clip(double col) {
+            return (int) Math.max(Integer.MIN_VALUE / 2, Math.min(col,
+                    Integer.MAX_VALUE / 2));
+        }
+    }
+
+    // Takes a column and row (c, r) to the point (xx c + xy r + x,
+    // yx c + yy r + y).
+    private static final class Matrix {
+
+        static final Matrix IDENTITY = new Matrix(1, 0, 0, 0, 1, 0);
+
+        final double xx, xy, x, yx, yy, y;
+
+        Matrix(double xx, double xy, double x, double yx, double yy, double y) {
+            this.xx = xx;
+            this.xy = xy;
+            this.x = x;
+            this.yx = yx;
+            this.yy = yy;
+            this.y = y;
+        }
+
+        // Whether whole pixels are taken to whole pixels.
+        boolean isWholePixel() {
+            return isWhole(xx) && isWhole(xy) && isWhole(x) && isWhole(yx)
+                    && isWhole(yy) && isWhole(y) && Math.abs(xx) <= 1
+                    && Math.abs(xy) <= 1 && Math.abs(yx) <= 1
+                    && Math.abs(yy) <= 1;
+        }
+
+        private static boolean isWhole(double value) {
+            return value == Math.rint(value);
+        }
+
+        // The matrix that applies other, then this.
+        Matrix times(Matrix other) {
+            return new Matrix(xx * other.xx + xy * other.yx, xx * other.xy
+                    + xy * other.yy, xx * other.x + xy * other.y + x, yx
+                    * other.xx + yy * other.yx, yx * other.xy + yy * other.yy,
+                    yx * other.x + yy * other.y + y);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file warps images through a map holding, for each pixel of the warped
+ * image, the point of the image it is taken from. The points are kept in
+ * fixed point, 16 bits of whole pixels and 16 bits of fraction, the fraction
+ * being the weight of the next pixel when interpolating. Working out the map
+ * takes the trigonometry; applying it is only look ups and interpolation, so
+ * maps are kept in a small cache and reused for every layer, for every image
+ * of the same size, and when a slider returns to a value it had before.
+ *
+ * The fish-eye, bulge and twirl warps move each pixel by an amount that only
+ * depends on its distance from the centre, in the horizontal and vertical
+ * directions. So the amount is only worked out for one quarter of the image
+ * and mirrored into the other three.
+ *
+ * References:
+ *
+ * Bourke, P. 2002. Lens Correction / Distortion. [online] Available at:
+ * http://paulbourke.net/miscellaneous/lenscorrection/ [Accessed: 7 Jan 2014].
+ *
+ * stackoverflow. 2012. Image Warping - Bulge Effect Algorithm - Stack Overflow.
+ * [online] Available at:
+ * http://stackoverflow.com/questions/5055625/image-warping
+ * -bulge-effect-algorithm [Accessed: 7 Jan 2014].
+ *
+ * The Supercomputing Blog. n.d. Image twist and swirl algorithm | The
+ * Supercomputing Blog. [online] Available at:
+ * http://supercomputingblog.com/openmp/image-twist-and-swirl-algorithm/
+ * [Accessed: 7 Jan 2014].
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class WarpMap {
+
+    public static enum Type {
+
+        FISH_EYE, BULGE, TWIRL
+    }
+
+    private static final int FRACTION_BITS = Resampler.FRACTION_BITS;
+    private static final int NOWHERE = Resampler.NOWHERE;
+    // Largest number of points kept in the cache, about 64 MB.
+    private static final long MAX_CACHED_POINTS = 8L << 20;
+    // Least recently used first.
+    private static final Map<Key, WarpMap> CACHE =
+            new LinkedHashMap<Key, WarpMap>(16, 0.75f, true);
+    private static long cachedPoints;
+
+    private final int height, width;
+    // Fixed point column and row each pixel is taken from.
+    private final int[] cols, rows;
+    // Pixels not taken from the image are filled white rather than left
+    // as they were.
+    private final boolean fillWhite;
+
+    private WarpMap(int height, int width, boolean fillWhite) {
+        this.height = height;
+        this.width = width;
+        this.fillWhite = fillWhite;
+        cols = new int[height * width];
+        rows = new int[height * width];
+    }
+
+    // Returns the map of a warp for images of the given size, from the
+    // cache if it was made before.
+    public static WarpMap get(Type type, double factor, int height,
+            int width) {
+        final Key key = new Key(type, factor, height, width);
+        synchronized (CACHE) {
+            final WarpMap cached = CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final WarpMap map;
+        switch (type) {
+            case FISH_EYE:
+                map = fishEye(factor, height, width);
+                break;
+            case BULGE:
+                map = bulge(factor, height, width);
+                break;
+            default:
+                map = twirl(factor, height, width);
+        }
+
+        // A map larger than the whole cache is not kept, rather than have
+        // it push out every other map and stay for good.
+        if (map.cols.length > MAX_CACHED_POINTS) {
+            return map;
+        }
+        synchronized (CACHE) {
+            if (CACHE.put(key, map) == null) {
+                cachedPoints += map.cols.length;
+            }
+            // Evict the least recently used. The newest fits on its own, so
+            // it is never reached.
+            final Iterator<WarpMap> eldest = CACHE.values().iterator();
+            while (cachedPoints > MAX_CACHED_POINTS) {
+                cachedPoints -= eldest.next().cols.length;
+                eldest.remove();
+            }
+        }
+        return map;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    // Writes the warped source into target. Both must be the size of the
+    // map. Points are interpolated between the four pixels around them.
+    public void apply(PixelStore source, PixelStore target) {
+        if (source.getHeight() != height || source.getWidth() != width) {
+            throw new IllegalArgumentException("Map and image sizes differ");
+        }
+        new Resampler(Resampler.Mode.BILINEAR).resample(source, target,
+                new Resampler.Mapping() {
+            @Override
+            public void map(int row, int[] rowCols, int[] rowRows) {
+                System.arraycopy(cols, row * width, rowCols, 0, width);
+                System.arraycopy(rows, row * width, rowRows, 0, width);
+            }
+        }, fillWhite ? 255 : Resampler.KEEP);
+    }
+
+    // (Gribbon and Johnston et al., 2003, pp. 408--413)
+    // (Bourke 2002)
+    // (Vass and Perlaki, 2003, pp. 9--16)
+    // (Hughes and Glavin et al., 2008)
+    private static WarpMap fishEye(final double factor, int height, int width) {
+        final WarpMap map = new WarpMap(height, width, true);
+        map.radial(new Radial() {
+            @Override
+            public double scale(double distance) {
+                return factor * Math.tan(distance / factor) / distance;
+            }
+        });
+
+        // Only a window around the centre is shown for some factors.
+        double margin = 0;
+        if (factor < 0.7 && factor > 0.45) {
+            margin = 0.7 - factor;
+        } else if (factor < 0.46 && factor > 0.38) {
+            margin = 0.65 - factor;
+        } else if (factor < 0.39 && factor > 0.36) {
+            margin = 0.6 - factor;
+        } else if (factor < 0.37 && factor > 0.32) {
+            margin = 0.63 - factor;
+        } else if (factor < 0.33 && factor > 0.29) {
+            margin = 0.61 - factor;
+        }
+        // The first row and column are always left out.
+        final int maxW = (int) (width - margin * width);
+        final int maxH = (int) (height - margin * height);
+        final int minW = (int) (margin * width);
+        final int minH = (int) (margin * height);
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                if (row >= maxH || col >= maxW || row <= minH || col <= minW) {
+                    map.cols[row * width + col] = NOWHERE;
+                }
+            }
+        }
+        return map;
+    }
+
+    // (StackExchange 2013)
+    // (stackoverflow 2012)
+    private static WarpMap bulge(final double factor, int height, int width) {
+        final WarpMap map = new WarpMap(height, width, false);
+        map.radial(new Radial() {
+            @Override
+            public double scale(double distance) {
+                return Math.pow(distance, factor) / distance;
+            }
+        });
+        return map;
+    }
+
+    // Turns each pixel about the centre by an angle growing with its
+    // distance from it. Points are rounded to whole pixels.
+    // (The Supercomputing Blog, n.d.)
+    private static WarpMap twirl(double factor, final int height,
+            final int width) {
+        final WarpMap map = new WarpMap(height, width, false);
+        final int x0 = width / 2, y0 = height / 2;
+        final int quarterHeight = Math.max(y0, height - 1 - y0) + 1;
+        final int quarterWidth = Math.max(x0, width - 1 - x0) + 1;
+        final double[] sines = new double[quarterHeight * quarterWidth];
+        final double[] cosines = new double[quarterHeight * quarterWidth];
+        final double turn = Math.toRadians(1440) * factor;
+
+        ParallelEngine.forEachRow(quarterHeight,
+                new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                for (int dy = firstRow; dy < endRow; dy++) {
+                    for (int dx = 0; dx < quarterWidth; dx++) {
+                        final double length = Math.sqrt(dy * dy
+                                / ((double) height * height) + dx * dx
+                                / ((double) width * width));
+                        final double angle = turn * length;
+                        sines[dy * quarterWidth + dx] = Math.sin(angle);
+                        cosines[dy * quarterWidth + dx] = Math.cos(angle);
+                    }
+                }
+            }
+        });
+
+        ParallelEngine.forEachRow(height, new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                for (int row = firstRow; row < endRow; row++) {
+                    final int dy = y0 - row;
+                    for (int col = 0; col < width; col++) {
+                        final int dx = x0 - col;
+                        final int q = Math.abs(dy) * quarterWidth
+                                + Math.abs(dx);
+                        final double sin = sines[q], cos = cosines[q];
+                        final int srcRow = y0
+                                - (int) Math.round(dx * sin + dy * cos);
+                        final int srcCol = x0
+                                - (int) Math.round(dx * cos - dy * sin);
+                        map.rows[row * width + col] = srcRow << FRACTION_BITS;
+                        map.cols[row * width + col] = srcCol << FRACTION_BITS;
+                    }
+                }
+            }
+        });
+        return map;
+    }
+
+    // How far from the centre a pixel is taken from, as a multiple of its
+    // own distance from the centre. Distances are in half widths and half
+    // heights of the image.
+    private interface Radial {
+
+        double scale(double distance);
+    }
+
+    // Fills the map for a warp that moves pixels towards or away from the
+    // centre.
+    private void radial(final Radial warp) {
+        final double x0 = width / 2, y0 = height / 2;
+        final double halfWidth = width / 2, halfHeight = height / 2;
+        final int quarterHeight = (int) Math.max(y0, height - 1 - y0) + 1;
+        final int quarterWidth = (int) Math.max(x0, width - 1 - x0) + 1;
+        final double[] scales = new double[quarterHeight * quarterWidth];
+
+        ParallelEngine.forEachRow(quarterHeight,
+                new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                for (int dy = firstRow; dy < endRow; dy++) {
+                    final double y = dy / halfHeight;
+                    for (int dx = 0; dx < quarterWidth; dx++) {
+                        final double x = dx / halfWidth;
+                        final double distance = Math.sqrt(x * x + y * y);
+                        scales[dy * quarterWidth + dx] = distance == 0 ? 0
+                                : warp.scale(distance);
+                    }
+                }
+            }
+        });
+
+        ParallelEngine.forEachRow(height, new ParallelEngine.RowKernel() {
+            @Override
+            public void processRows(int firstRow, int endRow) {
+                for (int row = firstRow; row < endRow; row++) {
+                    final double dy = row - y0;
+                    for (int col = 0; col < width; col++) {
+                        final double dx = col - x0;
+                        final double scale = scales[(int) Math.abs(dy)
+                                * quarterWidth + (int) Math.abs(dx)];
+                        final double srcRow = y0 + dy * scale;
+                        final double srcCol = x0 + dx * scale;
+                        rows[row * width + col] = Resampler.toFixed(srcRow);
+                        cols[row * width + col] = Resampler.toFixed(srcCol);
+                    }
+                }
+            }
+        });
+    }
+
+    private static final class Key {
+
+        private final Type type;
+        private final double factor;
+        private final int height, width;
+
+        Key(Type type, double factor, int height, int width) {
+            this.type = type;
+            this.factor = factor;
+            this.height = height;
+            this.width = width;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) other;
+            return type == key.type
+                    && Double.compare(factor, key.factor) == 0
+                    && height == key.height && width == key.width;
+        }
+
+        @Override
+        public int hashCode() {
+            final long bits = Double.doubleToLongBits(factor);
+            return ((type.hashCode() * 31 + (int) (bits ^ bits >>> 32)) * 31
+                    + height) * 31 + width;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file runs every check of the engines in turn. It stops with an
+ * AssertionError at the first one that fails.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+public class AllChecks {
+
+    public static void main(String[] args) {
+        ConvolutionEngineCheck.main(args);
+        BoxFilterCheck.main(args);
+        MedianFilterCheck.main(args);
+        ModeFilterCheck.main(args);
+        MorphologyFilterCheck.main(args);
+        LookupTableCheck.main(args);
+        PencilSketchCheck.main(args);
+        GradientEngineCheck.main(args);
+        WarpMapCheck.main(args);
+        ResamplerCheck.main(args);
+        TransformationCheck.main(args);
+        PyramidCheck.main(args);
+        StatisticsCheck.main(args);
+        OtsuCheck.main(args);
+        ComponentsCheck.main(args);
+        BinaryImageCheck.main(args);
+        PixelImageCheck.main(args);
+        ColourSpaceCheck.main(args);
+        System.out.println("All checks passed.");
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks that black and white images held as bits give back the
+ * images they were made from, pixel for pixel, and that counting and
+ * combining them works pixel by pixel. Each of the morphological operations
+ * must give the same image as the grey scale filter, and the blobs found in
+ * bits must be those found in bytes. Widths either side of a multiple of 64
+ * check the last long of each row.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+public class BinaryImageCheck {
+
+    private static final int[] WIDTHS = { 1, 63, 64, 65, 127, 128, 129 };
+
+    public static void main(String[] args) {
+        final Random random = new Random(13);
+        for (int run = 0; run < 60; run++) {
+            final int type = Checks.TYPES[run % Checks.TYPES.length];
+            final int h = 1 + random.nextInt(run % 4 == 0 ? 300 : 40);
+            final int w = run < 2 * WIDTHS.length ? WIDTHS[run / 2]
+                    : 1 + random.nextInt(300);
+            final PixelStore image = blackAndWhite(random, type, h, w);
+            final BinaryImage bits = BinaryImage.of(image);
+            final String what = "Run " + run + ", " + h + " x " + w;
+            Checks.check(bits != null, "%s: not found black and white",
+                    what);
+            Checks.checkSame(image, expand(bits, type), what + ", bits");
+
+            long white = 0;
+            final int[] line = new int[w];
+            final BufferedImage shown = bits.toBufferedImage();
+            for (int row = 0; row < h; row++) {
+                bits.getRow(row, line);
+                for (int col = 0; col < w; col++) {
+                    final boolean set = image.get(0, row, col) == 255;
+                    white += set ? 1 : 0;
+                    Checks.check(bits.get(row, col) == set && line[col]
+                            == (set ? 1 : 0) && (shown.getRGB(col, row)
+                            & 0xffffff) == (set ? 0xffffff : 0),
+                            "%s: %d, %d", what, row, col);
+                }
+            }
+            Checks.check(bits.count() == white, "%s: count", what);
+            checkCombined(random, bits, what);
+
+            final int height = 1 + random.nextInt(run % 5 == 0 ? 80 : 9);
+            final int width = 1 + random.nextInt(run % 5 == 0 ? 150 : 9);
+            final MorphologyFilter filter = new MorphologyFilter(height,
+                    width);
+            for (MorphologyFilter.Operation operation
+                    : MorphologyFilter.Operation.values()) {
+                final PixelStore filtered = image.createCompatible(h, w);
+                filter.apply(image, filtered, operation);
+                final BinaryImage result = bits.morphology(operation, height,
+                        width);
+                final String element = what + ", " + operation + " " + height
+                        + " x " + width;
+                Checks.checkSame(filtered, expand(result, type), element);
+                // Nothing is set beyond the width.
+                Checks.check(result.count() == BinaryImage.of(filtered)
+                        .count(), "%s: count", element);
+            }
+
+            final PixelStore gray = expand(bits, BufferedImage
+                    .TYPE_BYTE_GRAY);
+            ComponentsCheck.check(gray, 0, 255, new Components(bits, true),
+                    what + ", white blobs");
+            ComponentsCheck.check(gray, 0, 0, new Components(bits, false),
+                    what + ", black blobs");
+            final int row = random.nextInt(h), col = random.nextInt(w);
+            image.set(random.nextInt(image.getPlanes()), row, col,
+                    1 + random.nextInt(254));
+            Checks.check(BinaryImage.of(image) == null, "%s: grey pixel at"
+                    + " %d, %d not found", what, row, col);
+        }
+        System.out.println("BinaryImage: ok");
+    }
+
+    // Checks the ways of combining two images pixel by pixel, and that the
+    // pixels beyond the width are left black.
+    private static void checkCombined(Random random, BinaryImage a,
+            String what) {
+        final int h = a.getHeight(), w = a.getWidth();
+        final BinaryImage b = new BinaryImage(h, w);
+        for (int row = 0; row < h; row++) {
+            for (int col = 0; col < w; col++) {
+                b.set(row, col, random.nextBoolean());
+            }
+        }
+        final BinaryImage copy = a.copy();
+        final BinaryImage not = a.not(), and = a.and(b), or = a.or(b);
+        final BinaryImage xor = a.xor(b), andNot = a.andNot(b);
+        for (int row = 0; row < h; row++) {
+            for (int col = 0; col < w; col++) {
+                final boolean p = a.get(row, col), q = b.get(row, col);
+                Checks.check(copy.get(row, col) == p && not.get(row, col)
+                        == !p && and.get(row, col) == (p && q) && or.get(row,
+                        col) == (p || q) && xor.get(row, col) == (p != q)
+                        && andNot.get(row, col) == (p && !q), "%s: combined"
+                        + " at %d, %d", what, row, col);
+            }
+        }
+        Checks.check(not.count() == (long) h * w - a.count(), "%s: not"
+                + " sets pixels beyond the width", what);
+    }
+
+    // Black and white image of the given layout, white in clumps of
+    // a random density.
+    private static PixelStore blackAndWhite(Random random, int type, int h,
+            int w) {
+        final PixelStore image = PixelStore.wrap(new BufferedImage(w, h,
+                type));
+        final double density = random.nextDouble();
+        for (int row = 0; row < h; row++) {
+            for (int col = 0; col < w; col++) {
+                final boolean white = col > 0 && random.nextInt(4) != 0
+                        ? image.get(0, row, col - 1) == 255 : random
+                        .nextDouble() < density;
+                for (int plane = 0; plane < image.getPlanes(); plane++) {
+                    image.set(plane, row, col, white ? 255 : 0);
+                }
+            }
+        }
+        return image;
+    }
+
+    private static PixelStore expand(BinaryImage bits, int type) {
+        final PixelStore image = PixelStore.wrap(new BufferedImage(bits
+                .getWidth(), bits.getHeight(), type));
+        bits.writeTo(image);
+        return image;
+    }
+}
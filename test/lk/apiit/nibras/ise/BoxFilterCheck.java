@@ -0,0 +1,60 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks that the K-value filter gives each pixel the average of
+ * the square reaching k pixels around it, cut off by the edges of the image,
+ * for every layout of the store and for squares both smaller and larger
+ * than the image.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Random;
+
+public class BoxFilterCheck {
+
+    public static void main(String[] args) {
+        final Random random = new Random(2);
+        for (int run = 0; run < 40; run++) {
+            final int k = random.nextInt(run < 30 ? 6 : 40);
+            // Tall enough, now and then, to be split into several bands.
+            final PixelStore image = Checks.randomImage(random,
+                    Checks.TYPES[run % Checks.TYPES.length],
+                    1 + random.nextInt(run % 4 == 0 ? 400 : 40),
+                    1 + random.nextInt(120));
+            final PixelStore averages = image.createCompatible(
+                    image.getHeight(), image.getWidth());
+            new BoxFilter(k).average(image, averages);
+            Checks.checkSame(average(image, k), averages, "K " + k
+                    + ", run " + run);
+        }
+        System.out.println("BoxFilter: ok");
+    }
+
+    private static PixelStore average(PixelStore image, int k) {
+        final int h = image.getHeight(), w = image.getWidth();
+        final PixelStore averages = image.createCompatible(h, w);
+        for (int plane = 0; plane < image.getPlanes(); plane++) {
+            for (int row = 0; row < h; row++) {
+                for (int col = 0; col < w; col++) {
+                    long sum = 0;
+                    int count = 0;
+                    for (int i = Math.max(0, row - k); i <= Math.min(h - 1,
+                            row + k); i++) {
+                        for (int j = Math.max(0, col - k); j <= Math.min(
+                                w - 1, col + k); j++) {
+                            sum += image.get(plane, i, j);
+                            count++;
+                        }
+                    }
+                    averages.set(plane, row, col, (int) (sum / count));
+                }
+            }
+        }
+        return averages;
+    }
+}
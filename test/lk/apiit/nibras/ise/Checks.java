@@ -0,0 +1,86 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file holds what the checks of the engines share. Each check is a class
+ * with a main method that works an engine over random images and compares
+ * the result with the plain, slow way of getting it, throwing an
+ * AssertionError at the first difference. AllChecks runs them all.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+final class Checks {
+
+    // Layouts the store works on: packed, interleaved bytes and gray.
+    static final int[] TYPES = { BufferedImage.TYPE_INT_RGB,
+        BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY };
+
+    private Checks() {
+    }
+
+    static void check(boolean condition, String format, Object... args) {
+        if (!condition) {
+            throw new AssertionError(String.format(format, args));
+        }
+    }
+
+    // An image of the given layout with every sample random.
+    static PixelStore randomImage(Random random, int type, int height,
+            int width) {
+        return randomImage(random, type, height, width, 256);
+    }
+
+    // As above, each sample taking one of levels values spread from 0 to
+    // 255, so that equal values are common.
+    static PixelStore randomImage(Random random, int type, int height,
+            int width, int levels) {
+        final PixelStore image = PixelStore.wrap(new BufferedImage(width,
+                height, type));
+        randomise(random, image, levels);
+        return image;
+    }
+
+    static void randomise(Random random, PixelStore image, int levels) {
+        for (int plane = 0; plane < image.getPlanes(); plane++) {
+            for (int row = 0; row < image.getHeight(); row++) {
+                for (int col = 0; col < image.getWidth(); col++) {
+                    image.set(plane, row, col, levels == 1 ? 0 : random
+                            .nextInt(levels) * 255 / (levels - 1));
+                }
+            }
+        }
+    }
+
+    // Sample of a layer, the nearest edge pixel standing in for pixels
+    // beyond the image.
+    static int clamped(PixelStore image, int plane, int row, int col) {
+        row = Math.min(image.getHeight() - 1, Math.max(0, row));
+        col = Math.min(image.getWidth() - 1, Math.max(0, col));
+        return image.get(plane, row, col);
+    }
+
+    static void checkSame(PixelStore expected, PixelStore actual,
+            String what) {
+        check(expected.getPlanes() == actual.getPlanes()
+                && expected.getHeight() == actual.getHeight()
+                && expected.getWidth() == actual.getWidth(),
+                "%s: size differs", what);
+        for (int plane = 0; plane < expected.getPlanes(); plane++) {
+            for (int row = 0; row < expected.getHeight(); row++) {
+                for (int col = 0; col < expected.getWidth(); col++) {
+                    final int want = expected.get(plane, row, col);
+                    final int got = actual.get(plane, row, col);
+                    check(want == got, "%s: layer %d, row %d, column %d is"
+                            + " %d, not %d", what, plane, row, col, got, want);
+                }
+            }
+        }
+    }
+}
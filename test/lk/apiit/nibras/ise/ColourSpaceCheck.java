@@ -0,0 +1,214 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks the colour conversions over every one of the 16.7M
+ * colours. Averaging and luminescence must give exactly the gray of their
+ * whole number formulas, and the gray of Rec. 601 and Rec. 709 must be the
+ * rounded weighted sum. YCbCr, HSV and Lab must be within a level of the
+ * same conversion worked out in doubles and rounded, and back again within
+ * 1, 4 and 27 levels of where they started. Converting images must give the
+ * same as converting their pixels.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Random;
+
+public class ColourSpaceCheck {
+
+    // Colours at a time, all those of one blue.
+    private static final int BATCH = 1 << 16;
+    // Furthest each space comes back from where it started.
+    private static final int[] ROUND_TRIPS = new int[ColourSpace.Space
+            .values().length];
+
+    static {
+        ROUND_TRIPS[ColourSpace.Space.YCBCR.ordinal()] = 1;
+        ROUND_TRIPS[ColourSpace.Space.HSV.ordinal()] = 4;
+        ROUND_TRIPS[ColourSpace.Space.LAB.ordinal()] = 27;
+    }
+
+    public static void main(String[] args) {
+        final int[] colours = new int[BATCH], gray = new int[BATCH];
+        final int[] converted = new int[BATCH], back = new int[BATCH];
+        for (int blue = 0; blue < 256; blue++) {
+            for (int i = 0; i < BATCH; i++) {
+                colours[i] = blue << 16 | i;
+            }
+            for (ColourSpace.Luma luma : ColourSpace.Luma.values()) {
+                ColourSpace.toGray(luma, colours, gray, BATCH);
+                for (int i = 0; i < BATCH; i++) {
+                    checkGray(luma, colours[i], gray[i]);
+                }
+            }
+            for (ColourSpace.Space space : ColourSpace.Space.values()) {
+                System.arraycopy(colours, 0, converted, 0, BATCH);
+                ColourSpace.toSpace(space, converted, BATCH);
+                System.arraycopy(converted, 0, back, 0, BATCH);
+                ColourSpace.fromSpace(space, back, BATCH);
+                for (int i = 0; i < BATCH; i++) {
+                    // Doubles for a sample of the colours only.
+                    if (i % 61 == blue % 61) {
+                        checkConverted(space, colours[i], converted[i]);
+                    }
+                    Checks.check(distance(colours[i], back[i])
+                            <= ROUND_TRIPS[space.ordinal()], "%s: %06x"
+                            + " comes back as %06x", space, colours[i],
+                            back[i]);
+                }
+            }
+        }
+        checkImages();
+        System.out.println("ColourSpace: ok");
+    }
+
+    private static void checkGray(ColourSpace.Luma luma, int colour,
+            int gray) {
+        final int r = colour & 0xff, g = colour >> 8 & 0xff;
+        final int b = colour >> 16 & 0xff;
+        final boolean right;
+        switch (luma) {
+            case AVERAGE:
+                right = gray == (r + g + b) / 3;
+                break;
+            case LUMINESCENCE:
+                right = gray == (21 * r + 71 * g + 7 * b) / 100;
+                break;
+            case REC_601:
+                right = Math.abs(gray - (0.299 * r + 0.587 * g + 0.114 * b))
+                        <= 0.5 + 1e-3;
+                break;
+            default:
+                right = Math.abs(gray - (0.2126 * r + 0.7152 * g + 0.0722
+                        * b)) <= 0.5 + 1e-3;
+        }
+        Checks.check(right, "%s gray of %06x is %d", luma, colour, gray);
+    }
+
+    // Checks each layer of a colour converted into a space against the
+    // conversion in doubles, rounded.
+    private static void checkConverted(ColourSpace.Space space, int colour,
+            int converted) {
+        final int r = colour & 0xff, g = colour >> 8 & 0xff;
+        final int b = colour >> 16 & 0xff;
+        final double[] want;
+        switch (space) {
+            case YCBCR:
+                want = new double[]{0.299 * r + 0.587 * g + 0.114 * b,
+                    128 - 0.168736 * r - 0.331264 * g + 0.5 * b,
+                    128 + 0.5 * r - 0.418688 * g - 0.081312 * b};
+                break;
+            case HSV:
+                want = hsv(r, g, b);
+                break;
+            default:
+                want = lab(r, g, b);
+        }
+        for (int layer = 0; layer < 3; layer++) {
+            final int got = converted >> 8 * layer & 0xff;
+            int error = Math.abs(got - (int) Math.round(Math.max(0, Math.min(
+                    255, want[layer]))));
+            if (space == ColourSpace.Space.HSV && layer == 0) {
+                error = Math.min(error, 256 - error); // Hue goes round.
+            }
+            Checks.check(error <= 1, "%s of %06x is %06x, layer %d should"
+                    + " be %.2f", space, colour, converted, layer,
+                    want[layer]);
+        }
+    }
+
+    // Hue, saturation and value, each 0 - 255.
+    private static double[] hsv(int r, int g, int b) {
+        final int max = Math.max(r, Math.max(g, b));
+        final int delta = max - Math.min(r, Math.min(g, b));
+        double hue = 0;
+        if (delta != 0) {
+            if (max == r) {
+                hue = (double) (g - b) / delta;
+            } else if (max == g) {
+                hue = 2 + (double) (b - r) / delta;
+            } else {
+                hue = 4 + (double) (r - g) / delta;
+            }
+        }
+        hue = (hue + 6) % 6 * 256 / 6;
+        return new double[]{hue, max == 0 ? 0 : 255.0 * delta / max, max};
+    }
+
+    // L scaled to 0 - 255, a and b offset by 128, D65 white.
+    private static double[] lab(int r, int g, int b) {
+        final double lr = linear(r), lg = linear(g), lb = linear(b);
+        final double x = (0.4124 * lr + 0.3576 * lg + 0.1805 * lb) / 0.95047;
+        final double y = 0.2126 * lr + 0.7152 * lg + 0.0722 * lb;
+        final double z = (0.0193 * lr + 0.1192 * lg + 0.9505 * lb) / 1.08883;
+        final double fx = f(x), fy = f(y), fz = f(z);
+        return new double[]{(116 * fy - 16) * 255 / 100,
+            500 * (fx - fy) + 128, 200 * (fy - fz) + 128};
+    }
+
+    private static double linear(int value) {
+        final double c = value / 255.0;
+        return c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+
+    private static double f(double t) {
+        return t > 216 / 24389.0 ? Math.cbrt(t) : (24389 / 27.0 * t + 16)
+                / 116;
+    }
+
+    // Largest difference between the layers of two colours.
+    private static int distance(int a, int b) {
+        int distance = 0;
+        for (int shift = 0; shift < 24; shift += 8) {
+            distance = Math.max(distance, Math.abs((a >> shift & 0xff)
+                    - (b >> shift & 0xff)));
+        }
+        return distance;
+    }
+
+    // Converting an image must give the same as converting its pixels, in
+    // both colour layouts of the store.
+    private static void checkImages() {
+        final Random random = new Random(14);
+        for (int run = 0; run < 12; run++) {
+            final PixelStore image = Checks.randomImage(random,
+                    Checks.TYPES[run % 2], 1 + random.nextInt(60),
+                    1 + random.nextInt(100));
+            final int h = image.getHeight(), w = image.getWidth();
+            final int[] pixels = new int[w], expected = new int[w];
+            final ColourSpace.Luma luma = ColourSpace.Luma.values()[run % 4];
+            final PixelStore gray = new PixelStore(1, h, w);
+            ColourSpace.toGray(image, gray, luma);
+            for (int row = 0; row < h; row++) {
+                image.getPixels(row, 0, 0, 1, w, pixels, 0);
+                ColourSpace.toGray(luma, pixels, expected, w);
+                for (int col = 0; col < w; col++) {
+                    Checks.check(gray.get(0, row, col) == expected[col],
+                            "%s gray of image at %d, %d", luma, row, col);
+                }
+            }
+
+            final ColourSpace.Space space = ColourSpace.Space.values()[run
+                    % 3];
+            final PixelStore converted = image.copy();
+            ColourSpace.convert(converted, space, run % 2 == 0);
+            for (int row = 0; row < h; row++) {
+                image.getPixels(row, 0, 0, 1, w, pixels, 0);
+                if (run % 2 == 0) {
+                    ColourSpace.fromSpace(space, pixels, w);
+                } else {
+                    ColourSpace.toSpace(space, pixels, w);
+                }
+                converted.getPixels(row, 0, 0, 1, w, expected, 0);
+                for (int col = 0; col < w; col++) {
+                    Checks.check(expected[col] == pixels[col], "%s of image"
+                            + " at %d, %d", space, row, col);
+                }
+            }
+        }
+    }
+}
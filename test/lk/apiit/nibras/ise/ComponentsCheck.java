@@ -0,0 +1,114 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks the blobs found against a plain search from each pixel
+ * not yet in a blob, taken in order, through its eight neighbours. Each
+ * pixel must have the number of the blob the search puts it in, and each
+ * blob the area, bounds and centre of its pixels. Images are tall enough to
+ * be split into bands, and include a single blob winding through the whole
+ * image.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.awt.Rectangle;
+import java.util.Random;
+
+public class ComponentsCheck {
+
+    public static void main(String[] args) {
+        final Random random = new Random(12);
+        for (int run = 0; run < 60; run++) {
+            final PixelStore image = Checks.randomImage(random,
+                    Checks.TYPES[run % Checks.TYPES.length],
+                    1 + random.nextInt(run % 2 == 0 ? 400 : 40),
+                    1 + random.nextInt(200), 2 + random.nextInt(3));
+            final int plane = random.nextInt(image.getPlanes());
+            final int value = image.get(plane, 0, 0);
+            check(image, plane, value, new Components(image, plane, value),
+                    "Run " + run);
+        }
+
+        // One blob winding down and up every other column, far deeper
+        // than any recursion could go.
+        final int h = 1000, w = 301;
+        final PixelStore snake = new PixelStore(1, h, w);
+        for (int col = 0; col < w; col++) {
+            for (int row = 0; row < h; row++) {
+                final boolean link = col % 4 == 1 && row == 0
+                        || col % 4 == 3 && row == h - 1;
+                snake.set(0, row, col, col % 2 == 0 || link ? 255 : 0);
+            }
+        }
+        final Components blobs = new Components(snake, 0, 255);
+        Checks.check(blobs.getCount() == 1, "Snake is in %d blobs", blobs
+                .getCount());
+        check(snake, 0, 255, blobs, "Snake");
+        System.out.println("Components: ok");
+    }
+
+    // Checks the blobs of the pixels of image whose sample is value.
+    static void check(PixelStore image, int plane, int value,
+            Components blobs, String what) {
+        final int h = image.getHeight(), w = image.getWidth();
+        final int[] labels = new int[h * w];
+        final int[] queue = new int[h * w];
+        int count = 0;
+        for (int start = 0; start < labels.length; start++) {
+            if (labels[start] != 0
+                    || image.get(plane, start / w, start % w) != value) {
+                continue;
+            }
+            count++;
+            labels[start] = count;
+            queue[0] = start;
+            int area = 0, top = h, left = w, bottom = -1, right = -1;
+            long rowSum = 0, colSum = 0;
+            for (int head = 0, tail = 1; head < tail; head++) {
+                final int row = queue[head] / w, col = queue[head] % w;
+                area++;
+                top = Math.min(top, row);
+                bottom = Math.max(bottom, row);
+                left = Math.min(left, col);
+                right = Math.max(right, col);
+                rowSum += row;
+                colSum += col;
+                for (int i = Math.max(0, row - 1); i <= Math.min(h - 1,
+                        row + 1); i++) {
+                    for (int j = Math.max(0, col - 1); j <= Math.min(w - 1,
+                            col + 1); j++) {
+                        if (labels[i * w + j] == 0
+                                && image.get(plane, i, j) == value) {
+                            labels[i * w + j] = count;
+                            queue[tail++] = i * w + j;
+                        }
+                    }
+                }
+            }
+
+            final Components.Component blob = blobs.getComponent(count);
+            Checks.check(blob.getArea() == area && blob.getBounds().equals(
+                    new Rectangle(left, top, right - left + 1, bottom - top
+                    + 1)) && blob.getCentreRow() == (double) rowSum / area
+                    && blob.getCentreColumn() == (double) colSum / area,
+                    "%s: blob %d", what, count);
+        }
+
+        Checks.check(blobs.getHeight() == h && blobs.getWidth() == w
+                && blobs.getCount() == count && blobs.getComponents().size()
+                == count, "%s: %d blobs, not %d", what, blobs.getCount(),
+                count);
+        for (int row = 0; row < h; row++) {
+            for (int col = 0; col < w; col++) {
+                Checks.check(blobs.getLabel(row, col) == labels[row * w
+                        + col], "%s: %d, %d is in blob %d, not %d", what,
+                        row, col, blobs.getLabel(row, col), labels[row * w
+                        + col]);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks that the convolution engine gives the same sums as
+ * adding up the mask around each pixel one weight at a time, with the edge
+ * pixels repeated beyond the image, for masks of any size and for every
+ * layout of the store. Masks that are the product of a column and a row must
+ * be found separable, and give the same sums when applied in two passes.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Random;
+
+public class ConvolutionEngineCheck {
+
+    public static void main(String[] args) {
+        final Random random = new Random(1);
+        for (int run = 0; run < 60; run++) {
+            final short[][] mask = new short[1 + random.nextInt(7)][1
+                    + random.nextInt(7)];
+            for (short[] maskRow : mask) {
+                for (int j = 0; j < maskRow.length; j++) {
+                    // Many zeros, which are skipped.
+                    maskRow[j] = (short) (random.nextInt(3) == 0 ? 0 : random
+                            .nextInt(41) - 20);
+                }
+            }
+            final PixelStore image = Checks.randomImage(random,
+                    Checks.TYPES[run % Checks.TYPES.length],
+                    1 + random.nextInt(40), 1 + random.nextInt(300));
+            check(new ConvolutionEngine(mask), mask, image, "Mask " + run);
+        }
+        for (int run = 0; run < 40; run++) {
+            final int[] column = weights(random, 1 + random.nextInt(7));
+            final int[] row = weights(random, 1 + random.nextInt(7));
+            final short[][] mask = new short[column.length][row.length];
+            for (int i = 0; i < column.length; i++) {
+                for (int j = 0; j < row.length; j++) {
+                    mask[i][j] = (short) (column[i] * row[j]);
+                }
+            }
+            final ConvolutionEngine engine = new ConvolutionEngine(mask);
+            Checks.check(engine.isSeparable() || isZero(mask),
+                    "Separable mask %d is not found separable", run);
+            final PixelStore image = Checks.randomImage(random,
+                    Checks.TYPES[run % Checks.TYPES.length],
+                    1 + random.nextInt(40), 1 + random.nextInt(300));
+            check(engine, mask, image, "Separable mask " + run);
+            check(new ConvolutionEngine(column, row), mask, image,
+                    "Passes " + run);
+        }
+        for (int radius = 1; radius <= 4; radius++) {
+            final ConvolutionEngine gaussian = ConvolutionEngine
+                    .gaussian(radius);
+            // Each pass adds up to 2048, give or take the rounding.
+            Checks.check(gaussian.isSeparable() && Math.abs(gaussian
+                    .getWeightSum() - 2048 * 2048) < 2048 * (2 * radius + 1),
+                    "Gaussian %d", radius);
+        }
+        System.out.println("ConvolutionEngine: ok");
+    }
+
+    // Checks both the sums and the averages of an engine applying mask.
+    static void check(ConvolutionEngine engine, short[][] mask,
+            PixelStore image, String what) {
+        final int h = image.getHeight(), w = image.getWidth();
+        final int[][] sums = engine.convolve(image);
+        final PixelStore averages = image.createCompatible(h, w);
+        engine.average(image, averages);
+
+        int weightSum = 0;
+        for (short[] maskRow : mask) {
+            for (short weight : maskRow) {
+                weightSum += weight;
+            }
+        }
+        final int divisor = weightSum == 0 ? 1 : weightSum;
+        for (int plane = 0; plane < image.getPlanes(); plane++) {
+            for (int row = 0; row < h; row++) {
+                for (int col = 0; col < w; col++) {
+                    final int sum = sum(mask, image, plane, row, col);
+                    Checks.check(sums[plane][row * w + col] == sum,
+                            "%s: sum at %d, %d is %d, not %d", what, row, col,
+                            sums[plane][row * w + col], sum);
+                    Checks.check(averages.get(plane, row, col) == PixelStore
+                            .clamp(sum / divisor), "%s: average at %d, %d",
+                            what, row, col);
+                }
+            }
+        }
+    }
+
+    // Weights from -9 to 9, some of them zero.
+    private static int[] weights(Random random, int length) {
+        final int[] weights = new int[length];
+        for (int i = 0; i < length; i++) {
+            weights[i] = random.nextInt(3) == 0 ? 0 : random.nextInt(19) - 9;
+        }
+        return weights;
+    }
+
+    private static boolean isZero(short[][] mask) {
+        for (short[] maskRow : mask) {
+            for (short weight : maskRow) {
+                if (weight != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int sum(short[][] mask, PixelStore image, int plane,
+            int row, int col) {
+        final int top = row - mask.length / 2;
+        final int left = col - mask[0].length / 2;
+        int sum = 0;
+        for (int i = 0; i < mask.length; i++) {
+            for (int j = 0; j < mask[i].length; j++) {
+                sum += mask[i][j] * Checks.clamped(image, plane, top + i,
+                        left + j);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks the Sobel edge strengths against working out both
+ * gradients of each pixel from the 3 x 3 pixels around it, with the edge
+ * pixels repeated beyond the image: the whole square root of the sum of
+ * their squares, or the sum of their sizes, cut off at 255. Sharpening must
+ * add the strength to the pixel, and each direction must be the nearest of
+ * the four to the angle of the gradient.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Random;
+
+public class GradientEngineCheck {
+
+    public static void main(String[] args) {
+        final Random random = new Random(15);
+        for (int run = 0; run < 40; run++) {
+            // Few levels give gentle gradients, below the cut off.
+            final PixelStore image = Checks.randomImage(random,
+                    Checks.TYPES[run % Checks.TYPES.length],
+                    1 + random.nextInt(run % 4 == 0 ? 200 : 40),
+                    1 + random.nextInt(200), run % 2 == 0 ? 256 : 2
+                    + random.nextInt(3));
+            final int h = image.getHeight(), w = image.getWidth();
+            for (GradientEngine.Magnitude magnitude
+                    : GradientEngine.Magnitude.values()) {
+                final GradientEngine engine = new GradientEngine(magnitude);
+                final PixelStore strengths = image.createCompatible(h, w);
+                final byte[][] directions = new byte[image.getPlanes()][h
+                        * w];
+                engine.magnitude(image, strengths, directions);
+                final PixelStore sharpened = image.createCompatible(h, w);
+                engine.sharpen(image, sharpened);
+
+                for (int plane = 0; plane < image.getPlanes(); plane++) {
+                    for (int row = 0; row < h; row++) {
+                        for (int col = 0; col < w; col++) {
+                            check(image, plane, row, col, magnitude,
+                                    strengths.get(plane, row, col),
+                                    sharpened.get(plane, row, col),
+                                    directions[plane][row * w + col],
+                                    "Run " + run);
+                        }
+                    }
+                }
+            }
+        }
+        System.out.println("GradientEngine: ok");
+    }
+
+    private static void check(PixelStore image, int plane, int row, int col,
+            GradientEngine.Magnitude magnitude, int strength, int sharpened,
+            byte direction, String what) {
+        final int[][] p = new int[3][3];
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                p[i][j] = Checks.clamped(image, plane, row - 1 + i, col - 1
+                        + j);
+            }
+        }
+        // Left less right, and top less bottom.
+        final int x = p[0][0] + 2 * p[1][0] + p[2][0] - p[0][2] - 2 * p[1][2]
+                - p[2][2];
+        final int y = p[0][0] + 2 * p[0][1] + p[0][2] - p[2][0] - 2 * p[2][1]
+                - p[2][2];
+        final int want = Math.min(255, magnitude
+                == GradientEngine.Magnitude.EXACT ? (int) Math.floor(Math
+                .sqrt(x * x + y * y)) : Math.abs(x) + Math.abs(y));
+        Checks.check(strength == want, "%s, %s: strength at %d, %d is %d,"
+                + " not %d", what, magnitude, row, col, strength, want);
+        Checks.check(sharpened == PixelStore.clamp(want + p[1][1]),
+                "%s, %s: sharpened at %d, %d", what, magnitude, row, col);
+
+        // Angle from the row, 0 - 180 degrees, the gradient and its
+        // opposite being the same direction. Angles within a hair of
+        // halfway between two directions may go either way.
+        final double angle = (Math.toDegrees(Math.atan2(y, x)) + 180) % 180;
+        final int nearest = (int) Math.round(angle / 45) % 4;
+        final double halfway = Math.abs(angle % 45 - 22.5);
+        final byte[] order = { GradientEngine.HORIZONTAL,
+            GradientEngine.DIAGONAL, GradientEngine.VERTICAL,
+            GradientEngine.ANTI_DIAGONAL };
+        Checks.check(halfway < 0.01 || direction == order[nearest],
+                "%s: direction at %d, %d of %d, %d is %d", what, row, col, x,
+                y, direction);
+    }
+}
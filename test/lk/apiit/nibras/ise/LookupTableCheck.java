@@ -0,0 +1,114 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks that applying a table gives every sample its entry in
+ * the table of its layer, for every layout of the store. It also checks that
+ * a chain of tables joined by then gives the same image as applying them one
+ * after another, and that the histogram moved through a table is the
+ * histogram of the image the table is applied to.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class LookupTableCheck {
+
+    public static void main(String[] args) {
+        final Random random = new Random(6);
+        for (int run = 0; run < 100; run++) {
+            final PixelStore image = Checks.randomImage(random,
+                    Checks.TYPES[run % Checks.TYPES.length],
+                    1 + random.nextInt(60), 1 + random.nextInt(200),
+                    2 + random.nextInt(255));
+            final int planes = image.getPlanes();
+
+            // A chain of one to four operations, each worked out from the
+            // image the earlier ones give.
+            final PixelStore stepped = image.copy();
+            final int[][] histogram = histogram(image);
+            LookupTable chain = new LookupTable(planes);
+            final int length = 1 + random.nextInt(4);
+            for (int i = 0; i < length; i++) {
+                final LookupTable table = table(random, planes, chain
+                        .map(histogram));
+                check(table, stepped, "Run " + run + ", operation " + i);
+                chain = chain.then(table);
+            }
+
+            Checks.check(Arrays.deepEquals(chain.map(histogram),
+                    histogram(stepped)), "Run %d: moved histogram", run);
+            chain.apply(image);
+            Checks.checkSame(stepped, image, "Run " + run + ", chain");
+        }
+        System.out.println("LookupTable: ok");
+    }
+
+    // One of the point operations, picked at random.
+    private static LookupTable table(Random random, int planes,
+            int[][] histogram) {
+        switch (random.nextInt(8)) {
+            case 0:
+                return LookupTable.brightness(planes,
+                        random.nextInt(511) - 255);
+            case 1:
+                return LookupTable.quantization(planes,
+                        1 + random.nextInt(64));
+            case 2:
+                return LookupTable.contrast(planes, 1 + random.nextInt(8));
+            case 3:
+                return LookupTable.stretch(histogram, random.nextInt(50),
+                        205 + random.nextInt(51));
+            case 4:
+                return LookupTable.equalization(histogram);
+            case 5:
+                final short[] thresholds = new short[planes];
+                for (int layer = 0; layer < planes; layer++) {
+                    thresholds[layer] = (short) random.nextInt(256);
+                }
+                return LookupTable.threshold(thresholds);
+            case 6:
+                return LookupTable.pencilShade(planes, random.nextInt(256));
+            default:
+                final int[] levels = new int[1 + random.nextInt(4)];
+                for (int i = 0; i < levels.length; i++) {
+                    levels[i] = random.nextInt(256);
+                }
+                Arrays.sort(levels);
+                return LookupTable.segmentation(planes, levels);
+        }
+    }
+
+    // Applies the table to image, checking each sample against its entry.
+    private static void check(LookupTable table, PixelStore image,
+            String what) {
+        final PixelStore expected = image.copy();
+        for (int plane = 0; plane < image.getPlanes(); plane++) {
+            for (int row = 0; row < image.getHeight(); row++) {
+                for (int col = 0; col < image.getWidth(); col++) {
+                    expected.set(plane, row, col, table.lookup(plane, image
+                            .get(plane, row, col)));
+                }
+            }
+        }
+        table.apply(image);
+        Checks.checkSame(expected, image, what);
+    }
+
+    private static int[][] histogram(PixelStore image) {
+        final int[][] histogram = new int[image.getPlanes()][256];
+        for (int plane = 0; plane < image.getPlanes(); plane++) {
+            for (int row = 0; row < image.getHeight(); row++) {
+                for (int col = 0; col < image.getWidth(); col++) {
+                    histogram[plane][image.get(plane, row, col)]++;
+                }
+            }
+        }
+        return histogram;
+    }
+}
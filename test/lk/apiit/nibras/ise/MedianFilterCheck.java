@@ -0,0 +1,66 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks that the median filter gives each pixel the value at the
+ * asked position among the sorted values of the square around it, with the
+ * edge pixels repeated beyond the image. Both the histograms and the sorting
+ * network for 3 x 3 squares are covered, as are images wider than a tile.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class MedianFilterCheck {
+
+    public static void main(String[] args) {
+        final Random random = new Random(3);
+        for (int run = 0; run < 60; run++) {
+            final int radius = run < 15 ? 1 : random.nextInt(run < 50 ? 5
+                    : 12);
+            final MedianFilter filter = new MedianFilter(radius);
+            final int size = filter.getWindowSize();
+            // The lowest, the median and the highest, then any position.
+            final int position = run < 15 ? new int[]{0, size / 2,
+                size - 1}[run % 3] : random.nextInt(size);
+            final PixelStore image = Checks.randomImage(random,
+                    Checks.TYPES[run % Checks.TYPES.length],
+                    1 + random.nextInt(40), 1 + random.nextInt(300),
+                    run % 2 == 0 ? 256 : 2 + random.nextInt(6));
+            final PixelStore filtered = image.createCompatible(
+                    image.getHeight(), image.getWidth());
+            filter.apply(image, filtered, position);
+            Checks.checkSame(select(image, radius, position), filtered,
+                    "Radius " + radius + ", position " + position);
+        }
+        System.out.println("MedianFilter: ok");
+    }
+
+    private static PixelStore select(PixelStore image, int radius,
+            int position) {
+        final int h = image.getHeight(), w = image.getWidth();
+        final PixelStore selected = image.createCompatible(h, w);
+        final int[] values = new int[(2 * radius + 1) * (2 * radius + 1)];
+        for (int plane = 0; plane < image.getPlanes(); plane++) {
+            for (int row = 0; row < h; row++) {
+                for (int col = 0; col < w; col++) {
+                    int count = 0;
+                    for (int i = -radius; i <= radius; i++) {
+                        for (int j = -radius; j <= radius; j++) {
+                            values[count++] = Checks.clamped(image, plane,
+                                    row + i, col + j);
+                        }
+                    }
+                    Arrays.sort(values);
+                    selected.set(plane, row, col, values[position]);
+                }
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks that the mode filter gives each pixel the most frequent
+ * value of the square around it, with the edge pixels repeated beyond the
+ * image. Where values tie, the pixel must keep its own value if it is among
+ * them and take the lowest of them otherwise. Images with only a few levels
+ * make ties common.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class ModeFilterCheck {
+
+    public static void main(String[] args) {
+        final Random random = new Random(4);
+        for (int run = 0; run < 60; run++) {
+            final int radius = random.nextInt(5);
+            final PixelStore image = Checks.randomImage(random,
+                    Checks.TYPES[run % Checks.TYPES.length],
+                    1 + random.nextInt(run % 4 == 0 ? 200 : 40),
+                    1 + random.nextInt(200), run % 3 == 0 ? 256 : 2
+                    + random.nextInt(8));
+            final PixelStore filtered = image.createCompatible(
+                    image.getHeight(), image.getWidth());
+            new ModeFilter(radius).apply(image, filtered);
+            Checks.checkSame(mode(image, radius), filtered, "Radius "
+                    + radius + ", run " + run);
+        }
+        System.out.println("ModeFilter: ok");
+    }
+
+    private static PixelStore mode(PixelStore image, int radius) {
+        final int h = image.getHeight(), w = image.getWidth();
+        final PixelStore modes = image.createCompatible(h, w);
+        final int[] histogram = new int[256];
+        for (int plane = 0; plane < image.getPlanes(); plane++) {
+            for (int row = 0; row < h; row++) {
+                for (int col = 0; col < w; col++) {
+                    Arrays.fill(histogram, 0);
+                    for (int i = -radius; i <= radius; i++) {
+                        for (int j = -radius; j <= radius; j++) {
+                            histogram[Checks.clamped(image, plane, row + i,
+                                    col + j)]++;
+                        }
+                    }
+                    // The lowest of the most frequent, unless the pixel's
+                    // own value is as frequent.
+                    int mode = 0;
+                    for (int value = 1; value < 256; value++) {
+                        if (histogram[value] > histogram[mode]) {
+                            mode = value;
+                        }
+                    }
+                    final int own = image.get(plane, row, col);
+                    modes.set(plane, row, col,
+                            histogram[own] == histogram[mode] ? own : mode);
+                }
+            }
+        }
+        return modes;
+    }
+}
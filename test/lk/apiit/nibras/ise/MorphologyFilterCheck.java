@@ -0,0 +1,102 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks the five morphological operations against taking the
+ * lowest or highest value under the rectangle around each pixel directly,
+ * with the edge pixels repeated beyond the image. Rectangles with even sides
+ * check that dilation uses the rectangle reflected about its origin.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Random;
+
+public class MorphologyFilterCheck {
+
+    public static void main(String[] args) {
+        final Random random = new Random(5);
+        for (int run = 0; run < 40; run++) {
+            final int height = 1 + random.nextInt(run < 30 ? 9 : 40);
+            final int width = 1 + random.nextInt(run < 30 ? 9 : 40);
+            // Some images are tall enough to be split into bands of rows,
+            // and some wide enough for bands of columns wider than a tile.
+            final PixelStore image = Checks.randomImage(random,
+                    Checks.TYPES[run % Checks.TYPES.length],
+                    1 + random.nextInt(run % 4 == 0 ? 300 : 40),
+                    1 + random.nextInt(run % 4 == 1 ? 1000 : 200));
+            final MorphologyFilter filter = new MorphologyFilter(height,
+                    width);
+            for (MorphologyFilter.Operation operation
+                    : MorphologyFilter.Operation.values()) {
+                final PixelStore result = image.createCompatible(
+                        image.getHeight(), image.getWidth());
+                filter.apply(image, result, operation);
+                Checks.checkSame(apply(image, height, width, operation),
+                        result, operation + " " + height + " x " + width);
+            }
+        }
+        System.out.println("MorphologyFilter: ok");
+    }
+
+    // The operation on image, one pixel at a time.
+    static PixelStore apply(PixelStore image, int height, int width,
+            MorphologyFilter.Operation operation) {
+        switch (operation) {
+            case EROSION:
+                return extreme(image, height, width, false);
+            case DILATION:
+                return extreme(image, height, width, true);
+            case OPENING:
+                return extreme(extreme(image, height, width, false), height,
+                        width, true);
+            case CLOSING:
+                return extreme(extreme(image, height, width, true), height,
+                        width, false);
+            default:
+                final PixelStore dilated = extreme(image, height, width,
+                        true);
+                final PixelStore eroded = extreme(image, height, width,
+                        false);
+                for (int plane = 0; plane < image.getPlanes(); plane++) {
+                    for (int row = 0; row < image.getHeight(); row++) {
+                        for (int col = 0; col < image.getWidth(); col++) {
+                            dilated.set(plane, row, col, dilated.get(plane,
+                                    row, col) - eroded.get(plane, row, col));
+                        }
+                    }
+                }
+                return dilated;
+        }
+    }
+
+    // Lowest (or highest) value under the rectangle, whose origin is at row
+    // height / 2 and column width / 2, reflected for the highest.
+    private static PixelStore extreme(PixelStore image, int height,
+            int width, boolean highest) {
+        final int above = highest ? height - 1 - height / 2 : height / 2;
+        final int before = highest ? width - 1 - width / 2 : width / 2;
+        final PixelStore result = image.createCompatible(image.getHeight(),
+                image.getWidth());
+        for (int plane = 0; plane < image.getPlanes(); plane++) {
+            for (int row = 0; row < image.getHeight(); row++) {
+                for (int col = 0; col < image.getWidth(); col++) {
+                    int value = highest ? 0 : 255;
+                    for (int i = 0; i < height; i++) {
+                        for (int j = 0; j < width; j++) {
+                            final int sample = Checks.clamped(image, plane,
+                                    row - above + i, col - before + j);
+                            value = highest ? Math.max(value, sample) : Math
+                                    .min(value, sample);
+                        }
+                    }
+                    result.set(plane, row, col, value);
+                }
+            }
+        }
+        return result;
+    }
+}
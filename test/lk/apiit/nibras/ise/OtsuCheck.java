@@ -0,0 +1,115 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks that the Otsu thresholds of random histograms score as
+ * well as the best of every set of one, two or three thresholds tried in
+ * turn, that they are in increasing order, and that of equally good
+ * thresholds the lowest are taken, including thresholds at either end.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class OtsuCheck {
+
+    public static void main(String[] args) {
+        final Random random = new Random(11);
+        for (int run = 0; run < 30; run++) {
+            final int[] histogram = histogram(random);
+            for (int count = 1; count <= (run < 4 ? 3 : 2); count++) {
+                final int[] thresholds = Otsu.thresholds(histogram, count);
+                final double best = best(histogram, new int[count], 0, 0);
+                Checks.check(Math.abs(score(histogram, thresholds) - best)
+                        <= best * 1e-12, "Run %d: %s is not the best %d",
+                        run, Arrays.toString(thresholds), count);
+            }
+            for (int count = 1; count <= Otsu.MAX_THRESHOLDS; count++) {
+                final int[] thresholds = Otsu.thresholds(histogram, count);
+                for (int i = 0; i < count; i++) {
+                    Checks.check(thresholds[i] >= i && thresholds[i] < 255
+                            && (i == 0 || thresholds[i] > thresholds[i - 1]),
+                            "Run %d: %s are out of order", run, Arrays
+                            .toString(thresholds));
+                }
+            }
+        }
+
+        // Two values only: every threshold between them is as good.
+        for (int run = 0; run < 20; run++) {
+            final int low = random.nextInt(200);
+            final int high = low + 1 + random.nextInt(255 - low);
+            final int[] histogram = new int[256];
+            histogram[low] = 1 + random.nextInt(1000);
+            histogram[high] = 1 + random.nextInt(1000);
+            Checks.check(Otsu.thresholds(histogram, 1)[0] == low,
+                    "Values %d and %d split at %d", low, high, Otsu
+                    .thresholds(histogram, 1)[0]);
+        }
+
+        // Values at either end only, each a class of its own.
+        final int[] ends = new int[256];
+        ends[0] = ends[1] = ends[254] = ends[255] = 1000;
+        final int[] split = Otsu.thresholds(ends, 3);
+        Checks.check(Arrays.equals(split, new int[]{0, 1, 254}),
+                "Ends split at %s", Arrays.toString(split));
+        System.out.println("Otsu: ok");
+    }
+
+    // Counts of a few humps, some of the values missing altogether.
+    private static int[] histogram(Random random) {
+        final int[] histogram = new int[256];
+        final int humps = 1 + random.nextInt(5);
+        for (int hump = 0; hump < humps; hump++) {
+            final double centre = random.nextInt(256);
+            final double width = 2 + random.nextInt(40);
+            final int height = 1 + random.nextInt(10000);
+            for (int value = 0; value < 256; value++) {
+                final double d = (value - centre) / width;
+                histogram[value] += (int) (height * Math.exp(-d * d));
+            }
+        }
+        return histogram;
+    }
+
+    // Best score of the thresholds from index on, those before it fixed,
+    // trying every value in turn.
+    private static double best(int[] histogram, int[] thresholds, int index,
+            int first) {
+        if (index == thresholds.length) {
+            return score(histogram, thresholds);
+        }
+        double best = 0;
+        for (int t = first; t < 255; t++) {
+            thresholds[index] = t;
+            best = Math.max(best, best(histogram, thresholds, index + 1,
+                    t + 1));
+        }
+        return best;
+    }
+
+    // Sum, over the classes, of the square of the sum of the values of a
+    // class over the number of values in it.
+    private static double score(int[] histogram, int[] thresholds) {
+        double score = 0;
+        int first = 0;
+        for (int c = 0; c <= thresholds.length; c++) {
+            final int last = c < thresholds.length ? thresholds[c] : 255;
+            long number = 0, sum = 0;
+            for (int value = first; value <= last; value++) {
+                number += histogram[value];
+                sum += (long) value * histogram[value];
+            }
+            if (number > 0) {
+                score += (double) sum * sum / number;
+            }
+            first = last + 1;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks the pencil sketches against running their steps one after
+ * another, each over the whole image: averaging the layers, a 3 x 3 median,
+ * the edges, the pencil shades and a 3 x 3 median again, with edge pixels
+ * repeated at every step. All four sketches are checked: Sobel, Zhou and Li,
+ * and the dark and light Laplacean. Images are tall enough to be split into
+ * several bands, each working out the rows above it again.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class PencilSketchCheck {
+
+    // Edges weaker than this are not drawn, as in PencilSketch.
+    private static final int FAINTEST_EDGE = 4;
+
+    public static void main(String[] args) {
+        final Random random = new Random(12);
+        for (int run = 0; run < 48; run++) {
+            final int h = 1 + random.nextInt(run % 3 == 0 ? 400 : 30);
+            final int w = 1 + random.nextInt(60);
+            final PixelStore image = Checks.randomImage(random,
+                    Checks.TYPES[run % Checks.TYPES.length], h, w,
+                    run % 2 == 0 ? 256 : 4);
+            if (run % 5 == 4) {
+                // A gentle slope, for edges too faint to draw.
+                for (int layer = 0; layer < image.getPlanes(); layer++) {
+                    for (int row = 0; row < h; row++) {
+                        for (int col = 0; col < w; col++) {
+                            image.set(layer, row, col, PixelStore.clamp((row
+                                    + 2 * col) / 8 + random.nextInt(3)));
+                        }
+                    }
+                }
+            }
+            // Sobel, Zhou and Li, dark Laplacean and light Laplacean, which
+            // always has 120 as its lightest shade.
+            final int sketch = run % 4;
+            final PencilSketch.Edges edges = sketch == 0
+                    ? PencilSketch.Edges.SOBEL : sketch == 1
+                    ? PencilSketch.Edges.JIN_ZHOU
+                    : PencilSketch.Edges.LAPLACEAN;
+            final int lightest = sketch == 3 ? 120 : 100 + random.nextInt(
+                    156);
+
+            final PixelStore actual = image.createCompatible(h, w);
+            new PencilSketch(edges, lightest).apply(image, actual);
+            final PixelStore expected = sketch(image, edges, lightest);
+            for (int layer = 0; layer < actual.getPlanes(); layer++) {
+                for (int row = 0; row < h; row++) {
+                    for (int col = 0; col < w; col++) {
+                        final int want = expected.get(0, row, col);
+                        final int got = actual.get(layer, row, col);
+                        Checks.check(got == want, "%s %d on %d x %d: layer %d,"
+                                + " row %d, column %d is %d, not %d", edges,
+                                lightest, h, w, layer, row, col, got, want);
+                    }
+                }
+            }
+        }
+        System.out.println("PencilSketch: ok");
+    }
+
+    private static PixelStore sketch(PixelStore image,
+            PencilSketch.Edges edges, int lightest) {
+        final int h = image.getHeight(), w = image.getWidth();
+        final PixelStore gray = new PixelStore(1, h, w);
+        for (int row = 0; row < h; row++) {
+            for (int col = 0; col < w; col++) {
+                int sum = 0;
+                for (int layer = 0; layer < image.getPlanes(); layer++) {
+                    sum += image.get(layer, row, col);
+                }
+                gray.set(0, row, col, sum / image.getPlanes());
+            }
+        }
+
+        final PixelStore smooth = median(gray);
+        final PixelStore shades = new PixelStore(1, h, w);
+        for (int row = 0; row < h; row++) {
+            for (int col = 0; col < w; col++) {
+                final int edge;
+                switch (edges) {
+                    case SOBEL:
+                        edge = sobel(smooth, row, col);
+                        break;
+                    case LAPLACEAN:
+                        edge = laplacean(smooth, row, col);
+                        break;
+                    default:
+                        edge = jinZhou(smooth, row, col);
+                }
+                shades.set(0, row, col, edge == 0 ? 255 : PixelStore.clamp(
+                        lightest - edge));
+            }
+        }
+        return median(shades);
+    }
+
+    // Median of the 3 x 3 square around each pixel.
+    private static PixelStore median(PixelStore image) {
+        final int h = image.getHeight(), w = image.getWidth();
+        final PixelStore median = new PixelStore(1, h, w);
+        final int[] square = new int[9];
+        for (int row = 0; row < h; row++) {
+            for (int col = 0; col < w; col++) {
+                int count = 0;
+                for (int i = -1; i <= 1; i++) {
+                    for (int j = -1; j <= 1; j++) {
+                        square[count++] = Checks.clamped(image, 0, row + i,
+                                col + j);
+                    }
+                }
+                Arrays.sort(square);
+                median.set(0, row, col, square[4]);
+            }
+        }
+        return median;
+    }
+
+    private static int sobel(PixelStore image, int row, int col) {
+        final int x = Checks.clamped(image, 0, row - 1, col - 1) + 2
+                * Checks.clamped(image, 0, row, col - 1)
+                + Checks.clamped(image, 0, row + 1, col - 1)
+                - Checks.clamped(image, 0, row - 1, col + 1) - 2
+                * Checks.clamped(image, 0, row, col + 1)
+                - Checks.clamped(image, 0, row + 1, col + 1);
+        final int y = Checks.clamped(image, 0, row - 1, col - 1) + 2
+                * Checks.clamped(image, 0, row - 1, col)
+                + Checks.clamped(image, 0, row - 1, col + 1)
+                - Checks.clamped(image, 0, row + 1, col - 1) - 2
+                * Checks.clamped(image, 0, row + 1, col)
+                - Checks.clamped(image, 0, row + 1, col + 1);
+        final int strength = Math.min(255, (int) Math.sqrt(x * x + y * y));
+        return strength < FAINTEST_EDGE ? 0 : strength;
+    }
+
+    // Only the dark side of each edge.
+    private static int laplacean(PixelStore image, int row, int col) {
+        final int edge = Checks.clamped(image, 0, row - 1, col)
+                + Checks.clamped(image, 0, row, col - 1)
+                + Checks.clamped(image, 0, row, col + 1)
+                + Checks.clamped(image, 0, row + 1, col) - 4
+                * image.get(0, row, col);
+        return edge > 0 ? 0 : Math.min(255, -edge);
+    }
+
+    // Steepest slope away from the pixel in each of the four directions,
+    // followed while it keeps getting steeper. The slopes up and down are
+    // added, as are those left and right, and the larger sum is the edge.
+    private static int jinZhou(PixelStore image, int row, int col) {
+        final int h = image.getHeight(), w = image.getWidth();
+        final int centre = image.get(0, row, col);
+        int vertical = 0, horizontal = 0;
+        for (int direction = -1; direction <= 1; direction += 2) {
+            int steepest = 0;
+            for (int i = row + direction; i >= 0 && i < h; i += direction) {
+                final int slope = (centre - image.get(0, i, col)) / (row - i);
+                if (Math.abs(slope) <= Math.abs(steepest)) {
+                    break;
+                }
+                steepest = slope;
+            }
+            vertical += steepest;
+
+            steepest = 0;
+            for (int j = col + direction; j >= 0 && j < w; j += direction) {
+                final int slope = (centre - image.get(0, row, j)) / (col - j);
+                if (Math.abs(slope) <= Math.abs(steepest)) {
+                    break;
+                }
+                steepest = slope;
+            }
+            horizontal += steepest;
+        }
+        final int edge = Math.min(255, Math.abs(Math.abs(vertical) >= Math
+                .abs(horizontal) ? vertical : horizontal));
+        return edge < FAINTEST_EDGE ? 0 : edge;
+    }
+}
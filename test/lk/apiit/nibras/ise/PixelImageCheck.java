@@ -0,0 +1,318 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks that gray-scale images are held as one layer. Both gray
+ * conversions must give one layer holding the gray of each pixel. Filters,
+ * thresholds, morphology, sketches and geometric operations that follow
+ * must keep one layer, with the samples the same operations give on the
+ * gray copied into three layers, as gray images used to be held. Fading a
+ * gray image with a colour one must give the colour image the three-layer
+ * gray gives.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Random;
+
+public class PixelImageCheck {
+
+    // Operations done one after the other to the gray image and to its
+    // three-layer copy.
+    private static enum Step {
+
+        BRIGHTNESS {
+            @Override
+            void apply(PixelImage image) {
+                image.adjustBrightness((short) 30);
+            }
+        },
+        QUANTIZATION {
+            @Override
+            void apply(PixelImage image) {
+                image.quantization((short) 24);
+            }
+        },
+        EQUALIZATION {
+            @Override
+            void apply(PixelImage image) {
+                image.enhanceContrastUsingHistogramEqualization();
+            }
+        },
+        STRETCH {
+            @Override
+            void apply(PixelImage image) {
+                image.enhanceContrastByStretch();
+            }
+        },
+        AVERAGE {
+            @Override
+            void apply(PixelImage image) {
+                image.applyFilter(PixelImage.FILTERS.AVERAGE_BOX);
+            }
+        },
+        LAPLACEAN {
+            @Override
+            void apply(PixelImage image) {
+                image.applyFilter(PixelImage.FILTERS.LAPLACEAN_DARK);
+            }
+        },
+        MEDIAN {
+            @Override
+            void apply(PixelImage image) {
+                image.applyFilter(PixelImage.FILTERS.MEDIAN);
+            }
+        },
+        MODE {
+            @Override
+            void apply(PixelImage image) {
+                image.applyModeFilter(1);
+            }
+        },
+        GAUSSIAN {
+            @Override
+            void apply(PixelImage image) {
+                image.applyGaussianBlur(3);
+            }
+        },
+        K_VALUE {
+            @Override
+            void apply(PixelImage image) {
+                image.applyKValueFilter(2);
+            }
+        },
+        SOBEL {
+            @Override
+            void apply(PixelImage image) {
+                image.applySobelOperator();
+            }
+        },
+        UNSHARP {
+            @Override
+            void apply(PixelImage image) {
+                image.applyUnsharpMasking();
+            }
+        },
+        CLOSING {
+            @Override
+            void apply(PixelImage image) {
+                image.applyMorphology(MorphologyFilter.Operation.CLOSING, 3,
+                        4);
+            }
+        },
+        ROTATION {
+            @Override
+            void apply(PixelImage image) {
+                image.rotate(20, Resampler.Mode.BILINEAR);
+            }
+        },
+        TURN {
+            @Override
+            void apply(PixelImage image) {
+                image.turn(1);
+            }
+        },
+        SHRINK {
+            @Override
+            void apply(PixelImage image) {
+                image.scale(0.6, 0.7, Resampler.Mode.BICUBIC);
+            }
+        },
+        TWIRL {
+            @Override
+            void apply(PixelImage image) {
+                image.applyTwirlWarp(0.5);
+            }
+        },
+        EDGES {
+            @Override
+            void apply(PixelImage image) {
+                image.applySobelOperatorOnly();
+            }
+        },
+        PENCIL {
+            @Override
+            void apply(PixelImage image) {
+                image.convertToPencilSketchUsingSobel((short) 200);
+            }
+        },
+        THRESHOLD {
+            @Override
+            void apply(PixelImage image) {
+                image.thresholdUsing128();
+            }
+        },
+        OPENING {
+            @Override
+            void apply(PixelImage image) {
+                image.applyMorphology(MorphologyFilter.Operation.OPENING, 2,
+                        3);
+            }
+        },
+        OTSU {
+            @Override
+            void apply(PixelImage image) {
+                image.thresholdUsingOtsu();
+            }
+        };
+
+        abstract void apply(PixelImage image);
+    }
+
+    public static void main(String[] args) {
+        final Random random = new Random(24);
+        for (int run = 0; run < 8; run++) {
+            final int type = run % 2 == 0 ? BufferedImage.TYPE_INT_RGB
+                    : BufferedImage.TYPE_3BYTE_BGR;
+            final int h = 1 + random.nextInt(run < 4 ? 40 : 300);
+            final int w = 1 + random.nextInt(run < 4 ? 40 : 200);
+            final PixelStore colour = Checks.randomImage(random, type, h, w);
+            final boolean luminescence = run % 4 >= 2;
+            final String what = "Run " + run;
+
+            final PixelImage gray = new PixelImage();
+            gray.setImage(colour.copy().getImage());
+            if (luminescence) {
+                gray.convertToGrayScaleUsingLuminescence();
+            } else {
+                gray.convertToGrayScaleUsingAveraging();
+            }
+            checkGray(colour, gray.getImage(), luminescence, what);
+
+            final PixelImage threeLayers = new PixelImage();
+            threeLayers.setImage(toThreeLayers(gray.getImage()));
+            for (int pass = 0; pass < 2; pass++) {
+                for (Step step : Step.values()) {
+                    step.apply(gray);
+                    step.apply(threeLayers);
+                    checkSameGray(threeLayers.getImage(), gray.getImage(),
+                            what + ", pass " + pass + ", " + step);
+                }
+            }
+
+            // Fading in colour, the colour image covering part or all of the
+            // gray one.
+            final int height = gray.getImage().getHeight();
+            final int width = gray.getImage().getWidth();
+            final PixelImage second = new PixelImage();
+            second.setImage(Checks.randomImage(random, type,
+                    1 + random.nextInt(height), 1 + random.nextInt(width))
+                    .getImage());
+            final PixelImage fadedGray = new PixelImage();
+            fadedGray.setImage(copy(gray.getImage()));
+            fadedGray.fade(0.3, second);
+            final PixelImage fadedThree = new PixelImage();
+            fadedThree.setImage(toThreeLayers(gray.getImage()));
+            fadedThree.fade(0.3, second);
+            Checks.check(fadedGray.getImage().getRaster().getNumBands() == 3,
+                    "%s: faded in colour into one layer", what);
+            checkSame(fadedThree.getImage(), fadedGray.getImage(), 3, what
+                    + ", fading");
+
+            // Fading in gray stays gray.
+            final PixelImage grayFaded = new PixelImage();
+            grayFaded.setImage(copy(gray.getImage()));
+            grayFaded.fade(0.6, gray);
+            final PixelImage threeFaded = new PixelImage();
+            threeFaded.setImage(toThreeLayers(gray.getImage()));
+            threeFaded.fade(0.6, gray);
+            checkSameGray(threeFaded.getImage(), grayFaded.getImage(), what
+                    + ", fading in gray");
+        }
+        System.out.println("PixelImage: ok");
+    }
+
+    // Checks that image is the one-layer gray of colour.
+    private static void checkGray(PixelStore colour, BufferedImage image,
+            boolean luminescence, String what) {
+        Checks.check(image.getType() == BufferedImage.TYPE_BYTE_GRAY,
+                "%s: gray image is of type %d", what, image.getType());
+        final Raster raster = image.getRaster();
+        for (int row = 0; row < colour.getHeight(); row++) {
+            for (int col = 0; col < colour.getWidth(); col++) {
+                final int red = colour.get(0, row, col);
+                final int green = colour.get(1, row, col);
+                final int blue = colour.get(2, row, col);
+                final int want = luminescence ? (21 * red + 71 * green + 7
+                        * blue) / 100 : (red + green + blue) / 3;
+                final int got = raster.getSample(col, row, 0);
+                Checks.check(got == want, "%s: gray at %d, %d is %d, not %d",
+                        what, row, col, got, want);
+            }
+        }
+    }
+
+    // Checks that actual is held as one layer with the samples of every
+    // layer of expected.
+    private static void checkSameGray(BufferedImage expected,
+            BufferedImage actual, String what) {
+        Checks.check(actual.getRaster().getNumBands() == 1,
+                "%s: gray image has %d layers", what, actual.getRaster()
+                .getNumBands());
+        checkSame(expected, actual, expected.getRaster().getNumBands(), what);
+    }
+
+    // Checks that layer l of expected is layer l of actual, a single layer
+    // of actual standing for all of them.
+    private static void checkSame(BufferedImage expected,
+            BufferedImage actual, int layers, String what) {
+        Checks.check(expected.getHeight() == actual.getHeight()
+                && expected.getWidth() == actual.getWidth(),
+                "%s: size differs", what);
+        final int actualLayers = actual.getRaster().getNumBands();
+        Checks.check(actualLayers == 1 || actualLayers == layers,
+                "%s: %d layers, not %d", what, actualLayers, layers);
+        for (int layer = 0; layer < layers; layer++) {
+            for (int row = 0; row < expected.getHeight(); row++) {
+                for (int col = 0; col < expected.getWidth(); col++) {
+                    final int want = sample(expected, row, col, layer);
+                    final int got = sample(actual, row, col, layer
+                            % actualLayers);
+                    Checks.check(got == want, "%s: layer %d, row %d, column"
+                            + " %d is %d, not %d", what, layer, row, col, got,
+                            want);
+                }
+            }
+        }
+    }
+
+    // Sample of a layer from 0 to 255, black and white images being held
+    // as bits.
+    private static int sample(BufferedImage image, int row, int col,
+            int layer) {
+        final int sample = image.getRaster().getSample(col, row, layer);
+        return image.getType() == BufferedImage.TYPE_BYTE_BINARY ? sample
+                * 255 : sample;
+    }
+
+    // The gray image copied into three layers.
+    private static BufferedImage toThreeLayers(BufferedImage gray) {
+        final PixelStore colour = new PixelStore(3, gray.getHeight(), gray
+                .getWidth());
+        for (int layer = 0; layer < 3; layer++) {
+            for (int row = 0; row < gray.getHeight(); row++) {
+                for (int col = 0; col < gray.getWidth(); col++) {
+                    colour.set(layer, row, col, sample(gray, row, col, 0));
+                }
+            }
+        }
+        return colour.getImage();
+    }
+
+    // A copy of the gray image as bytes.
+    private static BufferedImage copy(BufferedImage gray) {
+        final PixelStore copy = new PixelStore(1, gray.getHeight(), gray
+                .getWidth());
+        for (int row = 0; row < gray.getHeight(); row++) {
+            for (int col = 0; col < gray.getWidth(); col++) {
+                copy.set(0, row, col, sample(gray, row, col, 0));
+            }
+        }
+        return copy.getImage();
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks that area averaging gives each pixel the rounded average
+ * of the part of the source it covers, each source pixel counting by how
+ * much of it is covered, for smaller and larger targets alike. It also
+ * checks that each level of a pyramid is the one before halved, down to a
+ * single pixel, and that shrinking uses the smallest level large enough.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Random;
+
+public class PyramidCheck {
+
+    public static void main(String[] args) {
+        final Random random = new Random(9);
+        for (int run = 0; run < 80; run++) {
+            final PixelStore image = Checks.randomImage(random,
+                    Checks.TYPES[run % Checks.TYPES.length],
+                    1 + random.nextInt(120), 1 + random.nextInt(120));
+            final int h = image.getHeight(), w = image.getWidth();
+            final PixelStore target = image.createCompatible(
+                    1 + random.nextInt(run % 4 == 0 ? 2 * h : h),
+                    1 + random.nextInt(run % 4 == 0 ? 2 * w : w));
+            Pyramid.areaAverage(image, target);
+            Checks.checkSame(average(image, target.getHeight(), target
+                    .getWidth()), target, "Run " + run + ", " + h + " x " + w
+                    + " to " + target.getHeight() + " x "
+                    + target.getWidth());
+
+            final Pyramid pyramid = new Pyramid(image);
+            Checks.check(pyramid.getLevel(0) == image, "Run %d: first level",
+                    run);
+            for (int level = 1; level < pyramid.getLevels(); level++) {
+                final PixelStore above = pyramid.getLevel(level - 1);
+                final PixelStore half = pyramid.getLevel(level);
+                Checks.check(above.getHeight() > 1 || above.getWidth() > 1,
+                        "Run %d: level %d is below a single pixel", run,
+                        level);
+                Checks.checkSame(average(above, (above.getHeight() + 1) / 2,
+                        (above.getWidth() + 1) / 2), half, "Run " + run
+                        + ", level " + level);
+            }
+            final PixelStore last = pyramid.getLevel(pyramid.getLevels() - 1);
+            Checks.check(last.getHeight() == 1 && last.getWidth() == 1,
+                    "Run %d: last level is not a single pixel", run);
+
+            final int height = 1 + random.nextInt(h);
+            final int width = 1 + random.nextInt(w);
+            final PixelStore level = pyramid.levelFor(height, width);
+            for (int i = 0; i < pyramid.getLevels(); i++) {
+                final PixelStore other = pyramid.getLevel(i);
+                Checks.check(other.getHeight() < height || other.getWidth()
+                        < width || other.getHeight() >= level.getHeight()
+                        && other.getWidth() >= level.getWidth(),
+                        "Run %d: level for %d x %d is not the smallest", run,
+                        height, width);
+            }
+            Checks.check(level.getHeight() >= height && level.getWidth()
+                    >= width, "Run %d: level for %d x %d is too small", run,
+                    height, width);
+            final PixelStore reduced = image.createCompatible(height, width);
+            pyramid.reduce(reduced);
+            Checks.checkSame(average(level, height, width), reduced, "Run "
+                    + run + ", reduced");
+        }
+        System.out.println("Pyramid: ok");
+    }
+
+    // Rounded average of the part of image each pixel of a height x width
+    // image covers, added up one source pixel at a time.
+    private static PixelStore average(PixelStore image, int height,
+            int width) {
+        final int h = image.getHeight(), w = image.getWidth();
+        final PixelStore averaged = image.createCompatible(height, width);
+        final long area = (long) h * w;
+        for (int plane = 0; plane < image.getPlanes(); plane++) {
+            for (int row = 0; row < height; row++) {
+                for (int col = 0; col < width; col++) {
+                    long sum = 0;
+                    for (int i = 0; i < h; i++) {
+                        final long down = overlap(row, h, i, height);
+                        if (down == 0) {
+                            continue;
+                        }
+                        for (int j = 0; j < w; j++) {
+                            sum += down * overlap(col, w, j, width)
+                                    * image.get(plane, i, j);
+                        }
+                    }
+                    averaged.set(plane, row, col, (int) ((sum + area / 2)
+                            / area));
+                }
+            }
+        }
+        return averaged;
+    }
+
+    // Part of source pixel j that pixel c covers, along a line of size
+    // source pixels and count pixels. Pixel c covers [c size, (c + 1) size)
+    // and pixel j [j count, (j + 1) count).
+    private static long overlap(int c, int size, int j, int count) {
+        return Math.max(0, Math.min((long) (c + 1) * size, (long) (j + 1)
+                * count) - Math.max((long) c * size, (long) j * count));
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks the resampler on random mappings that reach beyond the
+ * image. Points outside must take the background, or with KEEP the pixel at
+ * the same place. The nearest pixel must be the one whose centre is within
+ * half a pixel of the point, and the bilinear value must be no more than
+ * the exact weighted value and less than two below it. The cubic and Lanczos
+ * values must be within one of the value of their curves. In every mode,
+ * points on the centres of pixels must give those pixels exactly, and flat
+ * images must stay flat.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Random;
+
+public class ResamplerCheck {
+
+    private static final int ONE = Resampler.ONE;
+
+    public static void main(String[] args) {
+        final Random random = new Random(7);
+        for (int run = 0; run < 80; run++) {
+            final int type = Checks.TYPES[run % Checks.TYPES.length];
+            final PixelStore source = Checks.randomImage(random, type,
+                    1 + random.nextInt(40), 1 + random.nextInt(60));
+            final PixelStore target = Checks.randomImage(random, type,
+                    source.getHeight(), source.getWidth());
+            final int background = random.nextInt(3) == 0 ? Resampler.KEEP
+                    : random.nextInt(256);
+            final boolean whole = run % 4 == 0;
+            final Resampler.Mapping mapping = mapping(random, source,
+                    whole);
+            final String what = "Run " + run;
+
+            for (Resampler.Mode mode : Resampler.Mode.values()) {
+                new Resampler(mode).resample(source, target, mapping,
+                        background);
+                if (whole) {
+                    check(source, target, mapping, background,
+                            Resampler.Mode.NEAREST, what + ", " + mode);
+                } else {
+                    check(source, target, mapping, background, mode,
+                            what + ", " + mode);
+                }
+            }
+
+            final int value = random.nextInt(256);
+            final PixelStore flat = source.createCompatible(
+                    source.getHeight(), source.getWidth());
+            Checks.randomise(random, flat, 1);
+            LookupTable.brightness(flat.getPlanes(), value).apply(flat);
+            for (Resampler.Mode mode : Resampler.Mode.values()) {
+                new Resampler(mode).resample(flat, target, mapping, value);
+                for (int plane = 0; plane < target.getPlanes(); plane++) {
+                    for (int row = 0; row < target.getHeight(); row++) {
+                        for (int col = 0; col < target.getWidth(); col++) {
+                            Checks.check(target.get(plane, row, col) == value,
+                                    "%s, %s: flat %d is not flat at %d, %d",
+                                    what, mode, value, row, col);
+                        }
+                    }
+                }
+            }
+        }
+        System.out.println("Resampler: ok");
+    }
+
+    // A turn, scaling and move of the target onto the source, reaching a
+    // little beyond the source all round. Whole maps onto the centres of
+    // pixels only.
+    private static Resampler.Mapping mapping(Random random,
+            PixelStore source, final boolean whole) {
+        final double angle = whole ? random.nextInt(4) * Math.PI / 2
+                : random.nextDouble() * 2 * Math.PI;
+        final double scale = whole ? 1 : 0.3 + 2 * random.nextDouble();
+        final double cos = Math.cos(angle) * scale;
+        final double sin = Math.sin(angle) * scale;
+        final double x0 = source.getWidth() / 2.0 + (whole ? 0 : random
+                .nextDouble() * 6 - 3);
+        final double y0 = source.getHeight() / 2.0 + (whole ? 0 : random
+                .nextDouble() * 6 - 3);
+        return new Resampler.Mapping() {
+            @Override
+            public void map(int row, int[] cols, int[] rows) {
+                for (int col = 0; col < cols.length; col++) {
+                    final double x = col - x0, y = row - y0;
+                    final double u = cos * x - sin * y + x0;
+                    final double v = sin * x + cos * y + y0;
+                    cols[col] = whole ? (int) Math.round(u) * ONE : Resampler
+                            .toFixed(u);
+                    rows[col] = whole ? (int) Math.round(v) * ONE : Resampler
+                            .toFixed(v);
+                }
+            }
+        };
+    }
+
+    private static void check(PixelStore source, PixelStore target,
+            Resampler.Mapping mapping, int background, Resampler.Mode mode,
+            String what) {
+        final int h = source.getHeight(), w = source.getWidth();
+        final int[] cols = new int[target.getWidth()];
+        final int[] rows = new int[target.getWidth()];
+        for (int row = 0; row < target.getHeight(); row++) {
+            mapping.map(row, cols, rows);
+            for (int col = 0; col < target.getWidth(); col++) {
+                final int x = cols[col], y = rows[col];
+                for (int plane = 0; plane < target.getPlanes(); plane++) {
+                    final int got = target.get(plane, row, col);
+                    double want;
+                    if (!Resampler.isInside(x, y, h, w)) {
+                        want = background == Resampler.KEEP ? source.get(
+                                plane, row, col) : background;
+                    } else if (mode == Resampler.Mode.NEAREST) {
+                        want = source.get(plane, y + ONE / 2 >> 16,
+                                x + ONE / 2 >> 16);
+                    } else if (mode == Resampler.Mode.BILINEAR) {
+                        want = bilinear(source, plane, x, y);
+                    } else {
+                        want = curve(source, plane, x, y, mode);
+                    }
+                    // Bilinear values are cut down to a whole number
+                    // along the rows and again down the column. The curves
+                    // are rounded.
+                    Checks.check(mode == Resampler.Mode.BILINEAR ? got <= want
+                            && got > want - 2 : mode == Resampler.Mode.NEAREST
+                            ? got == want : Math.abs(got - want) < 1,
+                            "%s: layer %d, %d, %d is %d, not %.2f", what,
+                            plane, row, col, got, want);
+                }
+            }
+        }
+    }
+
+    // Weights of the cubic or Lanczos curve, for the fraction of the point
+    // cut to the 256 fractions the engine keeps weights for.
+    private static double curve(PixelStore source, int plane, int x,
+            int y, Resampler.Mode mode) {
+        final int taps = mode == Resampler.Mode.BICUBIC ? 4 : 6;
+        final int first = taps / 2 - 1;
+        final double[] wx = weights(mode, taps, (x & ONE - 1) >> 8);
+        final double[] wy = weights(mode, taps, (y & ONE - 1) >> 8);
+        double value = 0;
+        for (int i = 0; i < taps; i++) {
+            for (int j = 0; j < taps; j++) {
+                value += wy[i] * wx[j] * Checks.clamped(source, plane,
+                        (y >> 16) - first + i, (x >> 16) - first + j);
+            }
+        }
+        return Math.min(255, Math.max(0, value));
+    }
+
+    private static double[] weights(Resampler.Mode mode, int taps,
+            int phase) {
+        final double[] weights = new double[taps];
+        double total = 0;
+        for (int i = 0; i < taps; i++) {
+            final double t = Math.abs(i - (taps / 2 - 1) - phase / 256.0);
+            if (mode == Resampler.Mode.BICUBIC) {
+                weights[i] = t < 1 ? (1.5 * t - 2.5) * t * t + 1 : t < 2
+                        ? ((-0.5 * t + 2.5) * t - 4) * t + 2 : 0;
+            } else {
+                weights[i] = t == 0 ? 1 : t >= 3 ? 0 : 3 * Math.sin(Math.PI
+                        * t) * Math.sin(Math.PI * t / 3) / (Math.PI * t
+                        * Math.PI * t);
+            }
+            total += weights[i];
+        }
+        for (int i = 0; i < taps; i++) {
+            weights[i] /= total;
+        }
+        return weights;
+    }
+
+    private static double bilinear(PixelStore source, int plane, int x,
+            int y) {
+        final int left = x >> 16, top = y >> 16;
+        final double fx = (x & ONE - 1) / (double) ONE;
+        final double fy = (y & ONE - 1) / (double) ONE;
+        double value = 0;
+        for (int i = 0; i < 2; i++) {
+            for (int j = 0; j < 2; j++) {
+                value += (i == 0 ? 1 - fy : fy) * (j == 0 ? 1 - fx : fx)
+                        * Checks.clamped(source, plane, top + i, left + j);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks the histograms, least and greatest values, means and
+ * variances of each layer against counting the samples one at a time, on
+ * images tall enough for the counts of several bands to be added together.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class StatisticsCheck {
+
+    public static void main(String[] args) {
+        final Random random = new Random(10);
+        for (int run = 0; run < 60; run++) {
+            final PixelStore image = Checks.randomImage(random,
+                    Checks.TYPES[run % Checks.TYPES.length],
+                    1 + random.nextInt(run % 2 == 0 ? 500 : 20),
+                    1 + random.nextInt(200), 1 + random.nextInt(256));
+            if (run % 10 == 1) {
+                // Only the highest value.
+                LookupTable.brightness(image.getPlanes(), 255).apply(image);
+            }
+            final Statistics statistics = new Statistics(image);
+            final long count = (long) image.getHeight() * image.getWidth();
+            Checks.check(statistics.getPlanes() == image.getPlanes()
+                    && statistics.getCount() == count, "Run %d: size", run);
+
+            for (int plane = 0; plane < image.getPlanes(); plane++) {
+                final int[] histogram = new int[256];
+                int min = 255, max = 0;
+                long sum = 0;
+                for (int row = 0; row < image.getHeight(); row++) {
+                    for (int col = 0; col < image.getWidth(); col++) {
+                        final int value = image.get(plane, row, col);
+                        histogram[value]++;
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                        sum += value;
+                    }
+                }
+                final double mean = (double) sum / count;
+                double squares = 0;
+                for (int value = 0; value < 256; value++) {
+                    squares += histogram[value] * (value - mean)
+                            * (value - mean);
+                }
+
+                Checks.check(Arrays.equals(histogram, statistics
+                        .getHistogram(plane)) && Arrays.equals(histogram,
+                        statistics.getHistograms()[plane]),
+                        "Run %d: histogram of layer %d", run, plane);
+                Checks.check(statistics.getMin(plane) == min && statistics
+                        .getMax(plane) == max, "Run %d: least or greatest of"
+                        + " layer %d", run, plane);
+                Checks.check(Math.abs(statistics.getMean(plane) - mean)
+                        < 1e-9, "Run %d: mean of layer %d", run, plane);
+                Checks.check(Math.abs(statistics.getVariance(plane)
+                        - squares / count) < 1e-6, "Run %d: variance of layer"
+                        + " %d is %f, not %f", run, plane, statistics
+                        .getVariance(plane), squares / count);
+            }
+
+            // Histograms handed out are copies.
+            statistics.getHistogram(0)[0]++;
+            statistics.getHistograms()[0][0]++;
+            Checks.check(statistics.getHistogram(0)[0] == new Statistics(
+                    image).getHistogram(0)[0], "Run %d: histogram is shared",
+                    run);
+        }
+        System.out.println("Statistics: ok");
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks that turns by right angles and flips move every pixel to
+ * its place exactly, that four quarter turns and two flips of either kind
+ * give the image back, and that chains of turns, flips, moves and crops
+ * copied a tile at a time give the same image as resampling them.
+ *
+ * It also checks chains of rotations, scalings, moves and crops against
+ * taking each pixel of the result back through the matrix of every step, one
+ * step at a time. The points the chain steps along each row must be within a
+ * 65536th of a pixel of the matrix, pixels must be taken exactly when they
+ * lie within every image along the way, and resampling with the nearest
+ * pixel must give the pixel under the point. Pixels within two 65536ths of a
+ * pixel of halfway between two pixels may go either way.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Random;
+
+public class TransformationCheck {
+
+    public static void main(String[] args) {
+        final Random random = new Random(8);
+        for (int run = 0; run < 60; run++) {
+            // Wide and tall enough, now and then, for several tiles.
+            final int limit = run % 3 == 0 ? 300 : 70;
+            final PixelStore image = Checks.randomImage(random,
+                    Checks.TYPES[run % Checks.TYPES.length],
+                    1 + random.nextInt(limit), 1 + random.nextInt(limit));
+            final int h = image.getHeight(), w = image.getWidth();
+            final Transformation none = new Transformation(h, w);
+
+            for (int turns = -1; turns <= 3; turns++) {
+                final PixelStore turned = copy(image, none.turn(turns));
+                for (int row = 0; row < h; row++) {
+                    for (int col = 0; col < w; col++) {
+                        // Where the pixel goes, anticlockwise.
+                        final int q = (turns + 4) % 4;
+                        final int r = q == 0 ? row : q == 1 ? w - 1 - col
+                                : q == 2 ? h - 1 - row : col;
+                        final int c = q == 0 ? col : q == 1 ? row : q == 2
+                                ? w - 1 - col : h - 1 - row;
+                        Checks.check(turned.getPixel(r, c) == image.getPixel(
+                                row, col), "Run %d, turn %d: %d, %d", run,
+                                turns, row, col);
+                    }
+                }
+                PixelStore back = turned;
+                for (int i = 0; i < 3; i++) {
+                    back = copy(back, new Transformation(back.getHeight(),
+                            back.getWidth()).turn(turns));
+                }
+                Checks.checkSame(image, back, "Run " + run + ", four turns "
+                        + turns);
+            }
+
+            final PixelStore flipped = copy(image, none.flipHorizontally());
+            final PixelStore upsideDown = copy(image, none.flipVertically());
+            for (int row = 0; row < h; row++) {
+                for (int col = 0; col < w; col++) {
+                    Checks.check(flipped.getPixel(row, w - 1 - col) == image
+                            .getPixel(row, col) && upsideDown.getPixel(h - 1
+                            - row, col) == image.getPixel(row, col),
+                            "Run %d, flips: %d, %d", run, row, col);
+                }
+            }
+            Checks.checkSame(image, copy(flipped, none.flipHorizontally()),
+                    "Run " + run + ", two flips left to right");
+            Checks.checkSame(image, copy(upsideDown, none.flipVertically()),
+                    "Run " + run + ", two flips top to bottom");
+            Checks.checkSame(copy(image, none.turn(2)), copy(image, none
+                    .flipHorizontally().flipVertically()), "Run " + run
+                    + ", half turn");
+
+            final Transformation chain = chain(random, none);
+            Checks.check(chain.isWholePixel(), "Run %d: chain is not whole"
+                    + " pixel", run);
+            final int background = random.nextInt(256);
+            final PixelStore copied = image.createCompatible(chain
+                    .getHeight(), chain.getWidth());
+            chain.copy(image, copied, background);
+            final PixelStore resampled = image.createCompatible(chain
+                    .getHeight(), chain.getWidth());
+            new Resampler(Resampler.Mode.NEAREST).resample(image, resampled,
+                    chain, background);
+            Checks.checkSame(resampled, copied, "Run " + run + ", chain");
+        }
+        checkMatrix();
+        System.out.println("Transformation: ok");
+    }
+
+    // Chains of rotations, scalings, moves and crops, checked against
+    // taking each pixel of the result back through the 2 x 3 matrix of
+    // every step in turn. Angles include right angles and angles a hair
+    // either side of them, and images include single rows and columns.
+    private static void checkMatrix() {
+        final Random random = new Random(17);
+        final double[] angles = { 0, 90, 180, -90, 270, 45, 1e-9, -1e-6,
+            90 + 1e-9, 90 - 1e-4, 180 + 1e-6, 180 - 1e-9, -90 + 1e-7 };
+        for (int run = 0; run < 300; run++) {
+            final int h = run % 5 == 1 ? 1 : 1 + random.nextInt(60);
+            final int w = run % 5 == 0 ? 1 : 1 + random.nextInt(60);
+            final PixelStore image = Checks.randomImage(random,
+                    Checks.TYPES[run % Checks.TYPES.length], h, w);
+            final String what = "Run " + run;
+
+            // Each step as the matrix taking the image it makes back to the
+            // one before, and the size of the one before.
+            final int length = 1 + random.nextInt(4);
+            final double[][] steps = new double[length][];
+            final int[][] sizes = new int[length][];
+            Transformation chain = new Transformation(h, w);
+            for (int i = 0; i < length; i++) {
+                final int height = chain.getHeight();
+                final int width = chain.getWidth();
+                sizes[i] = new int[] { height, width };
+                switch (random.nextInt(run % 2 == 0 ? 2 : 4)) {
+                    case 0:
+                        final double angle = random.nextBoolean()
+                                ? angles[random.nextInt(angles.length)]
+                                : random.nextDouble() * 720 - 360;
+                        chain = chain.rotate(angle);
+                        final double radians = Math.toRadians(angle);
+                        double sin = Math.sin(radians);
+                        double cos = Math.cos(radians);
+                        if (angle % 90 == 0) {
+                            sin = Math.rint(sin);
+                            cos = Math.rint(cos);
+                        }
+                        final int x0 = width / 2, y0 = height / 2;
+                        steps[i] = new double[] { cos, -sin,
+                            x0 - x0 * cos + y0 * sin, sin, cos,
+                            y0 - x0 * sin - y0 * cos };
+                        break;
+                    case 1:
+                        final double across = 0.3 + 2.7 * random.nextDouble();
+                        final double down = random.nextBoolean() ? across
+                                : 0.3 + 2.7 * random.nextDouble();
+                        chain = chain.scale(across, down);
+                        steps[i] = new double[] { 1 / across, 0,
+                            0.5 / across - 0.5, 0, 1 / down,
+                            0.5 / down - 0.5 };
+                        break;
+                    case 2:
+                        final int right = random.nextInt(2 * width + 1)
+                                - width;
+                        final int lower = random.nextInt(2 * height + 1)
+                                - height;
+                        chain = chain.translate(lower, right);
+                        steps[i] = new double[] { 1, 0, -right, 0, 1,
+                            -lower };
+                        break;
+                    default:
+                        final int x = random.nextInt(width);
+                        final int y = random.nextInt(height);
+                        chain = chain.crop(x, y, 1 + random.nextInt(height
+                                - y), 1 + random.nextInt(width - x));
+                        steps[i] = new double[] { 1, 0, x, 0, 1, y };
+                }
+            }
+
+            final int height = chain.getHeight(), width = chain.getWidth();
+            final int background = random.nextInt(256);
+            final PixelStore resampled = image.createCompatible(height,
+                    width);
+            new Resampler(Resampler.Mode.NEAREST).resample(image, resampled,
+                    chain, background);
+            final PixelStore copied = image.createCompatible(height, width);
+            if (chain.isWholePixel()) {
+                chain.copy(image, copied, background);
+            }
+            final int[] cols = new int[width], rows = new int[width];
+            int backgroundPixel = 0;
+            for (int plane = 0; plane < image.getPlanes(); plane++) {
+                backgroundPixel |= background << plane * 8;
+            }
+
+            for (int row = 0; row < height; row++) {
+                chain.map(row, cols, rows);
+                for (int col = 0; col < width; col++) {
+                    // Back through the steps, last first, noting whether the
+                    // point is within each image along the way, and whether
+                    // it is too close to the edge of one to tell.
+                    double x = col, y = row;
+                    boolean inside = true, close = false;
+                    for (int i = length - 1; i >= 0; i--) {
+                        final double[] m = steps[i];
+                        final double nextX = m[0] * x + m[1] * y + m[2];
+                        y = m[3] * x + m[4] * y + m[5];
+                        x = nextX;
+                        inside &= within(x, sizes[i][1])
+                                && within(y, sizes[i][0]);
+                        close |= nearHalf(x) || nearHalf(y);
+                    }
+                    if (close) {
+                        continue; // Rounding may go either way.
+                    }
+                    final int pointX = Resampler.toFixed(x);
+                    final int pointY = Resampler.toFixed(y);
+
+                    final boolean mapped = cols[col] != Resampler.NOWHERE;
+                    Checks.check(mapped == inside, "%s: %d, %d is %s", what,
+                            row, col, mapped ? "taken" : "not taken");
+                    final int want = inside ? image.getPixel((int) Math
+                            .floor(y + 0.5), (int) Math.floor(x + 0.5))
+                            : backgroundPixel;
+                    Checks.check(!inside || Math.abs(cols[col] - pointX) <= 1
+                            && Math.abs(rows[col] - pointY) <= 1,
+                            "%s: %d, %d is taken from %d, %d, not %d, %d",
+                            what, row, col, rows[col], cols[col], pointY,
+                            pointX);
+                    Checks.check(resampled.getPixel(row, col) == want,
+                            "%s: resampled %d, %d is %06x, not %06x", what,
+                            row, col, resampled.getPixel(row, col), want);
+                    Checks.check(!chain.isWholePixel() || copied.getPixel(
+                            row, col) == want, "%s: copied %d, %d is %06x,"
+                            + " not %06x", what, row, col, copied.getPixel(
+                            row, col), want);
+                }
+            }
+        }
+    }
+
+    // Whether a point is within an image of the given size, whose pixels
+    // each cover the half pixel around their centres.
+    private static boolean within(double point, int size) {
+        return point >= -0.5 && point < size - 0.5;
+    }
+
+    // Whether a point is so close to halfway between two pixels, where
+    // images end and the nearest pixel changes, that the fixed point the
+    // steps add up to may fall on the other side. The two may be a 65536th
+    // of a pixel apart.
+    private static boolean nearHalf(double point) {
+        return Math.abs(point + 0.5 - Math.rint(point + 0.5)) < 2.0 / 65536;
+    }
+
+    private static PixelStore copy(PixelStore image,
+            Transformation transformation) {
+        final PixelStore result = image.createCompatible(transformation
+                .getHeight(), transformation.getWidth());
+        transformation.copy(image, result, 0);
+        return result;
+    }
+
+    // One to five turns, flips, moves and crops, picked at random.
+    private static Transformation chain(Random random, Transformation chain) {
+        final int length = 1 + random.nextInt(5);
+        for (int i = 0; i < length; i++) {
+            final int h = chain.getHeight(), w = chain.getWidth();
+            switch (random.nextInt(5)) {
+                case 0:
+                    chain = chain.turn(random.nextInt(7) - 3);
+                    break;
+                case 1:
+                    chain = chain.flipHorizontally();
+                    break;
+                case 2:
+                    chain = chain.flipVertically();
+                    break;
+                case 3:
+                    chain = chain.translate(random.nextInt(2 * h + 1) - h,
+                            random.nextInt(2 * w + 1) - w);
+                    break;
+                default:
+                    final int x = random.nextInt(w), y = random.nextInt(h);
+                    chain = chain.crop(x, y, 1 + random.nextInt(h - y),
+                            1 + random.nextInt(w - x));
+                    break;
+            }
+        }
+        return chain;
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * ***********************************************************************************
+ *
+ * This file part of the image processing artifact created for Imaging and
+ * Special Effects module.
+ *
+ * This file checks the warp maps against working out the point of each pixel
+ * on its own, from its distance to the centre, rather than from the quarter
+ * of the image mirrored into the rest. Warping an image through the map must
+ * give what resampling it through those points in fixed point gives. Sizes
+ * are odd and even, down to a single pixel. It also checks that maps are
+ * reused from the cache, that the least recently used are let go once the
+ * cache is full, and that a map larger than the whole cache is not kept.
+ *
+ ***********************************************************************************
+ */
+package lk.apiit.nibras.ise;
+
+import java.util.Random;
+
+public class WarpMapCheck {
+
+    // Points the cache holds, from WarpMap.
+    private static final int MAX_CACHED_POINTS = 8 << 20;
+
+    public static void main(String[] args) {
+        final Random random = new Random(14);
+        for (int run = 0; run < 150; run++) {
+            final WarpMap.Type type = WarpMap.Type.values()[run
+                    % WarpMap.Type.values().length];
+            final int h = run < 12 ? 1 + run / 3 : 1 + random.nextInt(80);
+            final int w = run < 12 ? 1 + run % 4 : 1 + random.nextInt(80);
+            final double factor;
+            switch (type) {
+                case FISH_EYE:
+                    factor = (1 + random.nextInt(100)) / 100.0;
+                    break;
+                case BULGE:
+                    factor = (10 + random.nextInt(91)) / 10.0;
+                    break;
+                default:
+                    factor = (1 + random.nextInt(100)) / 100.0;
+            }
+            final PixelStore source = Checks.randomImage(random,
+                    Checks.TYPES[run % Checks.TYPES.length], h, w);
+            final String what = String.format("%s %.2f on %d x %d", type,
+                    factor, h, w);
+
+            final PixelStore expected = source.createCompatible(h, w);
+            new Resampler(Resampler.Mode.BILINEAR).resample(source, expected,
+                    new Resampler.Mapping() {
+                @Override
+                public void map(int row, int[] cols, int[] rows) {
+                    for (int col = 0; col < w; col++) {
+                        final int[] point = point(type, factor, h, w, row,
+                                col);
+                        rows[col] = point[0];
+                        cols[col] = point[1];
+                    }
+                }
+            }, type == WarpMap.Type.FISH_EYE ? 255 : Resampler.KEEP);
+            final PixelStore actual = source.createCompatible(h, w);
+            final WarpMap map = WarpMap.get(type, factor, h, w);
+            map.apply(source, actual);
+            Checks.checkSame(expected, actual, what);
+            Checks.check(WarpMap.get(type, factor, h, w) == map,
+                    "%s: not reused", what);
+        }
+
+        checkCache();
+        System.out.println("WarpMap: ok");
+    }
+
+    // Fixed point row and column pixel row, col of the warped image is
+    // taken from.
+    private static int[] point(WarpMap.Type type, double factor, int h,
+            int w, int row, int col) {
+        if (type == WarpMap.Type.TWIRL) {
+            final int x0 = w / 2, y0 = h / 2;
+            final int dy = y0 - row, dx = x0 - col;
+            final double length = Math.sqrt(dy * dy / ((double) h * h) + dx
+                    * dx / ((double) w * w));
+            final double angle = Math.toRadians(1440) * factor * length;
+            final double sin = Math.sin(angle), cos = Math.cos(angle);
+            return new int[] {
+                (y0 - (int) Math.round(dx * sin + dy * cos))
+                        << Resampler.FRACTION_BITS,
+                (x0 - (int) Math.round(dx * cos - dy * sin))
+                        << Resampler.FRACTION_BITS };
+        }
+
+        final double x0 = w / 2, y0 = h / 2;
+        final double dy = row - y0, dx = col - x0;
+        final double y = dy / (h / 2), x = dx / (w / 2);
+        final double distance = Math.sqrt(x * x + y * y);
+        final double scale;
+        if (distance == 0) {
+            scale = 0;
+        } else if (type == WarpMap.Type.FISH_EYE) {
+            scale = factor * Math.tan(distance / factor) / distance;
+        } else {
+            scale = Math.pow(distance, factor) / distance;
+        }
+        final int[] point = { Resampler.toFixed(y0 + dy * scale),
+            Resampler.toFixed(x0 + dx * scale) };
+        if (type == WarpMap.Type.FISH_EYE && !inWindow(factor, h, w, row,
+                col)) {
+            point[1] = Resampler.NOWHERE;
+        }
+        return point;
+    }
+
+    // Whether the fish-eye shows the pixel. Some factors only show a window
+    // around the centre, and the first row and column are never shown.
+    private static boolean inWindow(double factor, int h, int w, int row,
+            int col) {
+        double margin = 0;
+        if (factor < 0.7 && factor > 0.45) {
+            margin = 0.7 - factor;
+        } else if (factor < 0.46 && factor > 0.38) {
+            margin = 0.65 - factor;
+        } else if (factor < 0.39 && factor > 0.36) {
+            margin = 0.6 - factor;
+        } else if (factor < 0.37 && factor > 0.32) {
+            margin = 0.63 - factor;
+        } else if (factor < 0.33 && factor > 0.29) {
+            margin = 0.61 - factor;
+        }
+        return row > (int) (margin * h) && col > (int) (margin * w)
+                && row < (int) (h - margin * h)
+                && col < (int) (w - margin * w);
+    }
+
+    private static void checkCache() {
+        final WarpMap small = WarpMap.get(WarpMap.Type.BULGE, 2, 30, 40);
+
+        // Three maps of 3M points fill the cache past its 8M, so the least
+        // recently used of them is let go and the other two are kept.
+        final WarpMap first = WarpMap.get(WarpMap.Type.BULGE, 1.5, 1000,
+                3000);
+        final WarpMap second = WarpMap.get(WarpMap.Type.BULGE, 2.5, 1000,
+                3000);
+        final WarpMap third = WarpMap.get(WarpMap.Type.BULGE, 3.5, 1000,
+                3000);
+        Checks.check(WarpMap.get(WarpMap.Type.BULGE, 3.5, 1000, 3000)
+                == third, "Newest map is not kept");
+        Checks.check(WarpMap.get(WarpMap.Type.BULGE, 2.5, 1000, 3000)
+                == second, "Second newest map is not kept");
+        Checks.check(WarpMap.get(WarpMap.Type.BULGE, 1.5, 1000, 3000)
+                != first, "Least recently used map is kept");
+        Checks.check(WarpMap.get(WarpMap.Type.BULGE, 2, 30, 40) != small,
+                "Map used before the large ones is kept");
+
+        // A map larger than the cache is made afresh each time and leaves
+        // the maps already kept in place.
+        final WarpMap kept = WarpMap.get(WarpMap.Type.BULGE, 2, 30, 40);
+        final WarpMap huge = WarpMap.get(WarpMap.Type.BULGE, 2, 1,
+                MAX_CACHED_POINTS + 1);
+        Checks.check(WarpMap.get(WarpMap.Type.BULGE, 2, 1,
+                MAX_CACHED_POINTS + 1) != huge, "Map larger than the cache"
+                + " is kept");
+        Checks.check(WarpMap.get(WarpMap.Type.BULGE, 2, 30, 40) == kept,
+                "Map larger than the cache pushed the others out");
+    }
+}